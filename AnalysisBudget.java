@@ -0,0 +1,47 @@
+/**
+ * Limits on the work one analysis may do, so that a single pathological input
+ * (a minified file on one megabyte-long line, generated code) cannot stall a
+ * batch run or a server worker.
+ *
+ * Every phase is linear in the input, so capping the input size caps both
+ * memory and time; the deadline is a second guard on wall time. An analysis
+ * that hits either limit stops early and returns a partial result covering
+ * what it got through.
+ */
+final class AnalysisBudget {
+
+    /** No limits; for interactive use, where the user sees the input. */
+    static final AnalysisBudget UNLIMITED = new AnalysisBudget(0, Integer.MAX_VALUE);
+
+    /** Limits for unattended runs: two seconds and four million characters per source. */
+    static final AnalysisBudget DEFAULT = new AnalysisBudget(2000, 4 * 1024 * 1024);
+
+    // Deadline value meaning "never".
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Wall time per source in milliseconds, or 0 for none. */
+    final long timeMillis;
+    /** Characters analyzed per source; anything after is ignored. */
+    final int maxChars;
+
+    AnalysisBudget(long timeMillis, int maxChars) {
+        if (timeMillis < 0 || maxChars <= 0) {
+            throw new IllegalArgumentException("Invalid budget: " + timeMillis + " ms, " + maxChars + " chars");
+        }
+        this.timeMillis = timeMillis;
+        this.maxChars = maxChars;
+    }
+
+    /** Deadline in {@link System#nanoTime} terms for an analysis starting now. */
+    long deadline() {
+        return timeMillis == 0 ? NO_DEADLINE : System.nanoTime() + timeMillis * 1000000L;
+    }
+
+    static boolean expired(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+    }
+
+    String sizeExceeded() {
+        return "input larger than " + maxChars + " characters; only the start was analyzed";
+    }
+}
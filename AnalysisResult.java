@@ -0,0 +1,110 @@
+import java.util.List;
+
+/**
+ * Immutable outcome of analyzing one source: the time and space complexity
+ * classes, how far to trust them, and where in the source the evidence for
+ * them was found. Front ends format it; callers embedding the engine can use
+ * the fields directly instead of parsing the text.
+ */
+final class AnalysisResult {
+
+    /** How well the detected pattern predicts the actual growth. */
+    enum Confidence {
+        /** Loop nesting or a library call with a known cost: the shape is right, constants aside. */
+        HIGH,
+        /** Halving loops or costs composed through calls resolved by name only. */
+        MEDIUM,
+        /** Recursion, whose cost depends on how the arguments shrink. */
+        LOW
+    }
+
+    enum Kind {
+        /** LIBRARY: a call to a library method with a known cost, such as a sort (see CostRule). */
+        LOOP, LIBRARY, HALVING, RECURSION, ALLOCATION, CALL
+    }
+
+    final Complexity time;
+    /** Human-readable time complexity, e.g. "O(n^2) - Nested loops detected". */
+    final String timeDetail;
+    final Confidence confidence;
+    final Complexity space;
+    final String spaceDetail;
+    /** Findings in source order. */
+    final List<Evidence> evidence;
+    /** Results per declared method, in declaration order. */
+    final List<MethodResult> methods;
+    /** Names of the methods in each recursion cycle. */
+    final List<List<String>> recursiveCycles;
+    /** Why only part of the source was analyzed (see AnalysisBudget), or null if all of it was. */
+    final String partial;
+
+    AnalysisResult(Complexity time, String timeDetail, Confidence confidence, Complexity space, String spaceDetail,
+            List<Evidence> evidence, List<MethodResult> methods, List<List<String>> recursiveCycles,
+            String partial) {
+        this.time = time;
+        this.timeDetail = timeDetail;
+        this.confidence = confidence;
+        this.space = space;
+        this.spaceDetail = spaceDetail;
+        this.evidence = evidence;
+        this.methods = methods;
+        this.recursiveCycles = recursiveCycles;
+        this.partial = partial;
+    }
+
+    /**
+     * Copy marked as covering only part of the source. What was found is a
+     * lower bound, so confidence drops to LOW.
+     */
+    AnalysisResult partial(String reason) {
+        return new AnalysisResult(time, timeDetail, Confidence.LOW, space, spaceDetail, evidence, methods,
+                recursiveCycles, partial == null ? reason : partial + "; " + reason);
+    }
+
+    /** One finding and where it is; lines and columns are 1-based, offset is a char index. */
+    static final class Evidence {
+        final Kind kind;
+        final String detail;
+        /** Enclosing method, or null for code outside any method. */
+        final String method;
+        final int offset;
+        final int line;
+        final int column;
+
+        Evidence(Kind kind, String detail, String method, int offset, int line, int column) {
+            this.kind = kind;
+            this.detail = detail;
+            this.method = method;
+            this.offset = offset;
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column + " " + kind + " " + detail + (method != null ? " in " + method : "");
+        }
+    }
+
+    /** Complexity of one method, including the methods it calls. */
+    static final class MethodResult {
+        final String name;
+        final int line;
+        final Complexity time;
+        final String timeDetail;
+        final Confidence confidence;
+        final Complexity space;
+        final String spaceDetail;
+
+        MethodResult(String name, int line, Complexity time, String timeDetail, Confidence confidence,
+                Complexity space, String spaceDetail) {
+            this.name = name;
+            this.line = line;
+            this.time = time;
+            this.timeDetail = timeDetail;
+            this.confidence = confidence;
+            this.space = space;
+            this.spaceDetail = spaceDetail;
+        }
+    }
+}
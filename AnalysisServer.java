@@ -0,0 +1,190 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server mode: keeps one warm JVM and answers analysis requests over HTTP on
+ * the loopback interface.
+ *
+ * POST /analyze with the source as the body returns the result as JSON;
+ * GET /stats returns queue depth, in-flight and completed counts. Handlers
+ * only read the body and enqueue it. A fixed set of workers, one per core,
+ * each drain everything waiting (up to MAX_BATCH requests), analyze the
+ * requests one after another, answering identical snippets in a batch once,
+ * and write the responses themselves. A slow request therefore never holds a
+ * connection thread, and a full queue answers 503 at once instead of letting
+ * latency grow without bound. Snippets are not merged into one engine pass,
+ * since the call graph would then link calls between unrelated requests; a
+ * batch saves queue hand-offs and the work on duplicates. Each request runs
+ * under AnalysisBudget.DEFAULT, so a pathological snippet gets a partial
+ * answer rather than occupying a worker.
+ * Per-phase metrics are published as JMX MBeans.
+ */
+final class AnalysisServer {
+
+    static final int DEFAULT_PORT = 8377;
+
+    private static final int MAX_BATCH = 64;
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /** Runs until the process is stopped; {@code args} may hold the port. */
+    static void run(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        new AnalysisServer().start(port);
+        System.out.println("Analysis server listening on http://127.0.0.1:" + port + " (POST /analyze, GET /stats)");
+    }
+
+    /** Starts serving on {@code port}, or on any free port if it is 0. */
+    HttpServer start(int port) throws IOException {
+        // A long-running process is where slow inputs show up, so always measure and publish over JMX.
+        Metrics.enable();
+        Metrics.registerMBeans();
+        // Responses are small; without TCP_NODELAY each one can wait out a delayed ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/analyze", this::handleAnalyze);
+        server.createContext("/stats", this::handleStats);
+        // Handlers never wait for an analysis, so one thread per core serves many connections.
+        int workers = Runtime.getRuntime().availableProcessors();
+        server.setExecutor(Executors.newFixedThreadPool(workers, daemon("http")));
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, daemon("analysis"));
+        for (int i = 0; i < workers; i++) {
+            pool.execute(this::work);
+        }
+        server.start();
+        return server;
+    }
+
+    private void handleAnalyze(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "{\"error\":\"use POST\"}");
+            return;
+        }
+        String source = readBody(exchange.getRequestBody());
+        if (source == null) {
+            send(exchange, 413, "{\"error\":\"body larger than " + MAX_BODY_BYTES + " bytes\"}");
+            return;
+        }
+        if (!queue.offer(new Request(source, exchange))) {
+            rejected.increment();
+            send(exchange, 503, "{\"error\":\"queue full\"}");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        send(exchange, 200, "{\"queued\":" + queue.size() + ",\"inFlight\":" + inFlight.get()
+                + ",\"completed\":" + completed.sum() + ",\"rejected\":" + rejected.sum()
+                + ",\"batches\":" + batches.sum() + "}");
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        Map<String, String> answered = new HashMap<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            inFlight.addAndGet(batch.size());
+            batches.increment();
+
+            for (Request request : batch) {
+                int status = 200;
+                String json = answered.get(request.source);
+                if (json == null) {
+                    try {
+                        json = ResultJson.toJson(ComplexityEngine.analyze(request.source, AnalysisBudget.DEFAULT));
+                        answered.put(request.source, json);
+                    } catch (RuntimeException | StackOverflowError e) {
+                        status = 500;
+                        StringBuilder error = new StringBuilder("{\"error\":");
+                        ResultJson.quote(error, String.valueOf(e));
+                        json = error.append('}').toString();
+                    }
+                }
+                try {
+                    send(request.exchange, status, json);
+                } catch (IOException e) {
+                    // The client went away; nothing left to tell it.
+                }
+                inFlight.decrementAndGet();
+                completed.increment();
+            }
+            batch.clear();
+            answered.clear();
+        }
+    }
+
+    /** Reads the whole body as UTF-8, or returns null if it exceeds MAX_BODY_BYTES. */
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            if (body.size() + n > MAX_BODY_BYTES) {
+                return null;
+            }
+            body.write(buffer, 0, n);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Daemon threads; the server's own dispatcher thread keeps the JVM alive.
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Request {
+        final String source;
+        final HttpExchange exchange;
+
+        Request(String source, HttpExchange exchange) {
+            this.source = source;
+            this.exchange = exchange;
+        }
+    }
+}
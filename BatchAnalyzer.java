@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Batch mode: analyzes every .java file under the given files and directories
+ * on a work-stealing ForkJoinPool.
+ *
+ * Each task writes only its own slots of the shared result array and returns
+ * the number of bytes it read, so workers never contend on a lock or counter.
+ * Every file runs under an AnalysisBudget and errors are reported per file,
+ * so one pathological file yields a partial result instead of stalling the run.
+ */
+final class BatchAnalyzer {
+
+    // Files per leaf task; small enough that idle workers can steal the tail.
+    private static final int LEAF_SIZE = 8;
+
+    // In-memory entries kept per run; the on-disk tier, if any, is unbounded.
+    private static final int CACHE_CAPACITY = 10000;
+
+    // Each worker thread decodes into its own reusable buffer.
+    private static final ThreadLocal<SourceReader> READERS = ThreadLocal.withInitial(SourceReader::new);
+
+    private final List<Path> files;
+    private final String[] results;
+    private final ResultCache cache;
+    private final AnalysisBudget budget;
+    // When set, results go straight to it and the results array is not allocated.
+    private final ReportWriter report;
+
+    private BatchAnalyzer(List<Path> files, ResultCache cache, AnalysisBudget budget, ReportWriter report) {
+        this.files = files;
+        this.results = report == null ? new String[files.size()] : null;
+        this.cache = cache;
+        this.budget = budget;
+        this.report = report;
+    }
+
+    /**
+     * Runs the batch; {@code --cache DIR} keeps results on disk between runs,
+     * {@code --time-budget MS} and {@code --max-chars N} override the per-file
+     * limits of {@link AnalysisBudget#DEFAULT} (a time budget of 0 means none),
+     * and {@code --report FILE} streams results to an NDJSON or binary report
+     * (see ReportWriter) instead of printing them.
+     */
+    static void run(String[] args) throws IOException {
+        Path cacheDirectory = null;
+        Path reportFile = null;
+        long timeMillis = AnalysisBudget.DEFAULT.timeMillis;
+        int maxChars = AnalysisBudget.DEFAULT.maxChars;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--report") && i + 1 < args.length) {
+                reportFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--time-budget") && i + 1 < args.length) {
+                timeMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--max-chars") && i + 1 < args.length) {
+                maxChars = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+
+        List<Path> files = collectSources(inputs);
+        ResultCache cache = new ResultCache(CACHE_CAPACITY, cacheDirectory);
+        ReportWriter report = reportFile != null ? ReportWriter.open(reportFile) : null;
+        BatchAnalyzer batch = new BatchAnalyzer(files, cache, new AnalysisBudget(timeMillis, maxChars), report);
+
+        long startNanos = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        long bytes;
+        try {
+            bytes = pool.invoke(batch.new AnalyzeRange(0, files.size()));
+        } catch (UncheckedIOException e) {
+            throw new IOException("Cannot write report " + reportFile, e.getCause());
+        } finally {
+            pool.shutdown();
+            if (report != null) {
+                report.close();
+            }
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+
+        if (report == null) {
+            for (int i = 0; i < files.size(); i++) {
+                System.out.println(files.get(i) + " -> " + batch.results[i]);
+            }
+        }
+
+        double megabytes = bytes / (1024.0 * 1024.0);
+        System.out.println(String.format("%n=== Batch Summary ===%nAnalyzed %d files (%.2f MB) in %.2f s: %.1f files/s, %.2f MB/s",
+                files.size(), megabytes, seconds, files.size() / seconds, megabytes / seconds));
+        System.out.println("Cache: " + cache.hits() + " hits, " + cache.misses() + " misses");
+        if (report != null) {
+            System.out.println("Report: " + report.count() + " results written to " + reportFile);
+        }
+    }
+
+    static List<Path> collectSources(List<String> args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private long analyze(int index) {
+        Path file = files.get(index);
+        ResultCache.Result result;
+        String partial = null;
+        long size;
+        try {
+            long deadline = budget.deadline();
+            SourceReader reader = READERS.get();
+            // UTF-8 has at least one byte per char, so this decodes at most budget.maxChars chars.
+            TokenStream tokens = TokenStream.tokenize(reader.read(file, budget.maxChars), deadline);
+            String key = ResultCache.key(tokens);
+            // Tokens cut short by the deadline may match a shorter file's key; analyze them, marked partial.
+            result = tokens.outOfTime() ? null : cache.get(key);
+            if (result == null) {
+                AnalysisResult analysis = ComplexityEngine.analyze(tokens, deadline);
+                if (reader.lastTruncated()) {
+                    analysis = analysis.partial(budget.sizeExceeded());
+                }
+                result = new ResultCache.Result(analysis);
+                partial = analysis.partial;
+                // A partial result depends on the budget and the machine; the next run should retry.
+                if (partial == null) {
+                    cache.put(key, result);
+                }
+            } else if (reader.lastTruncated()) {
+                partial = budget.sizeExceeded();
+            }
+            size = reader.lastSize();
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            if (report == null) {
+                results[index] = "Error: " + e;
+                return 0;
+            }
+            try {
+                report.error(file, e.toString());
+            } catch (IOException writeFailed) {
+                throw new UncheckedIOException(writeFailed);
+            }
+            return 0;
+        }
+
+        if (report == null) {
+            results[index] = "Time: " + result.time + " | Space: " + result.space
+                    + (partial != null ? " | Partial: " + partial : "");
+            return size;
+        }
+        try {
+            report.result(file, size, result, partial);
+        } catch (IOException e) {
+            // A report that cannot be written fails the run rather than losing results quietly.
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+
+    private final class AnalyzeRange extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        AnalyzeRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= LEAF_SIZE) {
+                long bytes = 0;
+                for (int i = from; i < to; i++) {
+                    bytes += analyze(i);
+                }
+                return bytes;
+            }
+            int mid = (from + to) >>> 1;
+            AnalyzeRange left = new AnalyzeRange(from, mid);
+            left.fork();
+            long right = new AnalyzeRange(mid, to).compute();
+            return left.join() + right;
+        }
+    }
+}
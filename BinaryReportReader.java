@@ -0,0 +1,188 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads a report written by BinaryReportWriter one block at a time. Columns
+ * are kept as raw bytes and decoded only when asked for, so an aggregate over
+ * one column never decodes paths or the others.
+ */
+final class BinaryReportReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> directories = new ArrayList<>();
+    private final byte[][] columns = new byte[BinaryReportWriter.COLUMNS][];
+    private final int[] lengths = new int[BinaryReportWriter.COLUMNS];
+    private int rows;
+    private boolean complete;
+
+    BinaryReportReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        byte[] magic = new byte[BinaryReportWriter.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryReportWriter.MAGIC) || in.readUnsignedByte() != BinaryReportWriter.VERSION) {
+            in.close();
+            throw new IOException("Not a binary complexity report: " + file);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new byte[256];
+        }
+    }
+
+    /** Advances to the next block of rows; false at the end of the report. */
+    boolean next() throws IOException {
+        while (true) {
+            int tag;
+            try {
+                tag = in.readUnsignedByte();
+            } catch (EOFException e) {
+                rows = 0;
+                return false;
+            }
+            if (tag == BinaryReportWriter.DIRECTORIES) {
+                for (long n = readVarint(); n > 0; n--) {
+                    directories.add(readText());
+                }
+            } else if (tag == BinaryReportWriter.ROWS) {
+                rows = (int) readVarint();
+                for (int i = 0; i < columns.length; i++) {
+                    lengths[i] = (int) readVarint();
+                    if (columns[i].length < lengths[i]) {
+                        columns[i] = new byte[lengths[i]];
+                    }
+                    in.readFully(columns[i], 0, lengths[i]);
+                }
+                return true;
+            } else if (tag == BinaryReportWriter.END) {
+                readVarint();
+                complete = true;
+                rows = 0;
+                return false;
+            } else {
+                throw new IOException("Corrupt report: unknown block " + tag);
+            }
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /** True once the end marker was read, i.e. the writer closed the report. */
+    boolean complete() {
+        return complete;
+    }
+
+    /** Decodes a varint column of the current block (DIRECTORY, SIZE, TIME or SPACE). */
+    long[] longs(int column) {
+        long[] values = new long[rows];
+        byte[] data = columns[column];
+        int position = 0;
+        for (int row = 0; row < rows; row++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            values[row] = value;
+        }
+        return values;
+    }
+
+    /** Raw values of a byte column of the current block (STATUS or CONFIDENCE). */
+    byte[] bytes(int column) {
+        return Arrays.copyOf(columns[column], rows);
+    }
+
+    /** Full paths of the rows of the current block. */
+    String[] paths() {
+        long[] ids = longs(BinaryReportWriter.DIRECTORY);
+        String[] paths = new String[rows];
+        byte[] data = columns[BinaryReportWriter.NAME];
+        int position = 0;
+        for (int row = 0; row < rows; row++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            String name = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            String directory = directories.get((int) ids[row]);
+            paths[row] = directory.isEmpty() ? name : directory + File.separator + name;
+        }
+        return paths;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Prints file counts per status and per time complexity class, reading only those columns. */
+    static void summarize(Path file, PrintStream out) throws IOException {
+        long files = 0;
+        long bytes = 0;
+        long[] byStatus = new long[3];
+        Map<Complexity, Long> byTime = new TreeMap<>((a, b) -> b.compareTo(a));
+        try (BinaryReportReader reader = new BinaryReportReader(file)) {
+            while (reader.next()) {
+                byte[] status = reader.bytes(BinaryReportWriter.STATUS);
+                long[] time = reader.longs(BinaryReportWriter.TIME);
+                long[] size = reader.longs(BinaryReportWriter.SIZE);
+                for (int row = 0; row < reader.rows(); row++) {
+                    byStatus[status[row]]++;
+                    bytes += size[row];
+                    if (status[row] != BinaryReportWriter.ERROR) {
+                        byTime.merge(Complexity.fromCode((int) time[row]), 1L, Long::sum);
+                    }
+                }
+                files += reader.rows();
+            }
+            out.println(String.format("=== Report Summary ===%n%d files (%.2f MB): %d complete, %d partial, %d errors%s",
+                    files, bytes / (1024.0 * 1024.0), byStatus[BinaryReportWriter.COMPLETE],
+                    byStatus[BinaryReportWriter.PARTIAL], byStatus[BinaryReportWriter.ERROR],
+                    reader.complete() ? "" : " (report is incomplete)"));
+        }
+        out.println("\nFiles by time complexity:");
+        for (Map.Entry<Complexity, Long> entry : byTime.entrySet()) {
+            out.println(String.format("  %-16s %d", entry.getKey(), entry.getValue()));
+        }
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private String readText() throws IOException {
+        byte[] utf8 = new byte[(int) readVarint()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact columnar report, for dashboards that aggregate many runs.
+ *
+ * Layout: the magic "CXRP" and a version byte, then blocks, each introduced
+ * by a tag byte:
+ * <ul>
+ * <li>'D': a varint count, then that many directories (varint byte length and
+ * UTF-8), numbered on from the ones before. Paths are stored as a directory
+ * id and a file name, so the directory is written once.</li>
+ * <li>'R': a varint row count, then the columns below in order, each as a
+ * varint byte length followed by the values, so a reader can skip the
+ * columns it does not need.</li>
+ * <li>'Z': a varint total row count; a report without it was cut short.</li>
+ * </ul>
+ * Columns: directory id (varint), file name (varint length and UTF-8), size in
+ * bytes (varint), status (byte: complete, partial, error), time and space
+ * complexity (varint {@link Complexity#code}) and confidence (byte ordinal).
+ * Detail texts and error messages are only in the NDJSON report.
+ *
+ * Rows are buffered per column up to BLOCK_ROWS, so memory is bounded by one
+ * block plus the directory dictionary.
+ */
+final class BinaryReportWriter extends ReportWriter {
+
+    static final byte[] MAGIC = {'C', 'X', 'R', 'P'};
+    static final int VERSION = 1;
+
+    static final byte DIRECTORIES = 'D';
+    static final byte ROWS = 'R';
+    static final byte END = 'Z';
+
+    static final int DIRECTORY = 0;
+    static final int NAME = 1;
+    static final int SIZE = 2;
+    static final int STATUS = 3;
+    static final int TIME = 4;
+    static final int SPACE = 5;
+    static final int CONFIDENCE = 6;
+    static final int COLUMNS = 7;
+
+    static final byte COMPLETE = 0;
+    static final byte PARTIAL = 1;
+    static final byte ERROR = 2;
+
+    private static final int BLOCK_ROWS = 4096;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> directoryIds = new HashMap<>();
+    // Directories first seen in the current block; written just before it.
+    private final List<String> newDirectories = new ArrayList<>();
+    private final Column[] columns = new Column[COLUMNS];
+    private int rows;
+    private long count;
+
+    BinaryReportWriter(Path file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new Column();
+        }
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    @Override
+    synchronized void result(Path source, long bytes, ResultCache.Result result, String partial) throws IOException {
+        row(source, bytes, partial != null ? PARTIAL : COMPLETE, result.timeClass, result.spaceClass,
+                result.confidence.ordinal());
+    }
+
+    @Override
+    synchronized void error(Path source, String message) throws IOException {
+        row(source, 0, ERROR, Complexity.CONSTANT, Complexity.CONSTANT, 0);
+    }
+
+    @Override
+    synchronized long count() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flushBlock();
+            out.writeByte(END);
+            writeVarint(out, count);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void row(Path source, long bytes, byte status, Complexity time, Complexity space, int confidence)
+            throws IOException {
+        Path parent = source.getParent();
+        String directory = parent != null ? parent.toString() : "";
+        Integer id = directoryIds.get(directory);
+        if (id == null) {
+            id = directoryIds.size();
+            directoryIds.put(directory, id);
+            newDirectories.add(directory);
+        }
+
+        columns[DIRECTORY].varint(id);
+        columns[NAME].text(source.getFileName().toString());
+        columns[SIZE].varint(bytes);
+        columns[STATUS].write(status);
+        columns[TIME].varint(time.code());
+        columns[SPACE].varint(space.code());
+        columns[CONFIDENCE].write(confidence);
+        count++;
+        if (++rows == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (!newDirectories.isEmpty()) {
+            out.writeByte(DIRECTORIES);
+            writeVarint(out, newDirectories.size());
+            for (String directory : newDirectories) {
+                byte[] utf8 = directory.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, utf8.length);
+                out.write(utf8);
+            }
+            newDirectories.clear();
+        }
+        if (rows == 0) {
+            return;
+        }
+        out.writeByte(ROWS);
+        writeVarint(out, rows);
+        for (Column column : columns) {
+            writeVarint(out, column.size);
+            out.write(column.data, 0, column.size);
+            column.size = 0;
+        }
+        rows = 0;
+    }
+
+    /** Unsigned LEB128, as read back by {@link BinaryReportReader}. */
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Growable byte buffer holding one column of the current block; reused across blocks. */
+    private static final class Column {
+        byte[] data = new byte[BLOCK_ROWS];
+        int size;
+
+        void write(int b) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = (byte) b;
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void text(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            for (byte b : utf8) {
+                write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Bytecode mode: estimates complexity from compiled classes, in .class files
+ * or inside JARs, without their sources.
+ *
+ * Each method is decoded instruction by instruction. A branch to an earlier
+ * instruction closes a loop whose body runs from the target to the branch;
+ * loops sharing a target are one loop, and loops nest when their bodies do.
+ * An invoke of the method itself is recursion, an invoke matching a cost
+ * rule (see CostRules) a library call of that cost, matched by the simple
+ * name of its owner class, and a division by 2 or shift by 1 a halving step.
+ * An array costs n per dimension unless its size was pushed as a constant, a
+ * collection costs n if its constructor takes an argument, and a call such as
+ * add inside loops grows a collection once per pass. The findings are
+ * composed as in the other modes (see MethodAnalysis.Composition), every loop
+ * counting n, one method at a time; calls to other methods are not followed.
+ *
+ * Classes are decoded in parallel, each task writing only its own slot.
+ */
+final class BytecodeAnalyzer {
+
+    private static final CostRules RULES = CostRules.loaded();
+
+    private BytecodeAnalyzer() {
+    }
+
+    /** Analyzes the given .class files, JARs and directories (searched for both). */
+    static void run(String[] args) throws IOException {
+        long startNanos = System.nanoTime();
+        List<ZipFile> jars = new ArrayList<>();
+        try {
+            List<Source> sources = new ArrayList<>();
+            for (String arg : args) {
+                collect(Paths.get(arg), sources, jars);
+            }
+
+            ClassResult[] results = new ClassResult[sources.size()];
+            IntStream.range(0, sources.size()).parallel().forEach(i -> results[i] = analyze(sources.get(i)));
+
+            List<Map.Entry<String, AnalysisResult.MethodResult>> methods = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                ClassResult result = results[i];
+                if (result.error != null) {
+                    System.out.println(sources.get(i).label + " -> Error: " + result.error);
+                    continue;
+                }
+                System.out.println(sources.get(i).label + " -> " + result.summary);
+                for (AnalysisResult.MethodResult method : result.methods) {
+                    methods.add(new AbstractMap.SimpleImmutableEntry<>(result.className, method));
+                }
+            }
+
+            double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+            System.out.println(String.format("%n=== Bytecode Summary ===%nAnalyzed %d class%s (%d method%s) in %.2f s:"
+                    + " %.1f classes/s", sources.size(), sources.size() == 1 ? "" : "es", methods.size(),
+                    methods.size() == 1 ? "" : "s", seconds, sources.size() / seconds));
+            RepositoryAnalyzer.printMethods(methods);
+        } finally {
+            for (ZipFile jar : jars) {
+                jar.close();
+            }
+        }
+    }
+
+    private static void collect(Path path, List<Source> sources, List<ZipFile> jars) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException("No such file or directory: " + path);
+        }
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                for (Path file : walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    String name = file.toString();
+                    if (name.endsWith(".class") || name.endsWith(".jar")) {
+                        collect(file, sources, jars);
+                    }
+                }
+            }
+        } else if (path.toString().endsWith(".jar")) {
+            ZipFile jar = new ZipFile(path.toFile());
+            jars.add(jar);
+            for (ZipEntry entry : jar.stream().collect(Collectors.toList())) {
+                if (!entry.isDirectory() && entry.getName().endsWith(".class")
+                        && !entry.getName().endsWith("module-info.class")) {
+                    sources.add(new Source(path + "!" + entry.getName(), null, jar, entry));
+                }
+            }
+        } else {
+            sources.add(new Source(path.toString(), path, null, null));
+        }
+    }
+
+    private static ClassResult analyze(Source source) {
+        try {
+            ClassFile classFile = ClassFile.parse(source.read());
+            List<AnalysisResult.MethodResult> methods = new ArrayList<>(classFile.methods.size());
+            AnalysisResult.MethodResult worst = null;
+            for (ClassFile.Method method : classFile.methods) {
+                if (method.code == null || (method.access & ClassFile.ACC_BRIDGE) != 0) {
+                    continue;
+                }
+                AnalysisResult.MethodResult result = analyze(classFile, method);
+                methods.add(result);
+                if (worst == null || result.time.compareTo(worst.time) > 0) {
+                    worst = result;
+                }
+            }
+            String summary = worst == null ? "No method bodies"
+                    : "Time: " + worst.timeDetail + " (in " + worst.name + ") | Space: " + worst.spaceDetail;
+            return new ClassResult(classFile.name.replace('/', '.'), methods, summary, null);
+        } catch (IOException | RuntimeException e) {
+            return new ClassResult(null, null, null, e.toString());
+        }
+    }
+
+    /** Decodes one method and ranks what it finds. */
+    static AnalysisResult.MethodResult analyze(ClassFile classFile, ClassFile.Method method) {
+        byte[] code = method.code;
+        // Back edges as (target, source) pairs, in pc order of their source.
+        List<int[]> backEdges = new ArrayList<>();
+        // Library calls with a cost rule, as (pc, rule) pairs.
+        IntStack library = new IntStack();
+        // Growth calls, to be costed by their loop depth once the loops are known.
+        IntStack growth = new IntStack();
+        boolean recursive = false;
+        Cost allocation = Cost.ONE;
+        Cost largest = Cost.ONE;
+        String allocationDetail = null;
+        int halvingAt = -1;
+        int previous = -1;
+        // Opcodes of the last 256 instructions, by instruction count, for the sizes of multianewarray.
+        int[] recent = new int[256];
+        int decoded = 0;
+
+        for (int pc = 0; pc < code.length; ) {
+            int opcode = code[pc] & 0xFF;
+            int length = length(code, pc);
+            switch (opcode) {
+                case 0x99: case 0x9a: case 0x9b: case 0x9c: case 0x9d: case 0x9e: // if<cond>
+                case 0x9f: case 0xa0: case 0xa1: case 0xa2: case 0xa3: case 0xa4: // if_icmp<cond>
+                case 0xa5: case 0xa6: case 0xa7: case 0xc6: case 0xc7: // if_acmp<cond>, goto, ifnull, ifnonnull
+                    addBranch(backEdges, pc, pc + (short) u2(code, pc + 1));
+                    break;
+                case 0xc8: // goto_w
+                    addBranch(backEdges, pc, pc + s4(code, pc + 1));
+                    break;
+                case 0xaa: // tableswitch
+                case 0xab: { // lookupswitch
+                    int base = (pc + 4) & ~3;
+                    addBranch(backEdges, pc, pc + s4(code, base));
+                    if (opcode == 0xaa) {
+                        int targets = s4(code, base + 8) - s4(code, base + 4) + 1;
+                        for (int k = 0; k < targets; k++) {
+                            addBranch(backEdges, pc, pc + s4(code, base + 12 + 4 * k));
+                        }
+                    } else {
+                        int pairs = s4(code, base + 4);
+                        for (int k = 0; k < pairs; k++) {
+                            addBranch(backEdges, pc, pc + s4(code, base + 12 + 8 * k));
+                        }
+                    }
+                    break;
+                }
+                case 0xb6: case 0xb7: case 0xb8: case 0xb9: { // invoke{virtual,special,static,interface}
+                    int index = u2(code, pc + 1);
+                    String owner = classFile.memberOwner(index);
+                    String name = classFile.memberName(index);
+                    if (owner == null) {
+                        break;
+                    }
+                    if (owner.equals(classFile.name) && name.equals(method.name)
+                            && classFile.memberDescriptor(index).equals(method.descriptor)) {
+                        recursive = true;
+                    }
+                    int rule = RULES.match(simpleName(owner), name);
+                    if (rule >= 0) {
+                        library.push(pc);
+                        library.push(rule);
+                    }
+                    if (opcode == 0xb7 && name.equals("<init>") && isCollection(owner)
+                            && !classFile.memberDescriptor(index).startsWith("()")) {
+                        // A collection constructed with a size or a source to copy.
+                        Cost size = Cost.N;
+                        if (size.complexity().compareTo(largest.complexity()) > 0) {
+                            largest = size;
+                            allocationDetail = "data structure allocation";
+                        }
+                        allocation = allocation.plus(size);
+                    } else if (opcode != 0xb8 && isGrowth(name)) {
+                        growth.push(pc);
+                    }
+                    break;
+                }
+                case 0xbc: case 0xbd: case 0xc5: { // newarray, anewarray, multianewarray
+                    // A size pushed as a constant (iconst, bipush, sipush, ldc) makes a constant array.
+                    int pushed = previous < 0 ? -1 : code[previous] & 0xFF;
+                    Cost size = opcode != 0xc5 ? (isConstant(pushed) ? Cost.ONE : Cost.N)
+                            : MethodAnalysis.insideLoops(Cost.ONE,
+                                    sizedDimensions(recent, decoded, code[pc + 3] & 0xFF));
+                    if (size.complexity().compareTo(largest.complexity()) > 0) {
+                        largest = size;
+                        allocationDetail = "array allocation";
+                    }
+                    allocation = allocation.plus(size);
+                    break;
+                }
+                case 0x6c: case 0x6d: // idiv, ldiv after iconst_2
+                    if (previous >= 0 && (code[previous] & 0xFF) == 0x05 && halvingAt < 0) {
+                        halvingAt = pc;
+                    }
+                    break;
+                case 0x7a: case 0x7b: case 0x7c: case 0x7d: // ishr, lshr, iushr, lushr after iconst_1
+                    if (previous >= 0 && (code[previous] & 0xFF) == 0x04 && halvingAt < 0) {
+                        halvingAt = pc;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            previous = pc;
+            recent[decoded++ & 0xFF] = opcode;
+            pc += length;
+        }
+
+        int[][] loops = loops(backEdges);
+        // As in MethodAnalysis: the summed cost of the calls, reported by the
+        // costliest and, of equally costly ones, the first of the deepest.
+        Cost libraryCost = Cost.ONE;
+        Cost costliest = null;
+        int libraryDepth = -1;
+        String libraryName = null;
+        for (int k = 0; k < library.size(); k += 2) {
+            int depth = depthAt(loops, library.get(k));
+            CostRule rule = RULES.rule(library.get(k + 1));
+            Cost cost = MethodAnalysis.insideLoops(rule.time, depth);
+            libraryCost = libraryCost.plus(cost);
+            int cmp = costliest == null ? 1 : cost.complexity().compareTo(costliest.complexity());
+            if (cmp > 0 || (cmp == 0 && depth > libraryDepth)) {
+                costliest = cost;
+                libraryDepth = depth;
+                libraryName = rule.description;
+            }
+        }
+        int nestedLoops = 0;
+        for (int[] loop : loops) {
+            nestedLoops = Math.max(nestedLoops, loop[2]);
+        }
+        for (int k = 0; k < growth.size(); k++) {
+            int depth = depthAt(loops, growth.get(k));
+            Cost size = MethodAnalysis.insideLoops(Cost.ONE, depth);
+            if (size.complexity().compareTo(largest.complexity()) > 0) {
+                largest = size;
+                allocationDetail = "data structure growth inside " + MethodAnalysis.loops(depth);
+            }
+            allocation = allocation.plus(size);
+        }
+        MethodAnalysis.Composition composition = new MethodAnalysis.Composition(nestedLoops,
+                MethodAnalysis.nestedLoops(nestedLoops, halvingAt >= 0), libraryDepth, libraryCost, libraryName,
+                halvingAt >= 0, allocation, allocationDetail, recursive);
+        MethodAnalysis.Estimate time = composition.time();
+        MethodAnalysis.Estimate space = composition.space();
+        return new AnalysisResult.MethodResult(method.name, method.line, time.cost, time.text, time.confidence,
+                space.cost, space.text);
+    }
+
+    // Owners are internal names such as java/util/ArrayList; the simple name decides.
+    private static boolean isCollection(String owner) {
+        return MethodAnalysis.isCollection(simpleName(owner));
+    }
+
+    /** The name source code qualifies calls with: java/util/Arrays is Arrays, Outer$Inner is Inner. */
+    private static String simpleName(String owner) {
+        return owner.substring(Math.max(owner.lastIndexOf('/'), owner.lastIndexOf('$')) + 1);
+    }
+
+    private static boolean isGrowth(String name) {
+        for (String growth : MethodAnalysis.GROWTH_METHODS) {
+            if (growth.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addBranch(List<int[]> backEdges, int source, int target) {
+        if (target <= source) {
+            backEdges.add(new int[] {target, source});
+        }
+    }
+
+    /**
+     * Loops as {start, end, depth}, sorted by start: back edges to the same
+     * target are merged, and a loop's depth counts the loops whose bodies
+     * contain it, itself included.
+     */
+    private static int[][] loops(List<int[]> backEdges) {
+        backEdges.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        List<int[]> loops = new ArrayList<>();
+        for (int[] edge : backEdges) {
+            int[] last = loops.isEmpty() ? null : loops.get(loops.size() - 1);
+            if (last != null && last[0] == edge[0]) {
+                last[1] = Math.max(last[1], edge[1]);
+            } else {
+                loops.add(new int[] {edge[0], edge[1], 0});
+            }
+        }
+        IntStack open = new IntStack();
+        for (int k = 0; k < loops.size(); k++) {
+            int[] loop = loops.get(k);
+            while (!open.isEmpty() && loops.get(open.peek())[1] < loop[0]) {
+                open.pop();
+            }
+            open.push(k);
+            loop[2] = open.size();
+        }
+        return loops.toArray(new int[0][]);
+    }
+
+    private static int depthAt(int[][] loops, int pc) {
+        int depth = 0;
+        for (int[] loop : loops) {
+            if (loop[0] <= pc && pc <= loop[1]) {
+                depth = Math.max(depth, loop[2]);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Dimensions of a multianewarray whose sizes are not constants. When the
+     * instructions just before it each push one size, as for new int[n][3],
+     * each is checked; otherwise only the sizes pushed by a trailing run of
+     * constants are known to be constant.
+     */
+    private static int sizedDimensions(int[] recent, int decoded, int dimensions) {
+        if (decoded < dimensions) {
+            return dimensions;
+        }
+        int constants = 0;
+        int trailing = -1;
+        boolean onePushEach = true;
+        for (int k = 1; k <= dimensions; k++) {
+            int opcode = recent[(decoded - k) & 0xFF];
+            if (isConstant(opcode)) {
+                constants++;
+            } else {
+                trailing = trailing < 0 ? k - 1 : trailing;
+                // iload, iload_0..iload_3
+                onePushEach &= opcode == 0x15 || (opcode >= 0x1a && opcode <= 0x1d);
+            }
+        }
+        return dimensions - (onePushEach ? constants : trailing);
+    }
+
+    /** Whether the opcode pushes a constant: iconst, lconst, fconst, dconst, bipush, sipush or ldc. */
+    private static boolean isConstant(int opcode) {
+        return opcode >= 0x02 && opcode <= 0x13;
+    }
+
+    /** Length in bytes of the instruction at {@code pc}, operands included. */
+    private static int length(byte[] code, int pc) {
+        int opcode = code[pc] & 0xFF;
+        switch (opcode) {
+            case 0x10: case 0x12: case 0x15: case 0x16: case 0x17: case 0x18: case 0x19: // bipush, ldc, loads
+            case 0x36: case 0x37: case 0x38: case 0x39: case 0x3a: case 0xa9: case 0xbc: // stores, ret, newarray
+                return 2;
+            case 0x11: case 0x13: case 0x14: case 0x84: case 0xb2: case 0xb3: case 0xb4: case 0xb5:
+            case 0xb6: case 0xb7: case 0xb8: case 0xbb: case 0xbd: case 0xc0: case 0xc1: case 0xc6: case 0xc7:
+                return 3;
+            case 0xc5: // multianewarray
+                return 4;
+            case 0xb9: case 0xba: case 0xc8: case 0xc9: // invokeinterface, invokedynamic, goto_w, jsr_w
+                return 5;
+            case 0xc4: // wide
+                return (code[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+            case 0xaa: { // tableswitch
+                int base = (pc + 4) & ~3;
+                return base - pc + 12 + 4 * (s4(code, base + 8) - s4(code, base + 4) + 1);
+            }
+            case 0xab: { // lookupswitch
+                int base = (pc + 4) & ~3;
+                return base - pc + 8 + 8 * s4(code, base + 4);
+            }
+            default:
+                // Conditional branches, goto and jsr take a two-byte offset; the rest stand alone.
+                return opcode >= 0x99 && opcode <= 0xa8 ? 3 : 1;
+        }
+    }
+
+    private static int u2(byte[] code, int at) {
+        return (code[at] & 0xFF) << 8 | (code[at + 1] & 0xFF);
+    }
+
+    private static int s4(byte[] code, int at) {
+        return code[at] << 24 | (code[at + 1] & 0xFF) << 16 | (code[at + 2] & 0xFF) << 8 | (code[at + 3] & 0xFF);
+    }
+
+    /** A class to analyze: a file on disk or an entry of an open JAR. */
+    private static final class Source {
+        final String label;
+        final Path file;
+        final ZipFile jar;
+        final ZipEntry entry;
+
+        Source(String label, Path file, ZipFile jar, ZipEntry entry) {
+            this.label = label;
+            this.file = file;
+            this.jar = jar;
+            this.entry = entry;
+        }
+
+        byte[] read() throws IOException {
+            if (file != null) {
+                return Files.readAllBytes(file);
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, (int) entry.getSize()));
+                byte[] buffer = new byte[8192];
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    bytes.write(buffer, 0, n);
+                }
+                return bytes.toByteArray();
+            }
+        }
+    }
+
+    /** Per-method results of one class and the line printed for it, or the error it failed with. */
+    private static final class ClassResult {
+        final String className;
+        final List<AnalysisResult.MethodResult> methods;
+        final String summary;
+        final String error;
+
+        ClassResult(String className, List<AnalysisResult.MethodResult> methods, String summary, String error) {
+            this.className = className;
+            this.methods = methods;
+            this.summary = summary;
+            this.error = error;
+        }
+    }
+}
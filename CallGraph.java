@@ -0,0 +1,864 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Method declaration table and call-site index built from a TokenStream.
+ *
+ * A single pass over the tokens records every method that has a body and every
+ * call made from inside one. Calls are resolved by name through an
+ * open-addressing table, then Tarjan's algorithm finds the strongly connected
+ * components. Only calls that can reach a method of this source are linked:
+ * unqualified ones and those qualified with {@code this} or a class declared
+ * here. {@code memory.get(key)} inside a method named get calls some other
+ * object's get, not itself. Of the overloads of a name, a call reaches those
+ * that take its number of arguments. A component is a recursion cycle if it holds
+ * more than one method or a method that calls itself. Everything is linear in
+ * the number of tokens plus call sites.
+ *
+ * Calls made outside any method body (snippets of bare statements) are kept as
+ * call sites with caller -1; they take part in cost composition but not in the
+ * graph itself.
+ */
+final class CallGraph {
+
+    private final TokenStream tokens;
+    private int methodCount;
+    private int[] nameTokens = new int[16];
+    private int[] bodyStarts = new int[16];
+    private int[] bodyEnds = new int[16];
+    // Parameter count of each method; ~fixed for varargs (see accepts).
+    private int[] parameters = new int[16];
+    // Name tokens of the classes, interfaces and enums declared in the source, in an
+    // open-addressing table by name hash (-1 for empty slots); see declaresClass.
+    private int[] classNames = emptyTable(16);
+    private int classCount;
+    // Set if indexing stopped at the deadline; later methods and calls are missing.
+    private boolean outOfTime;
+
+    // Call sites as parallel arrays: the calling method and the callee name token.
+    private int callCount;
+    private int[] callers = new int[16];
+    private int[] calleeTokens = new int[16];
+    private int[] arguments = new int[16];
+
+    // First declaration each call resolves to (-1 if none); further ones via nextTarget.
+    private int[] resolved;
+    // Overload a call passes over because it is the caller itself (see excludeCaller), or -1.
+    private int[] skipped;
+    // Calls taken as recursion although other overloads accept them too; they link to the caller alone.
+    private boolean[] selfOnly;
+    private int[] sameName;
+
+    // Compressed adjacency: callees of method m are targets[offsets[m] .. offsets[m + 1]).
+    private int[] offsets;
+    private int[] targets;
+
+    private final List<int[]> cycles = new ArrayList<>();
+    private boolean[] recursive;
+    private int[] components;
+    // Methods in the order Tarjan finished their component: callees before callers.
+    private int[] calleesFirst;
+
+    private CallGraph(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    static CallGraph build(TokenStream tokens) {
+        return build(tokens, AnalysisBudget.NO_DEADLINE);
+    }
+
+    /**
+     * Same as {@link #build(TokenStream)}, but stops indexing once {@code deadline}
+     * (see {@link AnalysisBudget#deadline}) has passed; see {@link #outOfTime}.
+     */
+    static CallGraph build(TokenStream tokens, long deadline) {
+        long started = Metrics.start(Metrics.Phase.CALL_GRAPH);
+        CallGraph graph = new CallGraph(tokens);
+        graph.index(deadline);
+        graph.link();
+        graph.findCycles();
+        Metrics.stop(Metrics.Phase.CALL_GRAPH, started);
+        return graph;
+    }
+
+    /** True if indexing ran out of time, so methods and calls after some point are missing. */
+    boolean outOfTime() {
+        return outOfTime;
+    }
+
+    int methodCount() {
+        return methodCount;
+    }
+
+    String methodName(int method) {
+        return tokens.text(nameTokens[method]);
+    }
+
+    int nameToken(int method) {
+        return nameTokens[method];
+    }
+
+    /** Token index of the method's opening body brace. */
+    int bodyStart(int method) {
+        return bodyStarts[method];
+    }
+
+    /** Token index of the method's closing body brace. */
+    int bodyEnd(int method) {
+        return bodyEnds[method];
+    }
+
+    boolean hasRecursion() {
+        return !cycles.isEmpty();
+    }
+
+    /** True if the method is part of a recursion cycle. */
+    boolean isRecursive(int method) {
+        return recursive[method];
+    }
+
+    /** Strongly connected component id; methods in one recursion cycle share it. */
+    int component(int method) {
+        return components[method];
+    }
+
+    /** Methods ordered so that every callee outside a method's own cycle comes before it. */
+    int[] calleesFirst() {
+        return calleesFirst;
+    }
+
+    int callCount() {
+        return callCount;
+    }
+
+    /** Method making the call, or -1 for a call outside any method. */
+    int caller(int call) {
+        return callers[call];
+    }
+
+    /** Token index of the called name. */
+    int callToken(int call) {
+        return calleeTokens[call];
+    }
+
+    /** Call site whose callee name is the given token, or -1 if there is none. */
+    int callAt(int token) {
+        // Call sites are recorded in token order.
+        int call = Arrays.binarySearch(calleeTokens, 0, callCount, token);
+        return call >= 0 ? call : -1;
+    }
+
+    /** First method the call resolves to, or -1; further overloads via {@link #nextTarget}. */
+    int target(int call) {
+        return resolved[call];
+    }
+
+    /** The overload after {@code method} that the call also resolves to, or -1. */
+    int nextTarget(int call, int method) {
+        if (selfOnly[call]) {
+            return -1;
+        }
+        int next = sameName[method];
+        while (next >= 0 && (!accepts(parameters[next], arguments[call]) || next == skipped[call])) {
+            next = sameName[next];
+        }
+        return next;
+    }
+
+    /** Next method sharing this method's name, or -1. */
+    int nextOverload(int method) {
+        return sameName[method];
+    }
+
+    /** Number of parameters, or ~k for varargs after k fixed parameters. */
+    int parameters(int method) {
+        return parameters[method];
+    }
+
+    /** Number of arguments of the call. */
+    int arguments(int call) {
+        return arguments[call];
+    }
+
+    /** True if a method with {@code parameters} (see {@link #parameters}) can take {@code arguments}. */
+    static boolean accepts(int parameters, int arguments) {
+        return parameters >= 0 ? arguments == parameters : arguments >= ~parameters;
+    }
+
+    /** Names of the methods in each recursion cycle, in declaration order. */
+    List<List<String>> recursiveCycles() {
+        List<List<String>> result = new ArrayList<>(cycles.size());
+        for (int[] cycle : cycles) {
+            List<String> names = new ArrayList<>(cycle.length);
+            for (int method : cycle) {
+                names.add(methodName(method));
+            }
+            result.add(names);
+        }
+        return result;
+    }
+
+    private void index(long deadline) {
+        // Innermost method whose body is still open, tracked by the brace that closes it.
+        int[] open = new int[8];
+        int openCount = 0;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            if ((i & 1023) == 0 && AnalysisBudget.expired(deadline)) {
+                outOfTime = true;
+                break;
+            }
+            while (openCount > 0 && i > bodyEnds[open[openCount - 1]]) {
+                openCount--;
+            }
+            if ((tokens.is(i, "class") || tokens.is(i, "interface") || tokens.is(i, "enum"))
+                    && tokens.isIdentifier(i + 1) && !tokens.is(i - 1, '.')) {
+                addClass(i + 1);
+            }
+            if (!tokens.isIdentifier(i) || tokens.isKeyword(i) || !tokens.is(i + 1, '(')) {
+                continue;
+            }
+
+            int body = declarationBody(i);
+            if (body >= 0) {
+                int method = addMethod(i, body, tokens.matching(body));
+                if (openCount == open.length) {
+                    open = Arrays.copyOf(open, openCount * 2);
+                }
+                open[openCount++] = method;
+            } else if (!tokens.is(i - 1, "new")) {
+                addCall(openCount > 0 ? open[openCount - 1] : -1, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the opening body brace if the identifier at
+     * {@code name} starts a method declaration, or -1 if it is a call. A
+     * constructor without modifiers has no token before its name, so a class's
+     * own name right after ; { or } counts as a declaration too.
+     */
+    private int declarationBody(int name) {
+        int before = name - 1;
+        boolean typed = tokens.is(before, '>') || tokens.is(before, ']')
+                || (tokens.isIdentifier(before) && !isStatementKeyword(before));
+        boolean constructor = (tokens.is(before, ';') || tokens.is(before, '{') || tokens.is(before, '}'))
+                && declaresClass(name);
+        if (!typed && !constructor) {
+            return -1;
+        }
+
+        int next = tokens.matching(name + 1) + 1;
+        if (tokens.is(next, "throws")) {
+            // Only names, dots and commas; stopping at anything else keeps the whole pass linear.
+            next++;
+            while (tokens.isIdentifier(next) || tokens.is(next, '.') || tokens.is(next, ',')) {
+                next++;
+            }
+        }
+        return tokens.is(next, '{') ? next : -1;
+    }
+
+    private boolean isStatementKeyword(int index) {
+        return tokens.is(index, "new") || tokens.is(index, "return") || tokens.is(index, "else")
+                || tokens.is(index, "throw") || tokens.is(index, "case") || tokens.is(index, "assert")
+                || tokens.is(index, "do") || tokens.is(index, "instanceof");
+    }
+
+    private int addMethod(int nameToken, int bodyStart, int bodyEnd) {
+        if (methodCount == nameTokens.length) {
+            int capacity = methodCount * 2;
+            nameTokens = Arrays.copyOf(nameTokens, capacity);
+            bodyStarts = Arrays.copyOf(bodyStarts, capacity);
+            bodyEnds = Arrays.copyOf(bodyEnds, capacity);
+            parameters = Arrays.copyOf(parameters, capacity);
+        }
+        nameTokens[methodCount] = nameToken;
+        bodyStarts[methodCount] = bodyStart;
+        bodyEnds[methodCount] = bodyEnd;
+        parameters[methodCount] = countParameters(nameToken + 1);
+        return methodCount++;
+    }
+
+    private void addCall(int caller, int nameToken) {
+        if (callCount == callers.length) {
+            callers = Arrays.copyOf(callers, callCount * 2);
+            calleeTokens = Arrays.copyOf(calleeTokens, callCount * 2);
+            arguments = Arrays.copyOf(arguments, callCount * 2);
+        }
+        callers[callCount] = caller;
+        calleeTokens[callCount] = nameToken;
+        arguments[callCount] = countArguments(nameToken + 1);
+        callCount++;
+    }
+
+    /**
+     * Top-level commas of a parameter list, skipping annotation arguments and
+     * generic type arguments ({@code Map<K, V> m}); ~count if the last is varargs.
+     */
+    private int countParameters(int open) {
+        int close = tokens.matching(open);
+        int count = 0;
+        int angles = 0;
+        boolean varargs = false;
+        for (int i = open + 1; i < close; i++) {
+            if (tokens.is(i, '(') || tokens.is(i, '[')) {
+                i = tokens.matching(i);
+            } else if (tokens.is(i, '<')) {
+                angles++;
+            } else if (tokens.is(i, '>') || tokens.is(i, ">>") || tokens.is(i, ">>>")) {
+                angles = Math.max(0, angles - tokens.length(i));
+            } else if (tokens.is(i, "...")) {
+                varargs = true;
+            } else if (angles == 0 && tokens.is(i, ',')) {
+                count++;
+            }
+        }
+        count = close == open + 1 ? 0 : count + 1;
+        return varargs ? ~(count - 1) : count;
+    }
+
+    /** Top-level commas of an argument list; nested calls, arrays and lambda bodies are skipped whole. */
+    private int countArguments(int open) {
+        int close = tokens.matching(open);
+        if (close == open + 1) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = open + 1; i < close; i++) {
+            if (tokens.is(i, '(') || tokens.is(i, '[') || tokens.is(i, '{')) {
+                i = tokens.matching(i);
+            } else if (tokens.is(i, ',')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * True if the call can reach a method declared in this source: it is
+     * unqualified, or qualified with {@code this} or with a class declared here.
+     */
+    private boolean local(int call) {
+        int name = calleeTokens[call];
+        if (!tokens.is(name - 1, '.')) {
+            return true;
+        }
+        int qualifier = name - 2;
+        return tokens.is(qualifier, "this") || declaresClass(qualifier);
+    }
+
+    private void addClass(int nameToken) {
+        if ((classCount + 1) * 2 > classNames.length) {
+            int[] old = classNames;
+            classNames = emptyTable(old.length * 2);
+            for (int token : old) {
+                if (token >= 0) {
+                    classNames[classSlot(token)] = token;
+                }
+            }
+        }
+        int slot = classSlot(nameToken);
+        if (classNames[slot] < 0) {
+            classNames[slot] = nameToken;
+            classCount++;
+        }
+    }
+
+    /** True if the token is the name of a class, interface or enum declared in the source. */
+    private boolean declaresClass(int token) {
+        return tokens.isIdentifier(token) && classNames[classSlot(token)] >= 0;
+    }
+
+    /** Slot holding the class named like {@code token}, or the empty slot where it would go. */
+    private int classSlot(int token) {
+        int mask = classNames.length - 1;
+        int slot = spread(tokens.hash(token)) & mask;
+        while (classNames[slot] >= 0 && !tokens.sameText(classNames[slot], token)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int[] emptyTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        return table;
+    }
+
+    /** Resolves call sites to declarations by name and builds the adjacency arrays. */
+    private void link() {
+        // Open-addressing table from method name to the first method with that
+        // name; later overloads are chained through sameName.
+        int capacity = Integer.highestOneBit(Math.max(4, methodCount * 2) - 1) << 1;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        sameName = new int[methodCount];
+        Arrays.fill(sameName, -1);
+
+        for (int method = 0; method < methodCount; method++) {
+            int slot = spread(tokens.hash(nameTokens[method])) & mask;
+            while (table[slot] >= 0 && !tokens.sameText(nameTokens[table[slot]], nameTokens[method])) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] < 0) {
+                table[slot] = method;
+            } else {
+                int last = table[slot];
+                while (sameName[last] >= 0) {
+                    last = sameName[last];
+                }
+                sameName[last] = method;
+            }
+        }
+
+        resolved = new int[callCount];
+        skipped = new int[callCount];
+        Arrays.fill(skipped, -1);
+        selfOnly = new boolean[callCount];
+        int[] degree = new int[methodCount + 1];
+        for (int call = 0; call < callCount; call++) {
+            int slot = spread(tokens.hash(calleeTokens[call])) & mask;
+            while (table[slot] >= 0 && !tokens.sameText(nameTokens[table[slot]], calleeTokens[call])) {
+                slot = (slot + 1) & mask;
+            }
+            int target = local(call) ? table[slot] : -1;
+            if (target >= 0 && !accepts(parameters[target], arguments[call])) {
+                target = nextTarget(call, target);
+            }
+            resolved[call] = target;
+            if (target >= 0 && (target == callers[call] || nextTarget(call, target) >= 0)) {
+                excludeCaller(call);
+                target = resolved[call];
+            }
+            if (callers[call] >= 0) {
+                for (; target >= 0; target = nextTarget(call, target)) {
+                    degree[callers[call]]++;
+                }
+            }
+        }
+
+        offsets = new int[methodCount + 1];
+        for (int method = 0; method < methodCount; method++) {
+            offsets[method + 1] = offsets[method] + degree[method];
+        }
+        targets = new int[offsets[methodCount]];
+        int[] fill = Arrays.copyOf(offsets, methodCount);
+        for (int call = 0; call < callCount; call++) {
+            if (callers[call] < 0) {
+                continue;
+            }
+            for (int target = resolved[call]; target >= 0; target = nextTarget(call, target)) {
+                targets[fill[callers[call]]++] = target;
+            }
+        }
+    }
+
+    /**
+     * A call of the caller's own name that other overloads also accept is
+     * recursion unless an argument shows it is meant for another overload: a
+     * literal, concatenation, cast, {@code new} or variable of a type the
+     * caller does not take there but the other does, or the caller's own
+     * parameter passed through a conversion, as in
+     * {@code analyze(CharSequence s) { return analyze(tokenize(s)); }}. Then
+     * the self edge is dropped; otherwise the call links to the caller alone.
+     */
+    private void excludeCaller(int call) {
+        int caller = callers[call];
+        int accepted = 0;
+        boolean self = false;
+        for (int target = resolved[call]; target >= 0; target = nextTarget(call, target)) {
+            accepted++;
+            self |= target == caller;
+        }
+        if (!self || accepted == 1) {
+            return;
+        }
+        if (meantForOtherOverload(call, caller)) {
+            skipped[call] = caller;
+            if (resolved[call] == caller) {
+                resolved[call] = nextTarget(call, caller);
+            }
+        } else {
+            resolved[call] = caller;
+            selfOnly[call] = true;
+        }
+    }
+
+    private boolean meantForOtherOverload(int call, int caller) {
+        int open = calleeTokens[call] + 1;
+        int close = tokens.matching(open);
+        int from = open + 1;
+        for (int k = 0; from < close; k++) {
+            int to = argumentEnd(from, close);
+            int parameter = parameter(caller, k);
+            if (parameter >= 0 && converts(from, to, parameterName(caller, parameter))) {
+                return true;
+            }
+            String type = argumentType(from, to, caller);
+            if (type != null && !takes(caller, k, type, arguments[call])) {
+                for (int target = resolved[call]; target >= 0; target = nextTarget(call, target)) {
+                    if (target != caller && takes(target, k, type, arguments[call])) {
+                        return true;
+                    }
+                }
+            }
+            from = to + 1;
+        }
+        return false;
+    }
+
+    /** True if the argument is a single call taking {@code name} itself, as in {@code tokenize(s)}. */
+    private boolean converts(int from, int to, int name) {
+        int open = to - 1;
+        if (!tokens.is(open, ')')) {
+            return false;
+        }
+        open = tokens.matching(open);
+        int start = open - 1;
+        while (tokens.is(start - 1, '.') && tokens.isIdentifier(start - 2)) {
+            start -= 2;
+        }
+        if (start != from || !tokens.isIdentifier(from) || tokens.isKeyword(from)) {
+            return false;
+        }
+        int close = to - 1;
+        for (int i = open + 1; i < close; i = argumentEnd(i, close) + 1) {
+            if (argumentEnd(i, close) == i + 1 && tokens.sameText(i, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Type of an argument when its tokens tell: a literal, a cast, a
+     * {@code new} expression, or a parameter or local variable of the caller
+     * declared with a plain type. Null otherwise.
+     */
+    private String argumentType(int from, int to, int caller) {
+        if (to - from == 1) {
+            byte kind = tokens.kind(from);
+            if (kind == TokenStream.NUMBER) {
+                return numberType(tokens.text(from).toLowerCase());
+            }
+            if (kind == TokenStream.STRING) {
+                return "String";
+            }
+            if (kind == TokenStream.CHAR) {
+                return "char";
+            }
+            if (tokens.is(from, "true") || tokens.is(from, "false")) {
+                return "boolean";
+            }
+            return tokens.isIdentifier(from) && !tokens.isKeyword(from) ? variableType(from, caller) : null;
+        }
+        if (tokens.kind(from) == TokenStream.STRING && tokens.is(from + 1, '+')) {
+            return "String";
+        }
+        if (tokens.is(from, "new") && tokens.isIdentifier(from + 1)) {
+            return typeAt(from + 1, to);
+        }
+        if (tokens.is(from, '(') && tokens.matching(from) + 1 < to && isTypeName(from + 1)) {
+            int close = tokens.matching(from);
+            for (int i = from + 1; i < close; i++) {
+                if (!tokens.isIdentifier(i) && !tokens.is(i, '.') && !tokens.is(i, '[') && !tokens.is(i, ']')
+                        && !tokens.is(i, '<') && !tokens.is(i, '>') && !tokens.is(i, ',') && !tokens.is(i, '?')) {
+                    return null;
+                }
+            }
+            return typeAt(from + 1, close);
+        }
+        return null;
+    }
+
+    private static String numberType(String literal) {
+        if (literal.startsWith("0x") || literal.startsWith("0b")) {
+            return literal.endsWith("l") ? "long" : "int";
+        }
+        if (literal.endsWith("l")) {
+            return "long";
+        }
+        if (literal.endsWith("f")) {
+            return "float";
+        }
+        return literal.endsWith("d") || literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 ? "double" : "int";
+    }
+
+    /** A primitive type or a capitalized name, as a cast's type is written. */
+    private boolean isTypeName(int token) {
+        return tokens.isIdentifier(token) && (isPrimitive(token)
+                || (!tokens.isKeyword(token) && Character.isUpperCase(tokens.text(token).charAt(0))));
+    }
+
+    private boolean isPrimitive(int token) {
+        return tokens.is(token, "int") || tokens.is(token, "long") || tokens.is(token, "short")
+                || tokens.is(token, "byte") || tokens.is(token, "char") || tokens.is(token, "boolean")
+                || tokens.is(token, "float") || tokens.is(token, "double");
+    }
+
+    /**
+     * Declared type of the variable named at {@code use}: a parameter of the
+     * caller, or the nearest declaration before it in the caller's body.
+     * Only read for ambiguous self calls, so the backward scan is rare.
+     */
+    private String variableType(int use, int caller) {
+        for (int k = 0, parameter; (parameter = parameter(caller, k)) >= 0; k++) {
+            if (tokens.sameText(parameterName(caller, parameter), use)) {
+                return parameterType(caller, parameter);
+            }
+        }
+        for (int i = use - 1; i > bodyStarts[caller]; i--) {
+            if (!tokens.sameText(i, use) || !(tokens.is(i + 1, '=') || tokens.is(i + 1, ';')
+                    || tokens.is(i + 1, ',') || tokens.is(i + 1, ':'))) {
+                continue;
+            }
+            int type = i - 1;
+            while (tokens.is(type, ']') && tokens.is(type - 1, '[')) {
+                type -= 2;
+            }
+            if (tokens.isIdentifier(type) && (isPrimitive(type) || !tokens.isKeyword(type))
+                    && !tokens.is(type - 1, '.') && !tokens.is(type, "var")) {
+                return typeAt(type, i);
+            }
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * True if argument k of a call with {@code count} arguments may have
+     * {@code type} when the call goes to {@code method}: the parameter's type,
+     * or for varargs the element type, or the array itself passed alone.
+     */
+    private boolean takes(int method, int k, String type, int count) {
+        int parameter = parameter(method, k);
+        if (parameter < 0) {
+            return false;
+        }
+        String declared = parameterType(method, parameter);
+        if (parameters[method] >= 0 || k < ~parameters[method]) {
+            return type.equals(declared);
+        }
+        int element = declared.length() - 2;
+        return type.regionMatches(0, declared, 0, element) && (type.length() == element
+                || (type.length() == declared.length() && k == ~parameters[method] && count == k + 1));
+    }
+
+    /**
+     * First token of the k-th parameter of {@code method}, the varargs one for
+     * any k past it, or -1 if it has fewer.
+     */
+    private int parameter(int method, int k) {
+        int open = nameTokens[method] + 1;
+        int close = tokens.matching(open);
+        int last = parameters[method] >= 0 ? parameters[method] - 1 : ~parameters[method];
+        int from = open + 1;
+        for (int index = 0; from < close; index++) {
+            if (index == Math.min(k, last)) {
+                return k <= last ? from : parameters[method] < 0 ? from : -1;
+            }
+            from = parameterEnd(from, close) + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * The parameter's type without annotations, modifiers, package or type
+     * arguments, as "List" or "int[]"; a varargs parameter is an array.
+     */
+    private String parameterType(int method, int parameter) {
+        int i = parameter;
+        while (tokens.is(i, "final") || tokens.is(i, '@')) {
+            if (tokens.is(i, '@')) {
+                i += 2;
+                while (tokens.is(i, '.')) {
+                    i += 2;
+                }
+                if (tokens.is(i, '(')) {
+                    i = tokens.matching(i) + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        int name = parameterName(method, parameter);
+        String type = typeAt(i, name + 1);
+        return tokens.is(name - 1, "...") ? type + "[]" : type;
+    }
+
+    private int parameterName(int method, int parameter) {
+        int name = parameterEnd(parameter, tokens.matching(nameTokens[method] + 1)) - 1;
+        while (tokens.is(name, ']') && tokens.is(name - 1, '[')) {
+            name -= 2;
+        }
+        return name;
+    }
+
+    /**
+     * The type written from {@code start}, ending before {@code end}: the last
+     * name of a dotted chain plus one [] per array dimension, skipping type
+     * arguments and dimension sizes.
+     */
+    private String typeAt(int start, int end) {
+        int base = start;
+        while (tokens.is(base + 1, '.') && tokens.isIdentifier(base + 2)) {
+            base += 2;
+        }
+        StringBuilder type = new StringBuilder(tokens.text(base));
+        int angles = 0;
+        for (int i = base + 1; i < end; i++) {
+            if (tokens.is(i, '<')) {
+                angles++;
+            } else if (tokens.is(i, '>') || tokens.is(i, ">>") || tokens.is(i, ">>>")) {
+                angles = Math.max(0, angles - tokens.length(i));
+            } else if (angles == 0 && tokens.is(i, '[')) {
+                type.append("[]");
+                i = Math.max(i, tokens.matching(i));
+            } else if (angles == 0 && !tokens.is(i, ']')) {
+                break;
+            }
+        }
+        return type.toString();
+    }
+
+    /** End of the parameter starting at {@code from}: its top-level comma or {@code close}. */
+    private int parameterEnd(int from, int close) {
+        int angles = 0;
+        for (int i = from; i < close; i++) {
+            if (tokens.is(i, '(') || tokens.is(i, '[')) {
+                i = tokens.matching(i);
+            } else if (tokens.is(i, '<')) {
+                angles++;
+            } else if (tokens.is(i, '>') || tokens.is(i, ">>") || tokens.is(i, ">>>")) {
+                angles = Math.max(0, angles - tokens.length(i));
+            } else if (angles == 0 && tokens.is(i, ',')) {
+                return i;
+            }
+        }
+        return close;
+    }
+
+    /** End of the argument starting at {@code from}: its top-level comma or {@code close}. */
+    private int argumentEnd(int from, int close) {
+        for (int i = from; i < close; i++) {
+            if (tokens.is(i, '(') || tokens.is(i, '[') || tokens.is(i, '{')) {
+                i = tokens.matching(i);
+            } else if (tokens.is(i, ',')) {
+                return i;
+            }
+        }
+        return close;
+    }
+
+    // Generated names (m1, m2, ...) have consecutive string hashes, which would
+    // cluster in a linear-probing table; scrambling keeps probes short.
+    static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void findCycles() {
+        recursive = new boolean[methodCount];
+        components = new int[methodCount];
+        calleesFirst = new int[methodCount];
+        stronglyConnected(methodCount, offsets, targets, components, calleesFirst);
+        // Members of a component are adjacent in calleesFirst.
+        for (int start = 0, end; start < methodCount; start = end) {
+            end = start + 1;
+            while (end < methodCount && components[calleesFirst[end]] == components[calleesFirst[start]]) {
+                end++;
+            }
+            if (end - start > 1 || callsItself(calleesFirst[start])) {
+                int[] component = Arrays.copyOfRange(calleesFirst, start, end);
+                Arrays.sort(component);
+                cycles.add(component);
+                for (int member : component) {
+                    recursive[member] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterative Tarjan SCC over a graph whose edges from node v are
+     * {@code targets[offsets[v] .. offsets[v + 1])}; iterative so that deep call
+     * chains cannot overflow the Java stack. Components are numbered in the
+     * order they finish, so every component reachable from another has a lower
+     * number. Fills {@code components} with each node's component and
+     * {@code order} with the nodes in component order; returns the number of
+     * components.
+     */
+    static int stronglyConnected(int count, int[] offsets, int[] targets, int[] components, int[] order) {
+        int[] index = new int[count];
+        int[] lowLink = new int[count];
+        boolean[] onStack = new boolean[count];
+        int[] sccStack = new int[count];
+        int sccTop = 0;
+        int[] callStack = new int[count];
+        int[] nextEdge = new int[count];
+        int counter = 0;
+        int finished = 0;
+        int componentCount = 0;
+        Arrays.fill(index, -1);
+
+        for (int root = 0; root < count; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = counter++;
+            nextEdge[root] = offsets[root];
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < offsets[node + 1]) {
+                    int target = targets[nextEdge[node]++];
+                    if (index[target] < 0) {
+                        index[target] = lowLink[target] = counter++;
+                        nextEdge[target] = offsets[target];
+                        sccStack[sccTop++] = target;
+                        onStack[target] = true;
+                        callStack[depth++] = target;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int start = sccTop;
+                    do {
+                        onStack[sccStack[--start]] = false;
+                    } while (sccStack[start] != node);
+                    for (int k = start; k < sccTop; k++) {
+                        components[sccStack[k]] = componentCount;
+                        order[finished++] = sccStack[k];
+                    }
+                    sccTop = start;
+                    componentCount++;
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    private boolean callsItself(int method) {
+        for (int edge = offsets[method]; edge < offsets[method + 1]; edge++) {
+            if (targets[edge] == method) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a class file the bytecode analysis needs: the constant pool,
+ * the class name and each method's name, descriptor, code and first source
+ * line. Everything else (fields, annotations, stack maps) is skipped.
+ */
+final class ClassFile {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    static final int ACC_BRIDGE = 0x0040;
+
+    private static final byte UTF8 = 1;
+    private static final byte CLASS = 7;
+    private static final byte METHOD_REF = 10;
+    private static final byte INTERFACE_METHOD_REF = 11;
+    private static final byte NAME_AND_TYPE = 12;
+
+    // Constant pool: tag, up to two index operands, and the text of Utf8 entries.
+    private final byte[] tags;
+    private final int[] first;
+    private final int[] second;
+    private final String[] texts;
+
+    /** Internal name, e.g. java/util/ArrayList. */
+    final String name;
+    final List<Method> methods;
+
+    private ClassFile(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int count = in.readUnsignedShort();
+        tags = new byte[count];
+        first = new int[count];
+        second = new int[count];
+        texts = new String[count];
+        for (int i = 1; i < count; i++) {
+            byte tag = in.readByte();
+            tags[i] = tag;
+            switch (tag) {
+                case UTF8:
+                    texts[i] = in.readUTF();
+                    break;
+                case CLASS:
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    first[i] = in.readUnsignedShort();
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                    in.readInt();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.readLong();
+                    i++;
+                    break;
+                case 9: // Fieldref
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    first[i] = in.readUnsignedShort();
+                    second[i] = in.readUnsignedShort();
+                    break;
+                case 15: // MethodHandle
+                    in.readUnsignedByte();
+                    first[i] = in.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at entry " + i);
+            }
+        }
+
+        in.readUnsignedShort(); // access flags
+        name = className(in.readUnsignedShort());
+        in.readUnsignedShort(); // super class
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+        int fields = in.readUnsignedShort();
+        for (int i = 0; i < fields; i++) {
+            in.skipBytes(6);
+            skipAttributes(in);
+        }
+
+        int methodCount = in.readUnsignedShort();
+        List<Method> list = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            int access = in.readUnsignedShort();
+            String methodName = utf8(in.readUnsignedShort());
+            String descriptor = utf8(in.readUnsignedShort());
+            byte[] code = null;
+            int line = 0;
+            for (int attributes = in.readUnsignedShort(); attributes > 0; attributes--) {
+                String attribute = utf8(in.readUnsignedShort());
+                int length = in.readInt();
+                if (attribute.equals("Code")) {
+                    in.skipBytes(4); // max stack, max locals
+                    code = new byte[in.readInt()];
+                    in.readFully(code);
+                    in.skipBytes(8 * in.readUnsignedShort()); // exception table
+                    for (int nested = in.readUnsignedShort(); nested > 0; nested--) {
+                        String nestedName = utf8(in.readUnsignedShort());
+                        int nestedLength = in.readInt();
+                        if (nestedName.equals("LineNumberTable")) {
+                            line = firstLine(in);
+                        } else {
+                            in.skipBytes(nestedLength);
+                        }
+                    }
+                } else {
+                    in.skipBytes(length);
+                }
+            }
+            list.add(new Method(access, methodName, descriptor, code, line));
+        }
+        methods = Collections.unmodifiableList(list);
+    }
+
+    static ClassFile parse(byte[] bytes) throws IOException {
+        try {
+            return new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (EOFException e) {
+            throw new IOException("Truncated class file", e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt constant pool", e);
+        }
+    }
+
+    /** Internal name of the class a Class entry refers to. */
+    String className(int index) {
+        return utf8(first[index]);
+    }
+
+    /** Owner of the method a Methodref or InterfaceMethodref entry refers to, or null for other entries. */
+    String memberOwner(int index) {
+        return isMethodRef(index) ? className(first[index]) : null;
+    }
+
+    String memberName(int index) {
+        return isMethodRef(index) ? utf8(first[second[index]]) : null;
+    }
+
+    String memberDescriptor(int index) {
+        return isMethodRef(index) ? utf8(second[second[index]]) : null;
+    }
+
+    private boolean isMethodRef(int index) {
+        return index > 0 && index < tags.length
+                && (tags[index] == METHOD_REF || tags[index] == INTERFACE_METHOD_REF);
+    }
+
+    private String utf8(int index) {
+        return texts[index];
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        for (int attributes = in.readUnsignedShort(); attributes > 0; attributes--) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    // Lowest line in a LineNumberTable; entries are not ordered by line.
+    private static int firstLine(DataInputStream in) throws IOException {
+        int line = 0;
+        for (int entries = in.readUnsignedShort(); entries > 0; entries--) {
+            in.skipBytes(2); // start pc
+            int entryLine = in.readUnsignedShort();
+            line = line == 0 ? entryLine : Math.min(line, entryLine);
+        }
+        return line;
+    }
+
+    static final class Method {
+        final int access;
+        final String name;
+        final String descriptor;
+        /** Bytecode, or null for abstract and native methods. */
+        final byte[] code;
+        /** First source line, or 0 if the class was compiled without line numbers. */
+        final int line;
+
+        Method(int access, String name, String descriptor, byte[] code, int line) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.code = code;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Growth class of the form n^degree * (log n)^logs, or exponential.
+ *
+ * Used to rank results and to compose costs along the call graph: a call made
+ * inside d nested loops costs n^d times the callee.
+ */
+final class Complexity implements Comparable<Complexity> {
+
+    static final Complexity CONSTANT = new Complexity(0, 0, false);
+    static final Complexity LOGARITHMIC = new Complexity(0, 1, false);
+    static final Complexity LINEAR = new Complexity(1, 0, false);
+    static final Complexity LINEARITHMIC = new Complexity(1, 1, false);
+    static final Complexity EXPONENTIAL = new Complexity(0, 0, true);
+
+    final int degree;
+    final int logs;
+    final boolean exponential;
+
+    private Complexity(int degree, int logs, boolean exponential) {
+        this.degree = degree;
+        this.logs = logs;
+        this.exponential = exponential;
+    }
+
+    static Complexity polynomial(int degree) {
+        return degree == 0 ? CONSTANT : degree == 1 ? LINEAR : new Complexity(degree, 0, false);
+    }
+
+    /** n^degree * (log n)^logs. */
+    static Complexity of(int degree, int logs) {
+        return logs == 0 ? polynomial(degree) : new Complexity(degree, logs, false);
+    }
+
+    /** This cost repeated inside {@code loops} nested linear loops. */
+    Complexity timesLoops(int loops) {
+        if (loops == 0 || exponential) {
+            return this;
+        }
+        return new Complexity(degree + loops, logs, false);
+    }
+
+    /**
+     * Order-preserving integer code for compact storage: degree * 16 + logs,
+     * or Integer.MAX_VALUE for exponential. Common classes fit in one varint byte.
+     */
+    int code() {
+        return exponential ? Integer.MAX_VALUE : degree * 16 + Math.min(logs, 15);
+    }
+
+    static Complexity fromCode(int code) {
+        if (code == Integer.MAX_VALUE) {
+            return EXPONENTIAL;
+        }
+        if (code < 0) {
+            throw new IllegalArgumentException("Not a complexity code: " + code);
+        }
+        return new Complexity(code / 16, code % 16, false);
+    }
+
+    /** Inverse of {@link #toString}, for results read back from disk. */
+    static Complexity parse(String text) {
+        if (!text.startsWith("O(") || !text.endsWith(")")) {
+            throw new IllegalArgumentException("Not a complexity class: " + text);
+        }
+        String body = text.substring(2, text.length() - 1);
+        if (body.equals("2^n")) {
+            return EXPONENTIAL;
+        }
+        if (body.equals("1")) {
+            return CONSTANT;
+        }
+        int degree = 0;
+        int logs = 0;
+        String[] parts = body.split(" ");
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].startsWith("log")) {
+                    logs = parts[i].length() > 3 ? Integer.parseInt(parts[i].substring(4)) : 1;
+                    i++; // the "n" of "log n"
+                } else if (parts[i].startsWith("n^")) {
+                    degree = Integer.parseInt(parts[i].substring(2));
+                } else if (parts[i].equals("n")) {
+                    degree = 1;
+                } else {
+                    throw new IllegalArgumentException("Not a complexity class: " + text);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a complexity class: " + text, e);
+        }
+        return new Complexity(degree, logs, false);
+    }
+
+    static Complexity max(Complexity a, Complexity b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    @Override
+    public int compareTo(Complexity other) {
+        if (exponential != other.exponential) {
+            return exponential ? 1 : -1;
+        }
+        if (degree != other.degree) {
+            return Integer.compare(degree, other.degree);
+        }
+        return Integer.compare(logs, other.logs);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Complexity && compareTo((Complexity) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return exponential ? -1 : degree * 31 + logs;
+    }
+
+    @Override
+    public String toString() {
+        if (exponential) {
+            return "O(2^n)";
+        }
+        StringBuilder text = new StringBuilder("O(");
+        if (degree == 1) {
+            text.append('n');
+        } else if (degree > 1) {
+            text.append("n^").append(degree);
+        }
+        if (logs > 0) {
+            text.append(degree > 0 ? " " : "").append("log");
+            if (logs > 1) {
+                text.append('^').append(logs);
+            }
+            text.append(" n");
+        }
+        if (degree == 0 && logs == 0) {
+            text.append('1');
+        }
+        return text.append(')').toString();
+    }
+}
@@ -1,121 +1,142 @@
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 public class ComplexityAnalyzer {
     
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        
-        System.out.println("=== Java Code Complexity Analyzer ===");
-        System.out.println("Enter your Java code (type 'END' on a new line to finish):\n");
+        // --metrics may come with any mode; the per-phase summary is printed on exit.
+        if (Arrays.asList(args).contains("--metrics")) {
+            args = Arrays.stream(args).filter(arg -> !arg.equals("--metrics")).toArray(String[]::new);
+            Metrics.enable();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print("\n" + Metrics.summary())));
+        }
         
-        StringBuilder code = new StringBuilder();
-        String line;
+        if (args.length >= 1 && args.length <= 2 && args[0].equals("--server")) {
+            try {
+                AnalysisServer.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Server failed to start: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         
-        while (scanner.hasNextLine()) {
-            line = scanner.nextLine();
-            if (line.trim().equals("END")) {
-                break;
+        if (args.length == 2 && args[0].equals("--summarize")) {
+            try {
+                BinaryReportReader.summarize(Paths.get(args[1]), System.out);
+            } catch (IOException e) {
+                System.err.println("Cannot read report: " + e.getMessage());
+                System.exit(1);
             }
-            code.append(line).append("\n");
+            return;
         }
         
-        String javaCode = code.toString();
+        if (args.length >= 1 && args[0].equals("--repo")) {
+            try {
+                RepositoryAnalyzer.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.err.println("Repository analysis failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         
-        System.out.println("\n=== Analysis Results ===");
-        System.out.println("Time Complexity: " + analyzeTimeComplexity(javaCode));
-        System.out.println("Space Complexity: " + analyzeSpaceComplexity(javaCode));
+        if (args.length >= 2 && args[0].equals("--project")) {
+            try {
+                ProjectAnalyzer.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.err.println("Project analysis failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         
-        scanner.close();
-    }
-    
-    private static String analyzeTimeComplexity(String code) {
-        int nestedLoops = countNestedLoops(code);
+        if (args.length >= 2 && args[0].equals("--bytecode")) {
+            try {
+                BytecodeAnalyzer.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException e) {
+                System.err.println("Bytecode analysis failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         
-        if (code.contains("Collections.sort") || code.contains("Arrays.sort")) {
-            return "O(n log n) - Sorting operation detected";
+        if (args.length >= 1 && args[0].equals("--verify")) {
+            try {
+                EmpiricalVerifier.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Verification failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
         }
         
-        if (nestedLoops >= 3) {
-            return "O(n^" + nestedLoops + ") - " + nestedLoops + " nested loops detected";
-        } else if (nestedLoops == 2) {
-            return "O(n^2) - Nested loops detected";
-        } else if (nestedLoops == 1) {
-            if (containsDivideAndConquer(code)) {
-                return "O(log n) - Loop with division/halving detected";
+        if (args.length == 1 && args[0].equals("--stream")) {
+            try {
+                new StreamingAnalyzer(System.out).analyze(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Streaming analysis failed: " + e.getMessage());
+                System.exit(1);
             }
-            return "O(n) - Single loop detected";
-        } else if (containsRecursion(code)) {
-            if (containsDivideAndConquer(code)) {
-                return "O(log n) or O(n log n) - Recursive divide and conquer detected";
+            return;
+        }
+        
+        if (args.length > 0) {
+            try {
+                BatchAnalyzer.run(args);
+            } catch (IOException e) {
+                System.err.println("Batch analysis failed: " + e.getMessage());
+                System.exit(1);
             }
-            return "O(2^n) or higher - Recursion detected (depends on structure)";
+            return;
         }
         
-        return "O(1) - Constant time";
-    }
-    
-    private static String analyzeSpaceComplexity(String code) {
-        boolean hasArray = Pattern.compile("(new\\s+\\w+\\[|\\[\\])").matcher(code).find();
-        boolean hasList = code.contains("ArrayList") || code.contains("LinkedList") || 
-                         code.contains("List<");
-        boolean hasMap = code.contains("HashMap") || code.contains("Map<");
-        boolean hasRecursion = containsRecursion(code);
+        Scanner scanner = new Scanner(System.in);
         
-        if (hasRecursion) {
-            return "O(n) - Recursion uses call stack space";
-        }
+        System.out.println("=== Java Code Complexity Analyzer ===");
+        System.out.println("Enter your Java code (type 'END' on a new line to finish):\n");
+        
+        StringBuilder code = new StringBuilder();
+        String line;
         
-        if (hasArray || hasList || hasMap) {
-            return "O(n) - Data structure allocation detected";
+        while (scanner.hasNextLine()) {
+            line = scanner.nextLine();
+            if (line.trim().equals("END")) {
+                break;
+            }
+            code.append(line).append("\n");
         }
         
-        return "O(1) - Constant space";
-    }
-    
-    private static int countNestedLoops(String code) {
-        int maxDepth = 0;
-        int currentDepth = 0;
+        AnalysisResult result = ComplexityEngine.analyze(code);
         
-        String[] lines = code.split("\n");
+        System.out.println("\n=== Analysis Results ===");
+        System.out.println("Time Complexity: " + result.timeDetail);
+        System.out.println("Space Complexity: " + result.spaceDetail);
+        System.out.println("Confidence: " + result.confidence);
+        for (List<String> cycle : result.recursiveCycles) {
+            System.out.println("Recursive methods: " + String.join(", ", cycle));
+        }
         
-        for (String line : lines) {
-            String trimmed = line.trim();
-            
-            if (trimmed.matches("for\\s*\\(.*\\).*") || 
-                trimmed.matches("while\\s*\\(.*\\).*") ||
-                trimmed.matches("do\\s*\\{?.*")) {
-                currentDepth++;
-                maxDepth = Math.max(maxDepth, currentDepth);
-            }
-            
-            if (trimmed.equals("}")) {
-                currentDepth = Math.max(0, currentDepth - 1);
+        if (!result.methods.isEmpty()) {
+            System.out.println("\n=== Per-Method Results ===");
+            for (AnalysisResult.MethodResult method : result.methods) {
+                System.out.println(method.name + " -> Time: " + method.timeDetail + " | Space: " + method.spaceDetail);
             }
         }
         
-        return maxDepth;
-    }
-    
-    private static boolean containsRecursion(String code) {
-        Pattern methodPattern = Pattern.compile("(public|private|protected)?\\s*(static)?\\s*\\w+\\s+(\\w+)\\s*\\(");
-        Matcher matcher = methodPattern.matcher(code);
-        
-        while (matcher.find()) {
-            String methodName = matcher.group(3);
-            if (methodName != null && code.indexOf(methodName + "(", matcher.end()) > 0) {
-                return true;
+        if (!result.evidence.isEmpty()) {
+            System.out.println("\n=== Evidence ===");
+            for (AnalysisResult.Evidence evidence : result.evidence) {
+                System.out.println("Line " + evidence.toString());
             }
         }
         
-        return false;
-    }
-    
-    private static boolean containsDivideAndConquer(String code) {
-        return code.contains("/= 2") || code.contains("/ 2") || 
-               code.contains(">>> 1") || code.contains(">> 1") ||
-               Pattern.compile("\\w+\\s*=\\s*\\w+\\s*/\\s*2").matcher(code).find();
+        scanner.close();
     }
 }
 
@@ -1,14 +1,22 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.List;
 
 public class ComplexityAnalyzerGUI extends JFrame {
     
+    // Quiet period after the last keystroke before the live analysis runs.
+    private static final int LIVE_DELAY_MS = 25;
+    
     private JTextArea codeArea;
     private JLabel timeComplexityLabel;
     private JLabel spaceComplexityLabel;
     private JButton analyzeButton;
+    private JProgressBar progressBar;
+    private AnalysisWorker worker;
+    private Timer liveTimer;
+    private final IncrementalAnalyzer engine = new IncrementalAnalyzer();
     
     public ComplexityAnalyzerGUI() {
         setTitle("Java Complexity Analyzer");
@@ -39,6 +47,24 @@ public class ComplexityAnalyzerGUI extends JFrame {
         codeArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         codeArea.setLineWrap(false);
         codeArea.setTabSize(4);
+        liveTimer = new Timer(LIVE_DELAY_MS, e -> analyzeLive());
+        liveTimer.setRepeats(false);
+        codeArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                liveTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                liveTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes only; the text is the same.
+            }
+        });
         JScrollPane scrollPane = new JScrollPane(codeArea);
         centerPanel.add(scrollPane, BorderLayout.CENTER);
         
@@ -54,6 +80,13 @@ public class ComplexityAnalyzerGUI extends JFrame {
         analyzeButton.addActionListener(e -> analyzeCode());
         bottomPanel.add(analyzeButton);
         
+        bottomPanel.add(Box.createVerticalStrut(5));
+        
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        bottomPanel.add(progressBar);
+        
         bottomPanel.add(Box.createVerticalStrut(15));
         
         // Results panel
@@ -74,9 +107,9 @@ public class ComplexityAnalyzerGUI extends JFrame {
     }
     
     private void analyzeCode() {
-        String code = codeArea.getText().trim();
+        String code = codeArea.getText();
         
-        if (code.isEmpty()) {
+        if (code.trim().isEmpty()) {
             JOptionPane.showMessageDialog(this, 
                 "Please enter some code to analyze!", 
                 "No Code", 
@@ -84,99 +117,108 @@ public class ComplexityAnalyzerGUI extends JFrame {
             return;
         }
         
-        String timeComplexity = analyzeTimeComplexity(code);
-        String spaceComplexity = analyzeSpaceComplexity(code);
-        
-        timeComplexityLabel.setText("Time Complexity: " + timeComplexity);
-        spaceComplexityLabel.setText("Space Complexity: " + spaceComplexity);
+        liveTimer.stop();
+        timeComplexityLabel.setText("Time Complexity: analyzing...");
+        spaceComplexityLabel.setText("Space Complexity: analyzing...");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        startWorker(code);
     }
     
-    private String analyzeTimeComplexity(String code) {
-        int nestedLoops = countNestedLoops(code);
-        
-        if (code.contains("Collections.sort") || code.contains("Arrays.sort")) {
-            return "O(n log n) - Sorting operation detected";
-        }
-        
-        if (nestedLoops >= 3) {
-            return "O(n^" + nestedLoops + ") - " + nestedLoops + " nested loops detected";
-        } else if (nestedLoops == 2) {
-            return "O(n^2) - Nested loops detected";
-        } else if (nestedLoops == 1) {
-            if (containsDivideAndConquer(code)) {
-                return "O(log n) - Loop with division/halving detected";
-            }
-            return "O(n) - Single loop detected";
-        } else if (containsRecursion(code)) {
-            if (containsDivideAndConquer(code)) {
-                return "O(log n) or O(n log n) - Recursive divide and conquer detected";
-            }
-            return "O(2^n) or higher - Recursion detected (depends on structure)";
+    /** Re-analyzes after an edit. Results usually arrive within a frame, so no progress is shown. */
+    private void analyzeLive() {
+        String code = codeArea.getText();
+        
+        if (code.trim().isEmpty()) {
+            cancelWorker();
+            timeComplexityLabel.setText("Time Complexity: -");
+            spaceComplexityLabel.setText("Space Complexity: -");
+            return;
         }
         
-        return "O(1) - Constant time";
+        startWorker(code);
     }
     
-    private String analyzeSpaceComplexity(String code) {
-        boolean hasArray = Pattern.compile("(new\\s+\\w+\\[|\\[\\])").matcher(code).find();
-        boolean hasList = code.contains("ArrayList") || code.contains("LinkedList") || 
-                         code.contains("List<");
-        boolean hasMap = code.contains("HashMap") || code.contains("Map<");
-        boolean hasRecursion = containsRecursion(code);
-        
-        if (hasRecursion) {
-            return "O(n) - Recursion uses call stack space";
-        }
-        
-        if (hasArray || hasList || hasMap) {
-            return "O(n) - Data structure allocation detected";
+    private void startWorker(String code) {
+        // A newer request supersedes whatever is still running.
+        cancelWorker();
+        worker = new AnalysisWorker(code);
+        worker.execute();
+    }
+    
+    private void cancelWorker() {
+        if (worker != null) {
+            worker.cancel(true);
+            worker = null;
+            progressBar.setVisible(false);
         }
-        
-        return "O(1) - Constant space";
     }
     
-    private int countNestedLoops(String code) {
-        int maxDepth = 0;
-        int currentDepth = 0;
-        
-        String[] lines = code.split("\n");
+    /**
+     * Runs the analysis off the Event Dispatch Thread. The engine update runs as
+     * one step so a cancelled run still leaves the engine consistent. Time and
+     * space are composed in the same pass (see MethodAnalysis.Composition), so
+     * both are published together once it finishes.
+     */
+    private final class AnalysisWorker extends SwingWorker<Void, Partial> {
+        private final String code;
+        
+        AnalysisWorker(String code) {
+            this.code = code;
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName()) && worker == this) {
+                    progressBar.setValue((Integer) e.getNewValue());
+                }
+            });
+        }
         
-        for (String line : lines) {
-            String trimmed = line.trim();
-            
-            if (trimmed.matches("for\\s*\\(.*\\).*") || 
-                trimmed.matches("while\\s*\\(.*\\).*") ||
-                trimmed.matches("do\\s*\\{?.*")) {
-                currentDepth++;
-                maxDepth = Math.max(maxDepth, currentDepth);
+        @Override
+        protected Void doInBackground() {
+            if (isCancelled()) {
+                return null;
             }
+            setProgress(25);
             
-            if (trimmed.equals("}")) {
-                currentDepth = Math.max(0, currentDepth - 1);
+            AnalysisResult result = engine.update(code);
+            if (isCancelled()) {
+                return null;
             }
+            setProgress(75);
+            publish(new Partial(timeComplexityLabel, "Time Complexity: " + result.timeDetail),
+                    new Partial(spaceComplexityLabel, "Space Complexity: " + result.spaceDetail));
+            setProgress(100);
+            return null;
         }
         
-        return maxDepth;
-    }
-    
-    private boolean containsRecursion(String code) {
-        Pattern methodPattern = Pattern.compile("(public|private|protected)?\\s*(static)?\\s*\\w+\\s+(\\w+)\\s*\\(");
-        Matcher matcher = methodPattern.matcher(code);
-        
-        while (matcher.find()) {
-            String methodName = matcher.group(3);
-            if (methodName != null && code.indexOf(methodName + "(", matcher.end()) > 0) {
-                return true;
+        @Override
+        protected void process(List<Partial> results) {
+            // Chunks of a cancelled run can still arrive after the next one started.
+            if (worker != this) {
+                return;
+            }
+            for (Partial result : results) {
+                result.label.setText(result.text);
             }
         }
         
-        return false;
+        @Override
+        protected void done() {
+            if (worker == this) {
+                progressBar.setVisible(false);
+                worker = null;
+            }
+        }
     }
     
-    private boolean containsDivideAndConquer(String code) {
-        return code.contains("/= 2") || code.contains("/ 2") || 
-               code.contains(">>> 1") || code.contains(">> 1") ||
-               Pattern.compile("\\w+\\s*=\\s*\\w+\\s*/\\s*2").matcher(code).find();
+    /** One finished part of an analysis and the label it belongs in. */
+    private static final class Partial {
+        final JLabel label;
+        final String text;
+        
+        Partial(JLabel label, String text) {
+            this.label = label;
+            this.text = text;
+        }
     }
     
     public static void main(String[] args) {
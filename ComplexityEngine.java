@@ -0,0 +1,41 @@
+/**
+ * Entry point shared by the console, GUI, batch and any code embedding the
+ * analyzer.
+ *
+ * Stateless and safe to call from any number of threads at once: every call
+ * builds its own token stream, call graph and findings, and the only shared
+ * state is immutable tables (keywords, operators) and per-thread scratch space.
+ */
+final class ComplexityEngine {
+
+    private ComplexityEngine() {
+    }
+
+    static AnalysisResult analyze(CharSequence source) {
+        return analyze(TokenStream.tokenize(source));
+    }
+
+    /** For callers that already tokenized the source, for example to compute a cache key. */
+    static AnalysisResult analyze(TokenStream tokens) {
+        return MethodAnalysis.analyze(tokens, CallGraph.build(tokens)).result();
+    }
+
+    /**
+     * Analyzes at most {@code budget.maxChars} of {@code source} within its time
+     * budget; the result is partial if either limit was hit. Tokenizing, the call
+     * graph and the method scan each stop at the deadline.
+     */
+    static AnalysisResult analyze(CharSequence source, AnalysisBudget budget) {
+        long deadline = budget.deadline();
+        if (source.length() <= budget.maxChars) {
+            return analyze(TokenStream.tokenize(source, deadline), deadline);
+        }
+        return analyze(TokenStream.tokenize(source.subSequence(0, budget.maxChars), deadline), deadline)
+                .partial(budget.sizeExceeded());
+    }
+
+    /** For callers that tokenized the source themselves; {@code deadline} is from {@link AnalysisBudget#deadline}. */
+    static AnalysisResult analyze(TokenStream tokens, long deadline) {
+        return MethodAnalysis.analyze(tokens, CallGraph.build(tokens, deadline), deadline).result();
+    }
+}
@@ -0,0 +1,403 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Symbolic time cost: a sum of terms, each a product of loop bounds raised to
+ * a power, optionally times logarithms of them, such as n*m + k log k; or
+ * exponential.
+ *
+ * A sum keeps only the terms no other term dominates, so n^2 + n is n^2 while
+ * n^2 + m stays as it is. Costs are hash-consed: every factory and operation
+ * returns the canonical instance for its value while one is in use, so the
+ * costs of thousands of methods share their terms instead of building equal
+ * copies. That is only about memory: costs are compared with equals or
+ * {@link #isOne}, never by identity.
+ */
+final class Cost {
+
+    // Beyond this many terms a sum keeps only the costliest, to bound products of sums.
+    private static final int MAX_TERMS = 8;
+    // Intern table, weak so that costs no longer used anywhere are dropped, and striped by hash
+    // so that parallel scans rarely wait on each other.
+    private static final int STRIPES = 16;
+    private static final List<Map<Object, WeakReference<Object>>> INTERNED = internTable();
+
+    static final Cost ONE = intern(new Cost(new Term[] {Term.ONE}, false));
+    static final Cost EXPONENTIAL = intern(new Cost(new Term[0], true));
+    static final Cost N = linear("n");
+    static final Cost N_LOG_N = N.times(logarithmic("n"));
+
+    private final Term[] terms;
+    private final boolean exponential;
+    private final int hash;
+    private final Complexity complexity;
+    // inN(), computed on first use; racing threads compute the same interned cost.
+    private Cost inN;
+
+    private Cost(Term[] terms, boolean exponential) {
+        this.terms = terms;
+        this.exponential = exponential;
+        this.hash = exponential ? -1 : Arrays.hashCode(terms);
+        Complexity top = Complexity.CONSTANT;
+        for (Term term : terms) {
+            top = Complexity.max(top, term.complexity);
+        }
+        this.complexity = exponential ? Complexity.EXPONENTIAL : top;
+    }
+
+    /** The bound {@code symbol} itself, as for a loop stepping through it one at a time. */
+    static Cost linear(String symbol) {
+        return of(Term.of(symbol, 1, 0));
+    }
+
+    /** log {@code symbol}, as for a loop halving or doubling towards it. */
+    static Cost logarithmic(String symbol) {
+        return of(Term.of(symbol, 0, 1));
+    }
+
+    /**
+     * Reads a cost as {@link #toString} writes it, with or without the O( ):
+     * terms joined by +, each 1, 2^n, or a product of factors such as n, m^2,
+     * log n or log^2 k, joined by * or spaces. For example "n log n" or
+     * "O(n*m + k)".
+     */
+    static Cost parse(String text) {
+        String body = text.trim();
+        if (body.startsWith("O(") && body.endsWith(")")) {
+            body = body.substring(2, body.length() - 1);
+        }
+        Cost cost = null;
+        for (String term : body.split("\\+")) {
+            Cost product = parseTerm(term.trim(), text);
+            cost = cost == null ? product : cost.plus(product);
+        }
+        return cost;
+    }
+
+    private static Cost parseTerm(String term, String text) {
+        if (term.equals("1")) {
+            return ONE;
+        }
+        if (term.equals("2^n")) {
+            return EXPONENTIAL;
+        }
+        String[] words = term.split("[\\s*]+");
+        Cost product = ONE;
+        for (int k = 0; k < words.length; k++) {
+            String word = words[k];
+            boolean log = word.equals("log") || word.startsWith("log^");
+            if (log) {
+                if (++k == words.length) {
+                    throw new IllegalArgumentException("Missing symbol after log in cost: " + text);
+                }
+                word = words[k];
+            }
+            String symbol = word;
+            int power = 1;
+            int caret = word.indexOf('^');
+            if (!log && caret > 0) {
+                symbol = word.substring(0, caret);
+                power = Integer.parseInt(word.substring(caret + 1));
+            } else if (log && words[k - 1].startsWith("log^")) {
+                power = Integer.parseInt(words[k - 1].substring(4));
+            }
+            if (symbol.isEmpty() || !Character.isJavaIdentifierStart(symbol.charAt(0)) || power < 1) {
+                throw new IllegalArgumentException("Not a cost: " + text);
+            }
+            Cost factor = log ? logarithmic(symbol) : linear(symbol);
+            for (int p = 0; p < power; p++) {
+                product = product.times(factor);
+            }
+        }
+        return product;
+    }
+
+    private static Cost of(Term term) {
+        return intern(new Cost(new Term[] {term}, false));
+    }
+
+    Cost times(Cost other) {
+        if (exponential || other.isOne()) {
+            return this;
+        }
+        if (other.exponential || isOne()) {
+            return other;
+        }
+        List<Term> products = new ArrayList<>(terms.length * other.terms.length);
+        for (Term a : terms) {
+            for (Term b : other.terms) {
+                products.add(a.times(b));
+            }
+        }
+        return sum(products);
+    }
+
+    Cost plus(Cost other) {
+        if (exponential || other.isOne() || other.equals(this)) {
+            return this;
+        }
+        if (other.exponential || isOne()) {
+            return other;
+        }
+        List<Term> all = new ArrayList<>(terms.length + other.terms.length);
+        all.addAll(Arrays.asList(terms));
+        all.addAll(Arrays.asList(other.terms));
+        return sum(all);
+    }
+
+    /**
+     * This cost with every symbol read as n, as n*m becomes n^2. Bound names
+     * belong to the method they were found in, so a cost carried into a
+     * caller through a call is stated in n alone.
+     */
+    Cost inN() {
+        Cost renamed = inN;
+        if (renamed == null) {
+            List<Term> products = new ArrayList<>(terms.length);
+            for (Term term : terms) {
+                Term product = Term.ONE;
+                for (int k = 0; k < term.symbols.length; k++) {
+                    product = product.times(Term.of("n", term.powers[k], term.logs[k]));
+                }
+                products.add(product);
+            }
+            renamed = exponential ? this : sum(products);
+            inN = renamed;
+        }
+        return renamed;
+    }
+
+    /** True for the constant cost 1. */
+    boolean isOne() {
+        return !exponential && terms.length == 1 && terms[0].symbols.length == 0;
+    }
+
+    /** The growth class of the costliest term, for ranking. */
+    Complexity complexity() {
+        return complexity;
+    }
+
+    private static Cost sum(List<Term> candidates) {
+        List<Term> kept = new ArrayList<>(candidates.size());
+        for (Term term : candidates) {
+            boolean dominated = false;
+            for (int k = kept.size() - 1; k >= 0; k--) {
+                if (kept.get(k).dominates(term)) {
+                    dominated = true;
+                    break;
+                }
+                if (term.dominates(kept.get(k))) {
+                    kept.remove(k);
+                }
+            }
+            if (!dominated) {
+                kept.add(term);
+            }
+        }
+        Term[] terms = kept.toArray(new Term[0]);
+        Arrays.sort(terms, Cost::order);
+        if (terms.length > MAX_TERMS) {
+            terms = Arrays.copyOf(terms, MAX_TERMS);
+        }
+        return intern(new Cost(terms, false));
+    }
+
+    // Costliest first, then by text, so equal sums list their terms in the same order.
+    private static int order(Term a, Term b) {
+        int cmp = b.complexity.compareTo(a.complexity);
+        return cmp != 0 ? cmp : a.toString().compareTo(b.toString());
+    }
+
+    private static List<Map<Object, WeakReference<Object>>> internTable() {
+        List<Map<Object, WeakReference<Object>>> stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new WeakHashMap<>());
+        }
+        return stripes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T intern(T value) {
+        int hash = value.hashCode();
+        Map<Object, WeakReference<Object>> stripe = INTERNED.get((hash ^ hash >>> 16) & (STRIPES - 1));
+        synchronized (stripe) {
+            WeakReference<Object> canonical = stripe.get(value);
+            Object existing = canonical != null ? canonical.get() : null;
+            if (existing != null) {
+                return (T) existing;
+            }
+            stripe.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Cost)) {
+            return false;
+        }
+        Cost cost = (Cost) other;
+        return hash == cost.hash && exponential == cost.exponential && Arrays.equals(terms, cost.terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (exponential) {
+            return "O(2^n)";
+        }
+        StringBuilder text = new StringBuilder("O(");
+        for (int k = 0; k < terms.length; k++) {
+            text.append(k > 0 ? " + " : "").append(terms[k]);
+        }
+        return text.append(')').toString();
+    }
+
+    /** One product of symbols, each with a power and a power of its logarithm; symbols sorted, n first. */
+    private static final class Term {
+
+        static final Term ONE = intern(new Term(new String[0], new int[0], new int[0]));
+
+        final String[] symbols;
+        final int[] powers;
+        final int[] logs;
+        final int hash;
+        final Complexity complexity;
+
+        private Term(String[] symbols, int[] powers, int[] logs) {
+            this.symbols = symbols;
+            this.powers = powers;
+            this.logs = logs;
+            this.hash = (Arrays.hashCode(symbols) * 31 + Arrays.hashCode(powers)) * 31 + Arrays.hashCode(logs);
+            int degree = 0;
+            int logDegree = 0;
+            for (int k = 0; k < symbols.length; k++) {
+                degree += powers[k];
+                logDegree += logs[k];
+            }
+            this.complexity = Complexity.of(degree, logDegree);
+        }
+
+        static Term of(String symbol, int power, int log) {
+            return intern(new Term(new String[] {symbol}, new int[] {power}, new int[] {log}));
+        }
+
+        Term times(Term other) {
+            if (symbols.length == 0) {
+                return other;
+            }
+            if (other.symbols.length == 0) {
+                return this;
+            }
+            int capacity = symbols.length + other.symbols.length;
+            String[] names = new String[capacity];
+            int[] p = new int[capacity];
+            int[] l = new int[capacity];
+            int a = 0;
+            int b = 0;
+            int n = 0;
+            while (a < symbols.length || b < other.symbols.length) {
+                int cmp = a == symbols.length ? 1 : b == other.symbols.length ? -1
+                        : compareSymbols(symbols[a], other.symbols[b]);
+                if (cmp <= 0) {
+                    names[n] = symbols[a];
+                    p[n] = powers[a];
+                    l[n] = logs[a];
+                    a++;
+                    if (cmp == 0) {
+                        p[n] += other.powers[b];
+                        l[n] += other.logs[b];
+                        b++;
+                    }
+                } else {
+                    names[n] = other.symbols[b];
+                    p[n] = other.powers[b];
+                    l[n] = other.logs[b];
+                    b++;
+                }
+                n++;
+            }
+            return intern(new Term(Arrays.copyOf(names, n), Arrays.copyOf(p, n), Arrays.copyOf(l, n)));
+        }
+
+        /** True if this term grows at least as fast as {@code other} in every symbol. */
+        boolean dominates(Term other) {
+            int a = 0;
+            for (int b = 0; b < other.symbols.length; b++) {
+                while (a < symbols.length && compareSymbols(symbols[a], other.symbols[b]) < 0) {
+                    a++;
+                }
+                if (a == symbols.length || !symbols[a].equals(other.symbols[b])) {
+                    return false;
+                }
+                if (powers[a] != other.powers[b] ? powers[a] < other.powers[b] : logs[a] < other.logs[b]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int compareSymbols(String a, String b) {
+            if (a.equals(b)) {
+                return 0;
+            }
+            return a.equals("n") ? -1 : b.equals("n") ? 1 : a.compareTo(b);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Term)) {
+                return false;
+            }
+            Term term = (Term) other;
+            return hash == term.hash && Arrays.equals(symbols, term.symbols) && Arrays.equals(powers, term.powers)
+                    && Arrays.equals(logs, term.logs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            if (symbols.length == 0) {
+                return "1";
+            }
+            StringBuilder text = new StringBuilder();
+            for (int k = 0; k < symbols.length; k++) {
+                if (k > 0) {
+                    text.append('*');
+                }
+                if (powers[k] > 0) {
+                    text.append(symbols[k]);
+                    if (powers[k] > 1) {
+                        text.append('^').append(powers[k]);
+                    }
+                }
+                if (logs[k] > 0) {
+                    text.append(powers[k] > 0 ? " " : "").append("log");
+                    if (logs[k] > 1) {
+                        text.append('^').append(logs[k]);
+                    }
+                    text.append(' ').append(symbols[k]);
+                }
+            }
+            return text.toString();
+        }
+    }
+}
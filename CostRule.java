@@ -0,0 +1,43 @@
+/**
+ * The cost of calling one library method: a call to {@code method} qualified
+ * with the class name {@code owner} (or any call of that name if the owner is
+ * null) costs {@code time}, times the loops around the call.
+ *
+ * Costs are written as analysis results print them, for example "log n",
+ * "n log n" or "n^2" (see {@link Cost#parse}). A rule for an owner and method
+ * another rule already covers replaces it, so a provider can also correct the
+ * built-in rules.
+ */
+public final class CostRule {
+
+    /** Simple name of the class the call is qualified with, or null for any call of that name. */
+    final String owner;
+    final String method;
+    final Cost time;
+    /** Finding reported for the call, e.g. "Sorting operation". */
+    final String description;
+
+    /** A rule described as "Call to owner.method". */
+    public CostRule(String owner, String method, String time) {
+        this(owner, method, time, "Call to " + (owner != null ? owner + "." : "") + method);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code method} is not a name or
+     *         {@code time} is not a cost
+     */
+    public CostRule(String owner, String method, String time, String description) {
+        if (method == null || method.isEmpty() || !Character.isJavaIdentifierStart(method.charAt(0))) {
+            throw new IllegalArgumentException("Not a method name: " + method);
+        }
+        this.owner = owner;
+        this.method = method;
+        this.time = Cost.parse(time);
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return (owner != null ? owner + "." : "") + method + " " + time;
+    }
+}
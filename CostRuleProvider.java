@@ -0,0 +1,15 @@
+import java.util.List;
+
+/**
+ * Supplies library calls whose cost is known, such as in-house sort and search
+ * utilities, so calls to them are costed instead of counting as constant time.
+ *
+ * Implementations are found with {@link java.util.ServiceLoader}: put the
+ * class on the class path with a public no-argument constructor, and list its
+ * name in META-INF/services/CostRuleProvider. Rules are read once, when the
+ * first source is analyzed.
+ */
+public interface CostRuleProvider {
+
+    List<CostRule> rules();
+}
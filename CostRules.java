@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The built-in library calls with known costs plus those of every
+ * CostRuleProvider on the class path, compiled into one matcher.
+ *
+ * The matcher is an open-addressing table keyed by method name, each slot
+ * chaining the rules for that name with owner-specific rules first. A call is
+ * matched with one probe of its name token's hash, however many rules there
+ * are, and the source is never scanned per rule.
+ */
+final class CostRules {
+
+    private static final List<CostRule> BUILT_IN = Arrays.asList(
+            new CostRule("Arrays", "sort", "n log n", "Sorting operation"),
+            new CostRule("Arrays", "parallelSort", "n log n", "Sorting operation"),
+            new CostRule("Collections", "sort", "n log n", "Sorting operation"));
+
+    private final CostRule[] rules;
+    // Table slots hold the method name and its first rule; rules of one name chain through next.
+    private final String[] names;
+    private final int[] first;
+    private final int[] next;
+    private final int mask;
+    /** Identifies the rule set in cache keys; empty for the built-in rules alone. */
+    private final String fingerprint;
+
+    CostRules(List<CostRule> candidates) {
+        // Later rules replace earlier ones for the same owner and method.
+        Map<String, Map<String, CostRule>> byName = new LinkedHashMap<>();
+        for (CostRule rule : candidates) {
+            byName.computeIfAbsent(rule.method, name -> new LinkedHashMap<>()).put(String.valueOf(rule.owner), rule);
+        }
+        List<CostRule> ordered = new ArrayList<>();
+        int capacity = Integer.highestOneBit(Math.max(4, byName.size() * 2) - 1) << 1;
+        mask = capacity - 1;
+        names = new String[capacity];
+        first = new int[capacity];
+        for (Map.Entry<String, Map<String, CostRule>> entry : byName.entrySet()) {
+            int slot = CallGraph.spread(entry.getKey().hashCode()) & mask;
+            while (names[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = entry.getKey();
+            first[slot] = ordered.size();
+            for (CostRule rule : entry.getValue().values()) {
+                if (rule.owner != null) {
+                    ordered.add(rule);
+                }
+            }
+            for (CostRule rule : entry.getValue().values()) {
+                if (rule.owner == null) {
+                    ordered.add(rule);
+                }
+            }
+        }
+        rules = ordered.toArray(new CostRule[0]);
+        next = new int[rules.length];
+        for (int k = 0; k < rules.length; k++) {
+            next[k] = k + 1 < rules.length && rules[k + 1].method.equals(rules[k].method) ? k + 1 : -1;
+        }
+        fingerprint = candidates.equals(BUILT_IN) ? "" : Integer.toHexString(ordered.toString().hashCode());
+    }
+
+    /** The rules of this JVM: built-in ones, then those of the providers ServiceLoader finds. */
+    static CostRules loaded() {
+        return Loaded.RULES;
+    }
+
+    /**
+     * The rule for the call whose name is the token at {@code name}, or -1 if
+     * no rule matches. Owner-specific rules need the call to be qualified with
+     * the owner, as in {@code Arrays.sort(a)}.
+     */
+    int match(TokenStream tokens, int name) {
+        int slot = CallGraph.spread(tokens.hash(name)) & mask;
+        while (names[slot] != null) {
+            if (tokens.is(name, names[slot])) {
+                for (int rule = first[slot]; rule >= 0; rule = next[rule]) {
+                    String owner = rules[rule].owner;
+                    if (owner == null || (tokens.is(name - 1, '.') && tokens.is(name - 2, owner))) {
+                        return rule;
+                    }
+                }
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * The rule for a call of {@code name} qualified with {@code owner}, or
+     * with nothing if {@code owner} is null, or -1 if no rule matches. For
+     * modes that see calls as names rather than tokens.
+     */
+    int match(CharSequence owner, CharSequence name) {
+        int hash = 0;
+        for (int k = 0; k < name.length(); k++) {
+            hash = 31 * hash + name.charAt(k);
+        }
+        int slot = CallGraph.spread(hash) & mask;
+        while (names[slot] != null) {
+            if (names[slot].contentEquals(name)) {
+                for (int rule = first[slot]; rule >= 0; rule = next[rule]) {
+                    String ruleOwner = rules[rule].owner;
+                    if (ruleOwner == null || (owner != null && ruleOwner.contentEquals(owner))) {
+                        return rule;
+                    }
+                }
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    CostRule rule(int index) {
+        return rules[index];
+    }
+
+    String fingerprint() {
+        return fingerprint;
+    }
+
+    private static CostRules load() {
+        List<CostRule> rules = new ArrayList<>(BUILT_IN);
+        Iterator<CostRuleProvider> providers = ServiceLoader.load(CostRuleProvider.class).iterator();
+        while (hasNext(providers)) {
+            // One broken provider should not stop the analysis; the others still count.
+            try {
+                for (CostRule rule : providers.next().rules()) {
+                    if (rule != null) {
+                        rules.add(rule);
+                    }
+                }
+            } catch (ServiceConfigurationError | RuntimeException e) {
+                System.err.println("Ignoring cost rules: " + e);
+            }
+        }
+        return new CostRules(rules);
+    }
+
+    // A provider list that cannot be read at all ends the search instead of failing again and again.
+    private static boolean hasNext(Iterator<CostRuleProvider> providers) {
+        try {
+            return providers.hasNext();
+        } catch (ServiceConfigurationError e) {
+            System.err.println("Ignoring cost rules: " + e);
+            return false;
+        }
+    }
+
+    // Loaded on first use, so ServiceLoader runs once per JVM and only if rules are needed.
+    private static final class Loaded {
+        static final CostRules RULES = load();
+    }
+}
@@ -0,0 +1,625 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Verification mode: measures how the running time of one method grows with
+ * its input and puts the result next to the static estimate.
+ *
+ * The source is compiled in-process with the system Java compiler, so this
+ * needs a JDK rather than a JRE; a file without a class of its own (a bare
+ * method, say) is wrapped in one first. The compiled method runs in a child
+ * JVM that loads it in a class loader of its own, so the code under test can
+ * neither disturb the analyzer nor clash with its classes, and a call that
+ * does not come back is ended by killing the process.
+ *
+ * The child grows the input size by about sqrt(2) at a time from 8, warming
+ * up at each size and then timing batches of calls on fresh copies of the
+ * input, and prints the median time per call. It stops at the size limit or
+ * when the next size would take longer than CALL_LIMIT_NANOS per call. The
+ * parent fits the times to each growth curve and reports the closest.
+ *
+ * Arrays, collections and strings get n random elements, and int or long
+ * parameters next to them a random value below n; if there are none, every
+ * int or long parameter is n itself.
+ */
+final class EmpiricalVerifier {
+
+    private static final int FIRST_SIZE = 8;
+    private static final int DEFAULT_MAX_SIZE = 1 << 20;
+    private static final int DEFAULT_TIMEOUT_SECONDS = 60;
+    // A size is skipped once the one before suggests a call would take longer than this.
+    private static final long CALL_LIMIT_NANOS = 1_000_000_000L;
+    // Fits need at least this many sizes to mean anything.
+    private static final int MIN_SIZES = 4;
+    // Among curves fitting within this factor of the best, the slowest-growing one is reported.
+    private static final double FIT_TOLERANCE = 1.1;
+
+    private static final Complexity[] CURVES = {Complexity.CONSTANT, Complexity.LOGARITHMIC, Complexity.LINEAR,
+            Complexity.LINEARITHMIC, Complexity.polynomial(2), Complexity.polynomial(3), Complexity.EXPONENTIAL};
+
+    // Lines in front of the source when it is wrapped in a class.
+    private static final String WRAPPER_HEAD = "import java.util.*;\nimport java.util.function.*;\n\n"
+            + "public class Snippet {\n";
+    private static final int WRAPPER_LINES = 4;
+
+    private EmpiricalVerifier() {
+    }
+
+    /**
+     * Verifies method {@code args[1]} of the source file {@code args[0]};
+     * {@code --max-size N} caps the input size and {@code --timeout SECONDS}
+     * the whole measurement.
+     */
+    static void run(String[] args) throws IOException {
+        int maxSize = DEFAULT_MAX_SIZE;
+        int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max-size") && i + 1 < args.length) {
+                maxSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--timeout") && i + 1 < args.length) {
+                timeoutSeconds = Integer.parseInt(args[++i]);
+            } else {
+                operands.add(args[i]);
+            }
+        }
+        if (operands.size() != 2) {
+            throw new IOException("Usage: --verify FILE METHOD [--max-size N] [--timeout SECONDS]");
+        }
+        Path file = Paths.get(operands.get(0));
+        String method = operands.get(1);
+        String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+        AnalysisResult.MethodResult estimate = null;
+        for (AnalysisResult.MethodResult candidate : ComplexityEngine.analyze(source).methods) {
+            if (candidate.name.equals(method)) {
+                estimate = candidate;
+                break;
+            }
+        }
+        if (estimate == null) {
+            throw new IOException("No method named " + method + " in " + file);
+        }
+
+        Path classes = Files.createTempDirectory("complexity-verify");
+        try {
+            compile(source, classes);
+            System.out.println("=== Empirical Verification: " + method + " ===");
+            System.out.println("Static estimate:    " + estimate.timeDetail);
+            System.out.println(String.format("%12s %16s", "n", "time/call"));
+            List<long[]> samples = new ArrayList<>();
+            String stopped = measure(classes, method, maxSize, timeoutSeconds, samples);
+            report(estimate.time, samples, stopped);
+        } finally {
+            delete(classes);
+        }
+    }
+
+    private static void compile(String source, Path classes) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No Java compiler available; run the analyzer on a JDK");
+        }
+        String typeName = topLevelType(source);
+        boolean wrapped = typeName == null;
+        Path sourceFile = classes.resolve((wrapped ? "Snippet" : typeName) + ".java");
+        Files.write(sourceFile, (wrapped ? WRAPPER_HEAD + source + "\n}\n" : source).getBytes(StandardCharsets.UTF_8));
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null,
+                StandardCharsets.UTF_8)) {
+            boolean compiled = compiler.getTask(null, files, diagnostics,
+                    Arrays.asList("-d", classes.toString(), "-nowarn", "-proc:none"), null,
+                    files.getJavaFileObjects(sourceFile.toFile())).call();
+            if (!compiled) {
+                StringBuilder message = new StringBuilder("Compilation failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        long line = diagnostic.getLineNumber() - (wrapped ? WRAPPER_LINES : 0);
+                        message.append("\n  line ").append(line).append(": ").append(diagnostic.getMessage(null));
+                    }
+                }
+                throw new IOException(message.toString());
+            }
+        }
+        Files.delete(sourceFile);
+    }
+
+    /** Name of the public top-level type, else of the first one, or null if the source declares none. */
+    private static String topLevelType(String source) {
+        TokenStream tokens = TokenStream.tokenize(source);
+        String first = null;
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.is(i, '{')) {
+                depth++;
+            } else if (tokens.is(i, '}')) {
+                depth--;
+            } else if (depth == 0 && tokens.isIdentifier(i + 1) && (tokens.is(i, "class") || tokens.is(i, "interface")
+                    || tokens.is(i, "enum"))) {
+                for (int k = i - 1; k >= 0 && tokens.isIdentifier(k); k--) {
+                    if (tokens.is(k, "public")) {
+                        return tokens.text(i + 1);
+                    }
+                }
+                if (first == null) {
+                    first = tokens.text(i + 1);
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Runs the child JVM and adds its (size, nanoseconds per call) samples;
+     * returns why it stopped short of the size limit, or null.
+     */
+    private static String measure(Path classes, String method, int maxSize, int timeoutSeconds, List<long[]> samples)
+            throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                EmpiricalVerifier.class.getName(), classes.toString(), method, Integer.toString(maxSize))
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    lines.add(line);
+                }
+            } catch (IOException e) {
+                // The child was killed; whatever arrived is kept.
+            }
+            lines.add("");
+        }, "verify-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        try {
+            while (true) {
+                String line;
+                try {
+                    line = lines.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "interrupted";
+                }
+                if (line == null) {
+                    return "time limit of " + timeoutSeconds + " s reached";
+                }
+                if (line.isEmpty()) {
+                    return null;
+                }
+                if (line.startsWith("!")) {
+                    return line.substring(1).trim();
+                }
+                String[] fields = line.split(" ");
+                long[] sample = {Long.parseLong(fields[0]), Long.parseLong(fields[1])};
+                samples.add(sample);
+                System.out.println(String.format("%12d %16s", sample[0], formatNanos(sample[1])));
+            }
+        } finally {
+            child.destroyForcibly();
+        }
+    }
+
+    private static void report(Complexity estimate, List<long[]> samples, String stopped) {
+        if (stopped != null) {
+            System.out.println("Stopped: " + stopped);
+        }
+        Complexity measured = fit(samples);
+        if (measured == null) {
+            System.out.println("Empirical estimate: not enough sizes measured (" + samples.size() + " of "
+                    + MIN_SIZES + ")");
+            return;
+        }
+        System.out.println(String.format("Empirical estimate: %s (fit error %.1f%%)", measured,
+                100 * fitError(measured, samples)));
+        int cmp = estimate.compareTo(measured);
+        System.out.println("Result: " + (cmp == 0 ? "matches the static estimate"
+                : "static estimate " + estimate + " is " + (cmp > 0 ? "higher" : "lower") + " than measured"));
+    }
+
+    /**
+     * The growth curve that best fits the (size, nanoseconds per call)
+     * samples, or null if fewer than MIN_SIZES sizes were measured. Of the
+     * curves fitting within FIT_TOLERANCE of the best, the slowest-growing wins.
+     */
+    static Complexity fit(List<long[]> samples) {
+        if (samples.size() < MIN_SIZES) {
+            return null;
+        }
+        double[] error = new double[CURVES.length];
+        int best = -1;
+        for (int k = 0; k < CURVES.length; k++) {
+            error[k] = fitError(CURVES[k], samples);
+            if (best < 0 || error[k] < error[best]) {
+                best = k;
+            }
+        }
+        for (int k = 0; k < best; k++) {
+            if (error[k] <= error[best] * FIT_TOLERANCE) {
+                return CURVES[k];
+            }
+        }
+        return CURVES[best];
+    }
+
+    /**
+     * Root mean square relative error of the best fit t = a + b * f(n) with
+     * a, b >= 0, so a constant overhead per call does not hide the growth.
+     * Exponential growth is fitted as c^n for the best c between 1.1 and 3,
+     * since recursion rarely doubles exactly (Fibonacci grows by 1.618).
+     */
+    private static double fitError(Complexity curve, List<long[]> samples) {
+        if (!curve.exponential) {
+            return fitError(curve, 0, samples);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int step = 0; step <= 38; step++) {
+            best = Math.min(best, fitError(curve, 1.1 + step * 0.05, samples));
+        }
+        return best;
+    }
+
+    /** Error of one fit; infinite if the curve cannot be evaluated at the measured sizes. */
+    private static double fitError(Complexity curve, double base, List<long[]> samples) {
+        int count = samples.size();
+        double[] f = new double[count];
+        double[] t = new double[count];
+        for (int i = 0; i < count; i++) {
+            f[i] = growth(curve, base, samples.get(i)[0]);
+            t[i] = Math.max(1, samples.get(i)[1]);
+            if (Double.isInfinite(f[i])) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        // Weighted least squares with weights 1 / t^2, i.e. on relative residuals.
+        double sw = 0;
+        double sf = 0;
+        double st = 0;
+        double sff = 0;
+        double sft = 0;
+        for (int i = 0; i < count; i++) {
+            double w = 1 / (t[i] * t[i]);
+            sw += w;
+            sf += w * f[i];
+            st += w * t[i];
+            sff += w * f[i] * f[i];
+            sft += w * f[i] * t[i];
+        }
+        double determinant = sw * sff - sf * sf;
+        double b = determinant > 0 ? (sw * sft - sf * st) / determinant : 0;
+        double a = (st - b * sf) / sw;
+        if (b < 0) {
+            b = 0;
+            a = st / sw;
+        } else if (a < 0) {
+            a = 0;
+            b = sff > 0 ? sft / sff : 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double relative = (t[i] - a - b * f[i]) / t[i];
+            sum += relative * relative;
+        }
+        return Math.sqrt(sum / count);
+    }
+
+    private static double growth(Complexity curve, double base, double n) {
+        if (curve.exponential) {
+            return Math.pow(base, n);
+        }
+        return Math.pow(n, curve.degree) * Math.pow(Math.log(n) / Math.log(2), curve.logs);
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + " ns";
+        }
+        if (nanos < 10_000_000) {
+            return String.format("%.1f us", nanos / 1e3);
+        }
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            // Left for the system to clean up with the rest of the temp directory.
+        }
+    }
+
+    /**
+     * Child side: {@code args} are the classes directory, the method name and
+     * the size limit. Prints "size nanos" per measured size and "! reason" if
+     * it cannot go on. The code under test runs on a thread with a large
+     * stack, for deep recursion, and its own output goes to stderr.
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        System.setOut(System.err);
+        Thread worker = new Thread(null, () -> {
+            try {
+                new Child(Paths.get(args[0]), args[1], Integer.parseInt(args[2]), out).run();
+            } catch (InvocationTargetException e) {
+                out.println("! " + args[1] + " threw " + e.getCause());
+            } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+                out.println("! " + e);
+            }
+        }, "verify", 1L << 28);
+        worker.start();
+        worker.join();
+        out.flush();
+        System.exit(0);
+    }
+
+    /** Generates inputs and times the method at growing sizes. */
+    private static final class Child {
+
+        // Elements of fresh input copies prepared per batch.
+        private static final int BATCH_ELEMENTS = 1 << 22;
+        private static final int MAX_BATCH = 64;
+        private static final long WARMUP_NANOS = 20_000_000L;
+        private static final long ROUND_NANOS = 10_000_000L;
+        private static final int ROUNDS = 5;
+
+        private final Method method;
+        private final Object target;
+        private final Class<?>[] types;
+        private final boolean sized;
+        private final int maxSize;
+        private final PrintStream out;
+        // The last result, so calls cannot be optimized away.
+        static volatile Object sink;
+
+        Child(Path classes, String name, int maxSize, PrintStream out) throws Exception {
+            this.maxSize = maxSize;
+            this.out = out;
+            ClassLoader loader = new URLClassLoader(new URL[] {classes.toUri().toURL()},
+                    ClassLoader.getSystemClassLoader().getParent());
+            Method found = null;
+            try (Stream<Path> files = Files.walk(classes)) {
+                for (Path file : files.filter(path -> path.toString().endsWith(".class")).sorted()
+                        .collect(Collectors.toList())) {
+                    String className = classes.relativize(file).toString().replace(File.separatorChar, '.');
+                    Class<?> type = loader.loadClass(className.substring(0, className.length() - ".class".length()));
+                    for (Method candidate : type.getDeclaredMethods()) {
+                        if (candidate.getName().equals(name) && supported(candidate.getParameterTypes())
+                                && (found == null || found.getDeclaringClass().getName().contains("$"))) {
+                            found = candidate;
+                        }
+                    }
+                }
+            }
+            if (found == null) {
+                throw new NoSuchMethodException(name + " with parameters of supported types"
+                        + " (int, long, arrays, String, List, Set, Map)");
+            }
+            found.setAccessible(true);
+            this.method = found;
+            this.types = found.getParameterTypes();
+            if (Modifier.isStatic(found.getModifiers())) {
+                this.target = null;
+            } else {
+                Constructor<?> constructor = found.getDeclaringClass().getDeclaredConstructor();
+                constructor.setAccessible(true);
+                this.target = constructor.newInstance();
+            }
+            boolean hasSized = false;
+            for (Class<?> type : types) {
+                hasSized |= !isNumber(type);
+            }
+            this.sized = hasSized;
+        }
+
+        void run() throws Exception {
+            long previous = 0;
+            long last = 0;
+            for (double size = FIRST_SIZE; size <= maxSize; size *= Math.sqrt(2)) {
+                int n = (int) Math.round(size);
+                if (previous > 0 && last > 0 && (double) last * last / previous > CALL_LIMIT_NANOS) {
+                    out.println("! the next size would take over " + CALL_LIMIT_NANOS / 1_000_000 + " ms per call");
+                    return;
+                }
+                long nanos = measure(n);
+                out.println(n + " " + nanos);
+                previous = last;
+                last = Math.max(1, nanos);
+            }
+        }
+
+        /**
+         * Median over ROUNDS of the time per call. A round times whole batches
+         * of calls until they took ROUND_NANOS, or the round as a whole,
+         * copying included, took ten times that. Inputs a first call leaves
+         * as they were are reused, as a benchmark would; the others, such as
+         * arrays sorted in place, are copied afresh for every call.
+         */
+        private long measure(int n) throws Exception {
+            Random random = new Random(n);
+            Object[] template = new Object[types.length];
+            for (int k = 0; k < types.length; k++) {
+                template[k] = input(types[k], n, random);
+            }
+            Object[] probe = copyAll(template);
+            long probeStart = System.nanoTime();
+            method.invoke(target, probe);
+            long probeNanos = Math.max(1, System.nanoTime() - probeStart);
+            boolean fresh = !Arrays.deepEquals(probe, template);
+            // Batches of about a tenth of a round, within the memory allowed for copies.
+            int batch = (int) Math.max(1, Math.min(MAX_BATCH, ROUND_NANOS / 10 / probeNanos));
+            if (fresh) {
+                batch = Math.max(1, Math.min(batch, BATCH_ELEMENTS / Math.max(1, n)));
+            }
+            Object[][] copies = new Object[batch][];
+            Arrays.fill(copies, template);
+
+            long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+            do {
+                timeBatch(template, copies, fresh);
+            } while (System.nanoTime() < warmupEnd);
+
+            long[] rounds = new long[ROUNDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                long roundEnd = System.nanoTime() + 10 * ROUND_NANOS;
+                long spent = 0;
+                long calls = 0;
+                do {
+                    spent += timeBatch(template, copies, fresh);
+                    calls += batch;
+                } while (spent < ROUND_NANOS && System.nanoTime() < roundEnd);
+                rounds[round] = spent / calls;
+            }
+            Arrays.sort(rounds);
+            return rounds[ROUNDS / 2];
+        }
+
+        /** Calls the method once per copy, timing only the calls. */
+        private long timeBatch(Object[] template, Object[][] copies, boolean fresh) throws Exception {
+            for (int c = 0; fresh && c < copies.length; c++) {
+                copies[c] = copyAll(template);
+            }
+            long start = System.nanoTime();
+            Object result = null;
+            for (Object[] arguments : copies) {
+                result = method.invoke(target, arguments);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink = result;
+            return elapsed;
+        }
+
+        private Object input(Class<?> type, int n, Random random) {
+            if (isNumber(type)) {
+                int value = sized ? random.nextInt(n) : n;
+                return type == long.class || type == Long.class ? (Object) (long) value : (Object) value;
+            }
+            if (type == int[].class) {
+                return random.ints(n).toArray();
+            }
+            if (type == long[].class) {
+                return random.longs(n).toArray();
+            }
+            if (type == double[].class) {
+                return random.doubles(n).toArray();
+            }
+            if (type == Integer[].class) {
+                return random.ints(n).boxed().toArray(Integer[]::new);
+            }
+            if (type == char[].class || type == String.class) {
+                char[] chars = new char[n];
+                for (int i = 0; i < n; i++) {
+                    chars[i] = (char) ('a' + random.nextInt(26));
+                }
+                return type == String.class ? new String(chars) : chars;
+            }
+            if (type == Set.class || type == HashSet.class) {
+                return new HashSet<>(random.ints(n).boxed().collect(Collectors.toList()));
+            }
+            if (type == Map.class || type == HashMap.class) {
+                Map<Integer, Integer> map = new HashMap<>();
+                random.ints(n).forEach(value -> map.put(value, value));
+                return map;
+            }
+            List<Integer> values = random.ints(n).boxed().collect(Collectors.toList());
+            return type == LinkedList.class ? new LinkedList<>(values) : new ArrayList<>(values);
+        }
+
+        private static Object[] copyAll(Object[] values) {
+            Object[] copies = new Object[values.length];
+            for (int k = 0; k < values.length; k++) {
+                copies[k] = copy(values[k]);
+            }
+            return copies;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Object copy(Object value) {
+            if (value instanceof int[]) {
+                return ((int[]) value).clone();
+            }
+            if (value instanceof long[]) {
+                return ((long[]) value).clone();
+            }
+            if (value instanceof double[]) {
+                return ((double[]) value).clone();
+            }
+            if (value instanceof char[]) {
+                return ((char[]) value).clone();
+            }
+            if (value instanceof Object[]) {
+                return ((Object[]) value).clone();
+            }
+            if (value instanceof LinkedList) {
+                return new LinkedList<>((Collection<Object>) value);
+            }
+            if (value instanceof List) {
+                return new ArrayList<>((Collection<Object>) value);
+            }
+            if (value instanceof Set) {
+                return new HashSet<>((Collection<Object>) value);
+            }
+            if (value instanceof Map) {
+                return new HashMap<>((Map<Object, Object>) value);
+            }
+            return value;
+        }
+
+        private static boolean supported(Class<?>[] types) {
+            for (Class<?> type : types) {
+                if (!isNumber(type) && !Arrays.asList(int[].class, long[].class, double[].class, Integer[].class,
+                        char[].class, String.class, List.class, ArrayList.class, LinkedList.class, Collection.class,
+                        Iterable.class, Set.class, HashSet.class, Map.class, HashMap.class).contains(type)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isNumber(Class<?> type) {
+            return type == int.class || type == long.class || type == Integer.class || type == Long.class;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Keeps the analysis of a document that is being edited up to date.
+ *
+ * Each update finds the changed region by comparing the new text with the
+ * last analyzed one, re-lexes only that region and re-scans only the methods
+ * enclosing it. The call graph and the cost composition are rebuilt every
+ * time; both are linear in methods and call sites, not in characters.
+ */
+final class IncrementalAnalyzer {
+
+    private String text = "";
+    private TokenStream tokens = TokenStream.tokenize(text);
+    private MethodAnalysis analysis = MethodAnalysis.analyze(tokens, CallGraph.build(tokens));
+    private AnalysisResult result = analysis.result();
+
+    /** Analyzes {@code next}, reusing whatever the edit since the last update did not touch. */
+    synchronized AnalysisResult update(String next) {
+        int limit = Math.min(text.length(), next.length());
+        int prefix = 0;
+        while (prefix < limit && text.charAt(prefix) == next.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == text.length() && prefix == next.length()) {
+            return result;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && text.charAt(text.length() - 1 - suffix) == next.charAt(next.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        tokens = TokenStream.edit(tokens, next, prefix, text.length() - prefix - suffix,
+                next.length() - prefix - suffix);
+        analysis = MethodAnalysis.reanalyze(analysis, tokens, CallGraph.build(tokens));
+        result = analysis.result();
+        text = next;
+        return result;
+    }
+}
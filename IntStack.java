@@ -0,0 +1,46 @@
+import java.util.Arrays;
+
+/**
+ * Growable stack of ints, for the loop and scope stacks on the scanning hot
+ * path; unlike a Deque of Integer it does not box, and cleared stacks keep
+ * their capacity so a reused one stops allocating.
+ */
+final class IntStack {
+
+    private int[] values = new int[16];
+    private int size;
+
+    void push(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /** Removes and returns the top value; the stack must not be empty. */
+    int pop() {
+        return values[--size];
+    }
+
+    /** The top value; the stack must not be empty. */
+    int peek() {
+        return values[size - 1];
+    }
+
+    /** The value {@code index} places from the bottom. */
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,1167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Per-method complexity analysis.
+ *
+ * The tokens are split into one unit per method (its name, parameters and
+ * body, minus any methods declared inside it, such as those of anonymous
+ * classes) plus a top-level unit for everything outside a method. Each unit is
+ * scanned once on its own, so its findings depend only on its own tokens and
+ * units can be analyzed in parallel.
+ *
+ * Each loop header is read for the bound it runs to and how it steps: a loop
+ * from 0 to m one at a time costs m, one that halves or doubles costs log m,
+ * and one between two constants costs 1. Headers that cannot be read, while
+ * loops and for-each loops are taken to run to n. A unit costs the sum over
+ * its loops of the product of the loops enclosing each, as a symbolic
+ * {@link Cost} such as n*m + k log k. Costs are then composed along the call
+ * graph, callees first: a call costs the callee times the loops around it.
+ * Calls within one recursion cycle are left to the recursion estimate.
+ *
+ * Space is modeled the same way. Parameter and variable declarations cost
+ * nothing; {@code new T[a][b]} costs the product of its dimensions, read like
+ * loop bounds, and a collection created with a size or a source to copy costs
+ * n. Adding to a collection (add, put, push, append, ...) inside loops costs
+ * the product of those loops, and so does storing a new array into an array
+ * element. Recursion costs its depth on the call stack: log n if the unit
+ * halves something, n otherwise. A call costs the callee's space, once.
+ *
+ * An instance is not modified after analyze returns, so it may be read from
+ * any thread.
+ */
+final class MethodAnalysis {
+
+    // Below this many units the fork/join overhead outweighs the scan.
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    // Flag bits packed into the low end of each loop stack entry.
+    private static final int LOOP_BRACED = 1;
+    private static final int LOOP_DO = 2;
+
+    // How a loop counts towards its bound.
+    private static final byte LINEAR = 0;
+    private static final byte GEOMETRIC = 1;
+
+    private static final Estimate CONSTANT_TIME = new Estimate(Complexity.CONSTANT, "O(1) - Constant time",
+            AnalysisResult.Confidence.HIGH, -1, Cost.ONE);
+
+    private static final Estimate CONSTANT_SPACE = new Estimate(Complexity.CONSTANT, "O(1) - Constant space",
+            AnalysisResult.Confidence.HIGH, -1, Cost.ONE);
+
+    private static final AnalysisResult.Kind[] KINDS = AnalysisResult.Kind.values();
+
+    private static final CostRules RULES = CostRules.loaded();
+
+    // Kinds of allocation site, indexing ALLOCATION_DETAILS.
+    private static final int ARRAY = 0;
+    private static final int COLLECTION = 1;
+    private static final int GROWTH = 2;
+    private static final String[] ALLOCATION_DETAILS = {
+        "array allocation", "data structure allocation", "data structure growth"
+    };
+    private static final Allocation[] NO_ALLOCATIONS = new Allocation[0];
+    // Methods that add elements to a collection or builder; called inside a loop, they grow it.
+    static final String[] GROWTH_METHODS = {
+        "add", "addAll", "addFirst", "addLast", "offer", "offerFirst", "offerLast", "push", "put", "putAll",
+        "append", "insert"
+    };
+
+    // Loops of the unit being scanned, reused by every scan on the same thread.
+    private static final ThreadLocal<LoopNest> LOOP_NESTS = ThreadLocal.withInitial(LoopNest::new);
+
+    private final TokenStream tokens;
+    private final CallGraph calls;
+    private final int topLevel;
+    // AnalysisBudget deadline; scans stop once it passes and the result is marked partial.
+    private final long deadline;
+    private volatile boolean outOfTime;
+
+    // Findings of each unit's own tokens; the top-level unit is at index methodCount.
+    // The *At arrays hold the token the finding was made at, or -1. loops counts the
+    // non-constant loops in the costliest nest, which loopAt is the innermost of.
+    private final int[] loops;
+    private final int[] loopAt;
+    // libraryDepth is the loop depth of the costliest call to a library method
+    // with a known cost (see CostRules), or -1; libraryName names its rule.
+    private final int[] libraryDepth;
+    private final int[] libraryAt;
+    private final String[] libraryName;
+    private final int[] halvingAt;
+    // Summed cost of the unit's loops and of its library calls.
+    private final Cost[] loopCost;
+    private final Cost[] libraryCost;
+    // Allocation sites of non-constant size, their summed size and the detail of the largest.
+    private final Allocation[][] allocations;
+    private final Cost[] allocationCost;
+    private final String[] allocationDetail;
+    // Loop nesting around each call site, and the cost of those loops.
+    private final int[] callDepth;
+    private final Cost[] callCost;
+
+    // Composed results, including everything reachable through calls.
+    private final Estimate[] time;
+    private final Estimate[] space;
+
+    private MethodAnalysis(TokenStream tokens, CallGraph calls, long deadline) {
+        this.tokens = tokens;
+        this.calls = calls;
+        this.topLevel = calls.methodCount();
+        this.deadline = deadline;
+        this.outOfTime = tokens.outOfTime() || calls.outOfTime();
+        int units = topLevel + 1;
+        loops = new int[units];
+        loopAt = new int[units];
+        libraryDepth = new int[units];
+        libraryAt = new int[units];
+        libraryName = new String[units];
+        halvingAt = new int[units];
+        loopCost = new Cost[units];
+        libraryCost = new Cost[units];
+        allocations = new Allocation[units][];
+        allocationCost = new Cost[units];
+        allocationDetail = new String[units];
+        callDepth = new int[calls.callCount()];
+        callCost = new Cost[calls.callCount()];
+        Arrays.fill(callCost, Cost.ONE);
+        time = new Estimate[units];
+        space = new Estimate[units];
+    }
+
+    static MethodAnalysis analyze(TokenStream tokens, CallGraph calls) {
+        return analyze(tokens, calls, AnalysisBudget.NO_DEADLINE);
+    }
+
+    /**
+     * Same as {@link #analyze(TokenStream, CallGraph)}, but stops scanning once
+     * {@code deadline} (see {@link AnalysisBudget#deadline}) has passed. Units
+     * not scanned by then count as constant time and the result is partial.
+     */
+    static MethodAnalysis analyze(TokenStream tokens, CallGraph calls, long deadline) {
+        MethodAnalysis analysis = new MethodAnalysis(tokens, calls, deadline);
+        analysis.scanAll(new boolean[analysis.topLevel]);
+        analysis.compose();
+        return analysis;
+    }
+
+    /**
+     * Same as {@link #analyze} for tokens that {@link TokenStream#edit} derived
+     * from the tokens of {@code previous}. Methods lying wholly in the unchanged
+     * head or tail keep their findings; only the methods enclosing the edit and
+     * the top level are scanned again before costs are composed.
+     */
+    static MethodAnalysis reanalyze(MethodAnalysis previous, TokenStream tokens, CallGraph calls) {
+        MethodAnalysis analysis = new MethodAnalysis(tokens, calls, AnalysisBudget.NO_DEADLINE);
+        CallGraph before = previous.calls;
+        int head = tokens.keptBefore();
+        int tail = previous.tokens.size() - tokens.keptAfter();
+        int shift = tokens.size() - previous.tokens.size();
+
+        // Old method index -> new method index, for methods whose tokens did not change.
+        int[] moved = new int[previous.topLevel];
+        boolean[] reused = new boolean[analysis.topLevel];
+        int method = 0;
+        for (int old = 0; old < previous.topLevel; old++) {
+            moved[old] = -1;
+            // The token before the name decides whether it is a declaration at all.
+            int first = before.nameToken(old) - 1;
+            int last = before.bodyEnd(old);
+            if (last >= head && first < tail) {
+                continue;
+            }
+            int offset = last < head ? 0 : shift;
+            while (method < analysis.topLevel && calls.nameToken(method) < first + 1 + offset) {
+                method++;
+            }
+            if (method < analysis.topLevel && calls.nameToken(method) == first + 1 + offset
+                    && calls.bodyEnd(method) == last + offset) {
+                moved[old] = method;
+                reused[method] = true;
+                analysis.loops[method] = previous.loops[old];
+                analysis.loopAt[method] = moved(previous.loopAt[old], offset);
+                analysis.libraryDepth[method] = previous.libraryDepth[old];
+                analysis.libraryAt[method] = moved(previous.libraryAt[old], offset);
+                analysis.libraryName[method] = previous.libraryName[old];
+                analysis.halvingAt[method] = moved(previous.halvingAt[old], offset);
+                analysis.loopCost[method] = previous.loopCost[old];
+                analysis.libraryCost[method] = previous.libraryCost[old];
+                analysis.allocations[method] = moved(previous.allocations[old], offset);
+                analysis.allocationCost[method] = previous.allocationCost[old];
+                analysis.allocationDetail[method] = previous.allocationDetail[old];
+            }
+        }
+        for (int call = 0; call < before.callCount(); call++) {
+            int caller = before.caller(call);
+            if (caller >= 0 && moved[caller] >= 0) {
+                int token = before.callToken(call);
+                int now = calls.callAt(token < head ? token : token + shift);
+                if (now >= 0) {
+                    analysis.callDepth[now] = previous.callDepth[call];
+                    analysis.callCost[now] = previous.callCost[call];
+                }
+            }
+        }
+
+        analysis.scanAll(reused);
+        analysis.compose();
+        return analysis;
+    }
+
+    private static int moved(int token, int offset) {
+        return token < 0 ? token : token + offset;
+    }
+
+    private static Allocation[] moved(Allocation[] sites, int offset) {
+        if (offset == 0) {
+            return sites;
+        }
+        Allocation[] moved = new Allocation[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            moved[k] = new Allocation(sites[k].token + offset, sites[k].size, sites[k].detail);
+        }
+        return moved;
+    }
+
+    /** Packages the findings as a structured result with source locations. */
+    AnalysisResult result() {
+        long started = Metrics.start(Metrics.Phase.RESULT);
+        Estimate worst = time[topLevel];
+        Estimate largest = space[topLevel];
+        for (int method = topLevel - 1; method >= 0; method--) {
+            if (time[method].cost.compareTo(worst.cost) >= 0) {
+                worst = time[method];
+            }
+            if (space[method].cost.compareTo(largest.cost) >= 0) {
+                largest = space[method];
+            }
+        }
+
+        Lines lines = new Lines(tokens.source());
+        List<AnalysisResult.MethodResult> methods = new ArrayList<>(topLevel);
+        for (int method = 0; method < topLevel; method++) {
+            methods.add(new AnalysisResult.MethodResult(calls.methodName(method),
+                    lines.line(tokens.start(calls.nameToken(method))), time[method].cost, time[method].text,
+                    time[method].confidence, space[method].cost, space[method].text));
+        }
+
+        // At most one finding of each kind per unit.
+        int sites = 0;
+        for (int unit = 0; unit <= topLevel; unit++) {
+            sites += allocations[unit].length;
+        }
+        long[] found = new long[(topLevel + 1) * KINDS.length + sites];
+        int count = 0;
+        for (int unit = 0; unit <= topLevel; unit++) {
+            count = collectEvidence(unit, found, count);
+        }
+        Arrays.sort(found, 0, count);
+        List<AnalysisResult.Evidence> evidence = new ArrayList<>(count);
+        Lines cursor = new Lines(tokens.source());
+        for (int k = 0; k < count; k++) {
+            evidence.add(evidence(found[k], cursor));
+        }
+
+        AnalysisResult result = new AnalysisResult(worst.cost, worst.text, worst.confidence,
+                largest.cost, largest.text, Collections.unmodifiableList(evidence),
+                Collections.unmodifiableList(methods), Collections.unmodifiableList(calls.recursiveCycles()), null);
+        Metrics.stop(Metrics.Phase.RESULT, started);
+        return outOfTime ? result.partial("time budget exceeded; later code was not scanned") : result;
+    }
+
+    /**
+     * The findings of each method and the calls it makes, for composing costs
+     * across the files of a project (see ProjectGraph). Calls from outside any
+     * method are left out.
+     */
+    ProjectGraph.FileSummary summary(String path, String className) {
+        Lines lines = new Lines(tokens.source());
+        String[] names = new String[topLevel];
+        int[] line = new int[topLevel];
+        int[] parameters = new int[topLevel];
+        Complexity[] localTime = new Complexity[topLevel];
+        for (int method = 0; method < topLevel; method++) {
+            names[method] = calls.methodName(method);
+            line[method] = lines.line(tokens.start(calls.nameToken(method)));
+            parameters[method] = calls.parameters(method);
+            localTime[method] = time[method].cost;
+        }
+
+        int count = 0;
+        for (int call = 0; call < calls.callCount(); call++) {
+            if (calls.caller(call) >= 0) {
+                count++;
+            }
+        }
+        int[] callers = new int[count];
+        Cost[] costs = new Cost[count];
+        int[] depths = new int[count];
+        int[] arguments = new int[count];
+        int[] targetOffsets = new int[count + 1];
+        IntStack targets = new IntStack();
+        String[] calleeNames = new String[count];
+        String[] qualifiers = new String[count];
+        Map<String, String> types = null;
+        int k = 0;
+        for (int call = 0; call < calls.callCount(); call++) {
+            if (calls.caller(call) < 0) {
+                continue;
+            }
+            callers[k] = calls.caller(call);
+            costs[k] = callCost[call];
+            depths[k] = callDepth[call];
+            arguments[k] = calls.arguments(call);
+            targetOffsets[k] = targets.size();
+            for (int target = calls.target(call); target >= 0; target = calls.nextTarget(call, target)) {
+                targets.push(target);
+            }
+            int name = calls.callToken(call);
+            if (targets.size() > targetOffsets[k]) {
+                // Resolved in this file.
+            } else if (!tokens.is(name - 1, '.') || tokens.is(name - 2, "this")) {
+                calleeNames[k] = tokens.text(name);
+            } else if (tokens.isIdentifier(name - 2) && !tokens.is(name - 2, "super")) {
+                // Class names start upper case by convention; variables and fields do not, and
+                // a call on one goes to the class it was declared with, if that is known.
+                String qualifier = tokens.text(name - 2);
+                if (!Character.isUpperCase(qualifier.charAt(0))) {
+                    if (types == null) {
+                        types = declaredTypes();
+                    }
+                    qualifier = types.get(qualifier);
+                }
+                if (qualifier != null && !qualifier.isEmpty()) {
+                    calleeNames[k] = tokens.text(name);
+                    qualifiers[k] = qualifier;
+                }
+            }
+            k++;
+        }
+        targetOffsets[count] = targets.size();
+        int[] localTargets = new int[targets.size()];
+        for (int t = 0; t < localTargets.length; t++) {
+            localTargets[t] = targets.get(t);
+        }
+        return new ProjectGraph.FileSummary(path, className, outOfTime, names, line, parameters, localTime,
+                loops, loopCost, libraryDepth, libraryCost, libraryName, halvingAt, allocationCost, allocationDetail,
+                callers, costs, depths, arguments, targetOffsets, localTargets, calleeNames, qualifiers);
+    }
+
+    /**
+     * The declared class of each variable, field and parameter whose type is
+     * a plain class name ({@code Helper helper}, {@code Helper h = ...}), by
+     * name. Names declared with different types in one file map to "", as do
+     * generic and array types, whose calls go to library classes.
+     */
+    private Map<String, String> declaredTypes() {
+        Map<String, String> types = new HashMap<>();
+        for (int i = 1; i + 1 < tokens.size(); i++) {
+            if (!tokens.isIdentifier(i) || tokens.isKeyword(i) || !(tokens.is(i + 1, '=') || tokens.is(i + 1, ';')
+                    || tokens.is(i + 1, ',') || tokens.is(i + 1, ')') || tokens.is(i + 1, ':'))) {
+                continue;
+            }
+            String type;
+            if (tokens.isIdentifier(i - 1) && !tokens.isKeyword(i - 1)
+                    && Character.isUpperCase(tokens.source().charAt(tokens.start(i - 1)))) {
+                type = tokens.text(i - 1);
+            } else if (tokens.is(i - 1, '>') || tokens.is(i - 1, ">>") || tokens.is(i - 1, ']')) {
+                type = "";
+            } else {
+                continue;
+            }
+            types.merge(tokens.text(i), type, (a, b) -> a.equals(b) ? a : "");
+        }
+        return types;
+    }
+
+    // Evidence entries are packed as token << 32 | unit << 3 | kind ordinal until
+    // they are resolved to lines, so sorting them by position is a primitive sort.
+    // Allocations are listed site by site, everything else once per unit.
+    private int collectEvidence(int unit, long[] found, int count) {
+        count = addEvidence(found, count, loopAt[unit], AnalysisResult.Kind.LOOP, unit);
+        count = addEvidence(found, count, libraryAt[unit], AnalysisResult.Kind.LIBRARY, unit);
+        count = addEvidence(found, count, halvingAt[unit], AnalysisResult.Kind.HALVING, unit);
+        for (Allocation site : allocations[unit]) {
+            count = addEvidence(found, count, site.token, AnalysisResult.Kind.ALLOCATION, unit);
+        }
+        if (unit < topLevel && calls.isRecursive(unit)) {
+            count = addEvidence(found, count, calls.nameToken(unit), AnalysisResult.Kind.RECURSION, unit);
+        }
+        if (time[unit].call >= 0) {
+            count = addEvidence(found, count, calls.callToken(time[unit].call), AnalysisResult.Kind.CALL, unit);
+        }
+        return count;
+    }
+
+    private static int addEvidence(long[] found, int count, int token, AnalysisResult.Kind kind, int unit) {
+        if (token < 0) {
+            return count;
+        }
+        found[count] = (long) token << 32 | (long) unit << 3 | kind.ordinal();
+        return count + 1;
+    }
+
+    private AnalysisResult.Evidence evidence(long entry, Lines cursor) {
+        int token = (int) (entry >>> 32);
+        AnalysisResult.Kind kind = KINDS[(int) entry & 7];
+        int unit = (int) entry >>> 3;
+        String detail;
+        switch (kind) {
+            case LOOP:
+                detail = loops[unit] == 1 ? "loop" : loops[unit] + " nested loops";
+                break;
+            case LIBRARY:
+                detail = "call to " + (tokens.is(token - 1, '.') ? tokens.text(token - 2) + "." : "")
+                        + tokens.text(token) + (libraryDepth[unit] > 0 ? " inside " + loops(libraryDepth[unit]) : "");
+                break;
+            case HALVING:
+                detail = "halving step";
+                break;
+            case ALLOCATION:
+                detail = null;
+                for (Allocation site : allocations[unit]) {
+                    if (site.token == token) {
+                        detail = site.detail + " (" + site.size + ")";
+                    }
+                }
+                break;
+            case RECURSION:
+                detail = "recursion cycle";
+                break;
+            default:
+                int call = time[unit].call;
+                detail = "call to " + tokens.text(token)
+                        + (callDepth[call] > 0 ? " inside " + loops(callDepth[call]) : "");
+                break;
+        }
+        int offset = tokens.start(token);
+        int line = cursor.line(offset);
+        return new AnalysisResult.Evidence(kind, detail, unit < topLevel ? calls.methodName(unit) : null,
+                offset, line, offset - cursor.lineStart() + 1);
+    }
+
+    /**
+     * Loops known only by how deeply they nest, as the streaming and bytecode
+     * modes see them: each level counts n, and a single loop that halves its
+     * variable log n.
+     */
+    static Cost nestedLoops(int depth, boolean halving) {
+        return depth == 1 && halving ? Cost.logarithmic("n") : insideLoops(Cost.ONE, depth);
+    }
+
+    /** {@code cost} once per pass of {@code depth} nested loops of n passes each. */
+    static Cost insideLoops(Cost cost, int depth) {
+        for (int k = 0; k < depth; k++) {
+            cost = cost.times(Cost.N);
+        }
+        return cost;
+    }
+
+    static String loops(int count) {
+        return count == 1 ? "1 loop" : count + " loops";
+    }
+
+    /** Scans the top level and every method not marked as reused. */
+    private void scanAll(boolean[] reused) {
+        long started = Metrics.start(Metrics.Phase.METHOD_SCAN);
+        IntStream units = IntStream.rangeClosed(0, topLevel).filter(unit -> unit == topLevel || !reused[unit]);
+        if (topLevel >= PARALLEL_THRESHOLD) {
+            units = units.parallel();
+        }
+        Thread phaseThread = Thread.currentThread();
+        units.forEach(unit -> {
+            long worker = Metrics.startWorker(phaseThread);
+            scan(unit);
+            Metrics.stopWorker(Metrics.Phase.METHOD_SCAN, worker);
+        });
+        Metrics.stop(Metrics.Phase.METHOD_SCAN, started);
+    }
+
+    /**
+     * Scans the tokens of one unit. Loops are tracked on a stack keyed by the
+     * brace depth their body opened at, so only the brace that closes a loop
+     * body pops it; braceless bodies end at the next statement terminator
+     * outside the loop header. Loop costs are multiplied out once the unit is
+     * scanned, since a while loop only turns out to be geometric in its body.
+     */
+    private void scan(int unit) {
+        int from = unit == topLevel ? 0 : calls.nameToken(unit);
+        int to = unit == topLevel ? tokens.size() - 1 : calls.bodyEnd(unit);
+        // Next method declared after this unit starts; its tokens belong to it, not to us.
+        int nested = unit == topLevel ? 0 : unit + 1;
+
+        int halves = -1;
+        int braceDepth = 0;
+        int headerEnd = -1;
+        boolean afterDoBody = false;
+        LoopNest nest = LOOP_NESTS.get();
+        nest.clear();
+        IntStack open = nest.open;
+
+        for (int i = from; i <= to; i++) {
+            // Checked when a unit starts and every 1024 tokens, so a one-line file cannot run on.
+            if (((i - from) & 1023) == 0 && AnalysisBudget.expired(deadline)) {
+                outOfTime = true;
+                break;
+            }
+            if (nested < topLevel && calls.nameToken(nested) == i) {
+                i = calls.bodyEnd(nested);
+                while (nested < topLevel && calls.nameToken(nested) <= i) {
+                    nested++;
+                }
+                continue;
+            }
+
+            boolean isFor = tokens.is(i, "for");
+            boolean isWhile = tokens.is(i, "while");
+            boolean isDo = tokens.is(i, "do");
+
+            if (isWhile && afterDoBody) {
+                // Condition of a do-while, not a new loop.
+                headerEnd = Math.max(headerEnd, tokens.matching(i + 1));
+                afterDoBody = false;
+                continue;
+            }
+            afterDoBody = false;
+
+            if (isFor || isWhile || isDo) {
+                int bodyStart = isDo ? i + 1 : tokens.matching(i + 1) + 1;
+                int flags = (tokens.is(bodyStart, '{') ? LOOP_BRACED : 0) | (isDo ? LOOP_DO : 0);
+                int loop = nest.add(open.isEmpty() ? -1 : open.peek(), braceDepth * 4 + flags, i);
+                if (isFor) {
+                    readForHeader(i, to, nest, loop);
+                } else {
+                    nest.conditional[loop] = true;
+                }
+                open.push(loop);
+                headerEnd = Math.max(headerEnd, bodyStart - 1);
+            } else if (tokens.is(i, '{')) {
+                braceDepth++;
+            } else if (tokens.is(i, '}')) {
+                braceDepth = Math.max(0, braceDepth - 1);
+                if (!open.isEmpty()) {
+                    int entry = nest.entry[open.peek()];
+                    if ((entry & LOOP_BRACED) != 0 && entry / 4 == braceDepth) {
+                        open.pop();
+                        afterDoBody = (entry & LOOP_DO) != 0;
+                    }
+                }
+                popBracelessLoops(nest, braceDepth);
+            } else if (tokens.is(i, ';')) {
+                if (i > headerEnd) {
+                    popBracelessLoops(nest, braceDepth);
+                }
+            } else if (tokens.is(i, "new")) {
+                readAllocation(i, to, nest);
+            } else if (tokens.isIdentifier(i)) {
+                if (!open.isEmpty() && isGrowth(i)) {
+                    nest.addAllocation(i, open.peek(), GROWTH, Cost.ONE);
+                }
+                if (tokens.is(i + 1, '(')) {
+                    // Only calls match cost rules, not declarations of a method with the rule's name.
+                    int call = calls.callAt(i);
+                    int rule = call >= 0 ? RULES.match(tokens, i) : -1;
+                    if (rule >= 0) {
+                        nest.library.push(i);
+                        nest.library.push(rule);
+                        nest.library.push(open.isEmpty() ? -1 : open.peek());
+                        nest.library.push(open.size());
+                    }
+                    if (call >= 0) {
+                        callDepth[call] = open.size();
+                        nest.calls.push(call);
+                        nest.calls.push(open.isEmpty() ? -1 : open.peek());
+                    }
+                }
+            } else {
+                if (((tokens.is(i, '/') || tokens.is(i, "/=")) && tokens.is(i + 1, "2"))
+                        || ((tokens.is(i, ">>") || tokens.is(i, ">>>")) && tokens.is(i + 1, "1"))) {
+                    if (halves < 0) {
+                        halves = i;
+                    }
+                    markGeometric(nest);
+                } else if (isGeometricStep(i)) {
+                    markGeometric(nest);
+                }
+            }
+        }
+
+        Cost unitLoops = Cost.ONE;
+        int costliest = -1;
+        for (int loop = 0; loop < nest.count; loop++) {
+            int parent = nest.parent[loop];
+            String symbol = nest.symbol[loop];
+            Cost iteration = symbol == null ? Cost.ONE
+                    : nest.step[loop] == GEOMETRIC ? Cost.logarithmic(symbol) : Cost.linear(symbol);
+            nest.product[loop] = parent < 0 ? iteration : nest.product[parent].times(iteration);
+            nest.counted[loop] = (parent < 0 ? 0 : nest.counted[parent]) + (symbol == null ? 0 : 1);
+            unitLoops = unitLoops.plus(nest.product[loop]);
+            if (nest.counted[loop] > 0 && (costliest < 0 || nest.product[loop].complexity()
+                    .compareTo(nest.product[costliest].complexity()) > 0)) {
+                costliest = loop;
+            }
+        }
+        Cost unitLibrary = Cost.ONE;
+        int costliestCall = -1;
+        Cost costliestCost = null;
+        for (int k = 0; k < nest.library.size(); k += 4) {
+            int loop = nest.library.get(k + 2);
+            Cost rule = RULES.rule(nest.library.get(k + 1)).time;
+            Cost cost = loop < 0 ? rule : nest.product[loop].times(rule);
+            unitLibrary = unitLibrary.plus(cost);
+            // The costliest call; of equally costly ones, the first of the deepest.
+            int cmp = costliestCall < 0 ? 1 : cost.complexity().compareTo(costliestCost.complexity());
+            if (cmp > 0 || (cmp == 0 && nest.library.get(k + 3) > nest.library.get(costliestCall + 3))) {
+                costliestCall = k;
+                costliestCost = cost;
+            }
+        }
+        for (int k = 0; k < nest.calls.size(); k += 2) {
+            int loop = nest.calls.get(k + 1);
+            callCost[nest.calls.get(k)] = loop < 0 ? Cost.ONE : nest.product[loop];
+        }
+
+        Cost unitAllocations = Cost.ONE;
+        List<Allocation> sites = new ArrayList<>();
+        Allocation largest = null;
+        for (int k = 0; k < nest.allocations.size(); k += 2) {
+            int loop = nest.allocations.get(k + 1);
+            boolean repeated = loop >= 0 && nest.counted[loop] > 0;
+            Cost size = repeated ? nest.product[loop].times(nest.allocationSize[k / 2])
+                    : nest.allocationSize[k / 2];
+            if (size.isOne()) {
+                continue;
+            }
+            String detail = ALLOCATION_DETAILS[nest.allocationKind[k / 2]]
+                    + (repeated ? " inside " + loops(nest.counted[loop]) : "");
+            Allocation site = new Allocation(nest.allocations.get(k), size, detail);
+            sites.add(site);
+            unitAllocations = unitAllocations.plus(size);
+            if (largest == null || size.complexity().compareTo(largest.size.complexity()) > 0) {
+                largest = site;
+            }
+        }
+
+        loops[unit] = costliest < 0 ? 0 : nest.counted[costliest];
+        loopAt[unit] = costliest < 0 ? -1 : nest.token[costliest];
+        loopCost[unit] = unitLoops;
+        libraryDepth[unit] = costliestCall < 0 ? -1 : nest.library.get(costliestCall + 3);
+        libraryAt[unit] = costliestCall < 0 ? -1 : nest.library.get(costliestCall);
+        libraryName[unit] = costliestCall < 0 ? null : RULES.rule(nest.library.get(costliestCall + 1)).description;
+        libraryCost[unit] = unitLibrary;
+        halvingAt[unit] = halves;
+        allocations[unit] = sites.isEmpty() ? NO_ALLOCATIONS : sites.toArray(NO_ALLOCATIONS);
+        allocationCost[unit] = unitAllocations;
+        allocationDetail[unit] = largest == null ? null : largest.detail;
+    }
+
+    /**
+     * Reads the {@code new} expression at token {@code i}: an array costs the
+     * product of its dimensions and a collection given a size or a source to
+     * copy costs n. An array or collection stored into an array element is
+     * kept once per pass of the innermost loop; anything else counts once.
+     */
+    private void readAllocation(int i, int last, LoopNest nest) {
+        int type = i + 1;
+        if (!tokens.isIdentifier(type)) {
+            return;
+        }
+        while (tokens.is(type + 1, '.') && tokens.isIdentifier(type + 2)) {
+            type += 2;
+        }
+        int next = type + 1;
+        if (tokens.is(next, '<')) {
+            // Type arguments: >> and >>> close two and three levels at once.
+            int depth = 0;
+            do {
+                depth += tokens.is(next, '<') ? 1 : tokens.is(next, '>') ? -1 : tokens.is(next, ">>") ? -2
+                        : tokens.is(next, ">>>") ? -3 : 0;
+                next++;
+            } while (depth > 0 && next <= last);
+        }
+        int loop = tokens.is(i - 1, '=') && tokens.is(i - 2, ']') && !nest.open.isEmpty() ? nest.open.peek() : -1;
+
+        if (tokens.is(next, '[')) {
+            Cost size = Cost.ONE;
+            while (tokens.is(next, '[') && !tokens.is(next + 1, ']')) {
+                int close = tokens.matching(next);
+                if (close > last) {
+                    return;
+                }
+                size = size.times(dimension(next + 1, close, nest));
+                next = close + 1;
+            }
+            nest.addAllocation(i, loop, ARRAY, size);
+        } else if (tokens.is(next, '(') && isCollection(tokens.text(type))) {
+            int close = tokens.matching(next);
+            boolean sized = close <= last && close > next + 1
+                    && !(close == next + 2 && tokens.kind(next + 1) == TokenStream.NUMBER);
+            nest.addAllocation(i, loop, COLLECTION, sized ? Cost.N : Cost.ONE);
+        }
+    }
+
+    /**
+     * Size of one array dimension in tokens [from, to): a number or a constant
+     * named in upper case is constant; anything else is read like a loop bound.
+     */
+    private Cost dimension(int from, int to, LoopNest nest) {
+        if (to - from == 1 && (tokens.kind(from) == TokenStream.NUMBER || isConstantName(from))) {
+            return Cost.ONE;
+        }
+        return Cost.linear(symbol(from, to, nest, nest.open.isEmpty() ? -1 : nest.open.peek()));
+    }
+
+    private boolean isConstantName(int i) {
+        if (!tokens.isIdentifier(i)) {
+            return false;
+        }
+        for (int k = tokens.start(i); k < tokens.end(i); k++) {
+            if (Character.isLowerCase(tokens.source().charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** True for a collection type name: one ending in List, Map, Set, Queue or Deque, or Stack and Vector. */
+    static boolean isCollection(String type) {
+        return type.endsWith("List") || type.endsWith("Map") || type.endsWith("Set") || type.endsWith("Queue")
+                || type.endsWith("Deque") || type.equals("Stack") || type.equals("Vector");
+    }
+
+    /**
+     * True for a call such as {@code list.add(x)} that grows a collection or
+     * builder. A result assigned back, as in {@code sum = sum.add(x)}, is a
+     * new value rather than growth.
+     */
+    private boolean isGrowth(int i) {
+        if (!tokens.is(i - 1, '.') || !tokens.is(i + 1, '(') || tokens.is(i - 3, '=')) {
+            return false;
+        }
+        for (String name : GROWTH_METHODS) {
+            if (tokens.is(i, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void popBracelessLoops(LoopNest nest, int braceDepth) {
+        IntStack open = nest.open;
+        while (!open.isEmpty() && (nest.entry[open.peek()] & LOOP_BRACED) == 0
+                && nest.entry[open.peek()] / 4 >= braceDepth) {
+            open.pop();
+        }
+    }
+
+    /** A while or do loop whose body halves or doubles something counts geometrically. */
+    private static void markGeometric(LoopNest nest) {
+        if (!nest.open.isEmpty() && nest.conditional[nest.open.peek()]) {
+            nest.step[nest.open.peek()] = GEOMETRIC;
+        }
+    }
+
+    /** True for a compound assignment that multiplies, divides or shifts by a constant. */
+    private boolean isGeometricStep(int i) {
+        return (tokens.is(i, "*=") || tokens.is(i, "/=") || tokens.is(i, "<<=") || tokens.is(i, ">>=")
+                || tokens.is(i, ">>>=")) && i + 1 < tokens.size() && tokens.kind(i + 1) == TokenStream.NUMBER;
+    }
+
+    /**
+     * Reads the header of the for loop at token {@code i}: the loop variable
+     * is the one the update assigns, the bound is the other side of the
+     * comparison in the condition, and the step is geometric if the update
+     * multiplies, divides or shifts. A bound that is a constant leaves the
+     * start value to decide, so {@code i = n; i > 0} runs to n while
+     * {@code i = 0; i < 10} is constant. A bound that is the variable of an
+     * enclosing loop takes that loop's symbol. For-each loops and headers
+     * that do not fit keep the default, linear in n. Only tokens up to
+     * {@code last} are read, so the finding stays within the unit.
+     */
+    private void readForHeader(int i, int last, LoopNest nest, int loop) {
+        int close = tokens.matching(i + 1);
+        if (!tokens.is(i + 1, '(') || close > last) {
+            return;
+        }
+        int init = -1;
+        int update = -1;
+        for (int k = i + 2; k < close; k++) {
+            if (tokens.is(k, '(') || tokens.is(k, '[') || tokens.is(k, '{')) {
+                k = tokens.matching(k);
+            } else if (tokens.is(k, ';')) {
+                if (init >= 0) {
+                    update = k;
+                    break;
+                }
+                init = k;
+            }
+        }
+        if (update < 0) {
+            return;
+        }
+
+        int variable = -1;
+        for (int k = update + 1; k < close; k++) {
+            if (variable < 0 && tokens.isIdentifier(k)) {
+                variable = k;
+            }
+            if (isGeometricStep(k) || tokens.is(k, '*') || tokens.is(k, '/') || tokens.is(k, "<<")
+                    || tokens.is(k, ">>") || tokens.is(k, ">>>")) {
+                nest.step[loop] = GEOMETRIC;
+            }
+        }
+        nest.variable[loop] = variable;
+
+        int comparison = -1;
+        for (int k = init + 1; k < update; k++) {
+            if (tokens.is(k, '(') || tokens.is(k, '[')) {
+                k = tokens.matching(k);
+            } else if (tokens.is(k, '<') || tokens.is(k, "<=") || tokens.is(k, '>') || tokens.is(k, ">=")
+                    || tokens.is(k, "!=")) {
+                comparison = k;
+                break;
+            }
+        }
+        if (comparison < 0) {
+            return;
+        }
+        // The bound is the side that is not the loop variable; the right one if neither is.
+        boolean variableRight = variable >= 0 && comparison + 2 == update && tokens.sameText(comparison + 1, variable);
+        int boundFrom = variableRight ? init + 1 : comparison + 1;
+        int boundTo = variableRight ? comparison : update;
+        if (boundTo - boundFrom == 1 && tokens.kind(boundFrom) == TokenStream.NUMBER) {
+            // Constant bound: the loop runs from its start value instead.
+            int start = -1;
+            for (int k = i + 2; k < init; k++) {
+                if (tokens.is(k, '=')) {
+                    start = k + 1;
+                }
+            }
+            if (start >= 0 && init - start == 1 && tokens.kind(start) == TokenStream.NUMBER) {
+                nest.symbol[loop] = null;
+            } else if (start >= 0) {
+                nest.symbol[loop] = symbol(start, init, nest, nest.parent[loop]);
+            }
+            return;
+        }
+        nest.symbol[loop] = symbol(boundFrom, boundTo, nest, nest.parent[loop]);
+    }
+
+    /**
+     * Symbol for the bound expression in tokens [from, to): a plain variable,
+     * give or take a constant, stands for itself, or for the symbol of the
+     * loop it is the variable of, {@code innermost} or one enclosing it;
+     * anything else is n.
+     */
+    private String symbol(int from, int to, LoopNest nest, int innermost) {
+        // null, true and false are literals, not bounds: line != null loops until input runs out.
+        boolean plain = tokens.isIdentifier(from) && !tokens.isKeyword(from) && !tokens.is(from, "null")
+                && !tokens.is(from, "true") && !tokens.is(from, "false")
+                && (to - from == 1 || (to - from == 3 && (tokens.is(from + 1, '+') || tokens.is(from + 1, '-'))
+                && tokens.kind(from + 2) == TokenStream.NUMBER));
+        if (!plain) {
+            return "n";
+        }
+        for (int outer = innermost; outer >= 0; outer = nest.parent[outer]) {
+            if (nest.variable[outer] >= 0 && tokens.sameText(nest.variable[outer], from)) {
+                return nest.symbol[outer];
+            }
+        }
+        return tokens.is(from, "n") ? "n" : tokens.text(from);
+    }
+
+    /** Adds the cost of each call to its caller, visiting callees before callers. */
+    private void compose() {
+        long started = Metrics.start(Metrics.Phase.COMPOSE);
+        // Group call sites by calling unit: calls of unit u are sites[offsets[u] .. offsets[u + 1]).
+        int[] offsets = new int[topLevel + 2];
+        for (int call = 0; call < calls.callCount(); call++) {
+            offsets[unitOf(call) + 1]++;
+        }
+        for (int unit = 0; unit <= topLevel; unit++) {
+            offsets[unit + 1] += offsets[unit];
+        }
+        int[] sites = new int[calls.callCount()];
+        int[] fill = offsets.clone();
+        for (int call = 0; call < calls.callCount(); call++) {
+            sites[fill[unitOf(call)]++] = call;
+        }
+
+        int[] order = calls.calleesFirst();
+        for (int k = 0; k <= topLevel; k++) {
+            int unit = k < topLevel ? order[k] : topLevel;
+            Composition composition = own(unit, unit < topLevel && calls.isRecursive(unit));
+            for (int site = offsets[unit]; site < offsets[unit + 1]; site++) {
+                int call = sites[site];
+                for (int callee = calls.target(call); callee >= 0; callee = calls.nextTarget(call, callee)) {
+                    if (unit < topLevel && calls.component(callee) == calls.component(unit)) {
+                        continue;
+                    }
+                    composition.call(callCost[call], calls.methodName(callee), time[callee], space[callee],
+                            callDepth[call], call);
+                }
+            }
+            time[unit] = composition.time();
+            space[unit] = composition.space();
+        }
+        Metrics.stop(Metrics.Phase.COMPOSE, started);
+    }
+
+    /** The unit's own findings, before any calls are added. */
+    private Composition own(int unit, boolean recursive) {
+        return new Composition(loops[unit], loopCost[unit], libraryDepth[unit], libraryCost[unit], libraryName[unit],
+                halvingAt[unit] >= 0, allocationCost[unit], allocationDetail[unit], recursive);
+    }
+
+    private int unitOf(int call) {
+        int caller = calls.caller(call);
+        return caller < 0 ? topLevel : caller;
+    }
+
+    /**
+     * The cost of one unit while it is composed: its own findings first, then
+     * one call at a time. The text names the costliest finding after the
+     * total; recursion has time texts of its own. Space is composed alongside.
+     */
+    static final class Composition {
+        private Cost total;
+        private Complexity best = Complexity.CONSTANT;
+        private String reason;
+        private String text;
+        private AnalysisResult.Confidence confidence = AnalysisResult.Confidence.HIGH;
+        private int via = -1;
+        private Cost space;
+        private String spaceReason;
+
+        Composition(int loops, Cost loopCost, int libraryDepth, Cost libraryCost, String libraryName, boolean halving,
+                Cost allocation, String allocationDetail, boolean recursive) {
+            total = loopCost.plus(libraryCost);
+            if (libraryDepth >= 0) {
+                best = libraryCost.complexity();
+                reason = libraryName + (libraryDepth == 0 ? " detected" : " inside " + loops(libraryDepth));
+            }
+            if (loops > 0) {
+                Complexity cost = loopCost.complexity();
+                if (cost.compareTo(best) > 0) {
+                    best = cost;
+                    if (cost.degree == 0) {
+                        reason = "Loop with division/halving detected";
+                        confidence = AnalysisResult.Confidence.MEDIUM;
+                    } else {
+                        reason = loops == 1 ? "Single loop detected"
+                                : loops == 2 ? "Nested loops detected" : loops + " nested loops detected";
+                    }
+                }
+            } else if (recursive) {
+                Cost recursion = halving ? Cost.N_LOG_N : Cost.EXPONENTIAL;
+                total = total.plus(recursion);
+                if (recursion.complexity().compareTo(best) > 0) {
+                    best = recursion.complexity();
+                    text = halving ? "O(log n) or O(n log n) - Recursive divide and conquer detected"
+                            : "O(2^n) or higher - Recursion detected (depends on structure)";
+                    confidence = AnalysisResult.Confidence.LOW;
+                }
+            }
+
+            space = allocation;
+            if (allocationDetail != null) {
+                spaceReason = Character.toUpperCase(allocationDetail.charAt(0)) + allocationDetail.substring(1);
+            }
+            if (recursive) {
+                // Each level keeps a frame: log n levels if the argument halves, n if it shrinks by a step.
+                Cost depth = halving ? Cost.logarithmic("n") : Cost.N;
+                if (depth.complexity().compareTo(space.complexity()) > 0) {
+                    spaceReason = "Recursion depth " + (halving ? "log n" : "n") + " on the call stack";
+                }
+                space = space.plus(depth);
+            }
+        }
+
+        /**
+         * Adds a call to {@code callee}, made {@code depth} loops deep where
+         * one pass of those loops costs {@code loopCost}; {@code call} is the
+         * call site the time estimate points back to, or -1. The callee's
+         * space is counted once, since it is freed when the call returns.
+         */
+        void call(Cost loopCost, String callee, Estimate calleeTime, Estimate calleeSpace, int depth, int call) {
+            // The callee's bound names mean nothing here; its costs are read in n.
+            Cost calleeCost = calleeTime.symbolic.inN();
+            Cost calleeSpaceCost = calleeSpace.symbolic.inN();
+            Cost cost = loopCost.times(calleeCost);
+            total = total.plus(cost);
+            if (cost.complexity().compareTo(best) > 0) {
+                best = cost.complexity();
+                reason = "Calls " + callee + " (" + calleeCost + ")";
+                if (depth > 0) {
+                    reason += " inside " + loops(depth);
+                }
+                text = null;
+                // Calls are resolved by name alone, so the result is at best a medium guess.
+                confidence = calleeTime.confidence == AnalysisResult.Confidence.LOW
+                        ? AnalysisResult.Confidence.LOW : AnalysisResult.Confidence.MEDIUM;
+                via = call;
+            }
+            if (calleeSpaceCost.complexity().compareTo(space.complexity()) > 0) {
+                spaceReason = "Calls " + callee + " (" + calleeSpaceCost + ")";
+            }
+            space = space.plus(calleeSpaceCost);
+        }
+
+        Estimate time() {
+            return reason == null && text == null ? CONSTANT_TIME : new Estimate(total.complexity(),
+                    text != null ? text : total + " - " + reason, confidence, via, total);
+        }
+
+        Estimate space() {
+            return spaceReason == null ? CONSTANT_SPACE : new Estimate(space.complexity(),
+                    space + " - " + spaceReason, AnalysisResult.Confidence.HIGH, -1, space);
+        }
+    }
+
+    /** An allocation site of non-constant size. */
+    private static final class Allocation {
+        final int token;
+        final Cost size;
+        final String detail;
+
+        Allocation(int token, Cost size, String detail) {
+            this.token = token;
+            this.size = size;
+            this.detail = detail;
+        }
+    }
+
+    /** A ranked time complexity and the text reported for it. */
+    static final class Estimate {
+        final Complexity cost;
+        final String text;
+        final AnalysisResult.Confidence confidence;
+        // Call site the cost was inherited through, or -1.
+        final int call;
+        // The cost as a symbolic expression.
+        final Cost symbolic;
+
+        Estimate(Complexity cost, String text, AnalysisResult.Confidence confidence, int call, Cost symbolic) {
+            this.cost = cost;
+            this.text = text;
+            this.confidence = confidence;
+            this.call = call;
+            this.symbolic = symbolic;
+        }
+    }
+
+    /**
+     * The loops of the unit being scanned, numbered in the order they open,
+     * so every loop comes after the loop enclosing it. Also holds the stack of
+     * loops still open and, for the cost pass after the scan, the innermost
+     * loop around each library call and each call site.
+     */
+    private static final class LoopNest {
+        final IntStack open = new IntStack();
+        // Library calls: token, rule, innermost loop and loop depth, in fours.
+        final IntStack library = new IntStack();
+        // Call id and innermost loop, in pairs.
+        final IntStack calls = new IntStack();
+        // Allocation token and the innermost loop it repeats in (or -1), in pairs; kind and size by pair.
+        final IntStack allocations = new IntStack();
+        byte[] allocationKind = new byte[16];
+        Cost[] allocationSize = new Cost[16];
+        int count;
+        // Enclosing loop, or -1.
+        int[] parent = new int[16];
+        // Brace depth * 4 + LOOP_* flags.
+        int[] entry = new int[16];
+        int[] token = new int[16];
+        // Token of the loop variable, or -1.
+        int[] variable = new int[16];
+        // Symbol of the bound, or null for a constant trip count.
+        String[] symbol = new String[16];
+        byte[] step = new byte[16];
+        // While and do loops, which turn geometric if their body halves or doubles.
+        boolean[] conditional = new boolean[16];
+        // Filled after the scan: the cost of one pass of the innermost body, and
+        // the number of non-constant loops down to this one.
+        Cost[] product = new Cost[16];
+        int[] counted = new int[16];
+
+        void clear() {
+            open.clear();
+            library.clear();
+            calls.clear();
+            allocations.clear();
+            count = 0;
+        }
+
+        void addAllocation(int allocationToken, int loop, int kind, Cost size) {
+            int index = allocations.size() / 2;
+            if (index == allocationKind.length) {
+                allocationKind = Arrays.copyOf(allocationKind, index * 2);
+                allocationSize = Arrays.copyOf(allocationSize, index * 2);
+            }
+            allocations.push(allocationToken);
+            allocations.push(loop);
+            allocationKind[index] = (byte) kind;
+            allocationSize[index] = size;
+        }
+
+        /** Adds a loop running to n one step at a time; returns its number. */
+        int add(int parentLoop, int stackEntry, int loopToken) {
+            if (count == parent.length) {
+                int capacity = count * 2;
+                parent = Arrays.copyOf(parent, capacity);
+                entry = Arrays.copyOf(entry, capacity);
+                token = Arrays.copyOf(token, capacity);
+                variable = Arrays.copyOf(variable, capacity);
+                symbol = Arrays.copyOf(symbol, capacity);
+                step = Arrays.copyOf(step, capacity);
+                conditional = Arrays.copyOf(conditional, capacity);
+                product = Arrays.copyOf(product, capacity);
+                counted = Arrays.copyOf(counted, capacity);
+            }
+            parent[count] = parentLoop;
+            entry[count] = stackEntry;
+            token[count] = loopToken;
+            variable[count] = -1;
+            symbol[count] = "n";
+            step[count] = LINEAR;
+            conditional[count] = false;
+            return count++;
+        }
+    }
+
+    /** Maps ascending char offsets to 1-based lines in one forward pass over the source. */
+    private static final class Lines {
+        private final CharSequence source;
+        private int position;
+        private int line = 1;
+        private int lineStart;
+
+        Lines(CharSequence source) {
+            this.source = source;
+        }
+
+        int line(int offset) {
+            if (offset < position) {
+                position = 0;
+                line = 1;
+                lineStart = 0;
+            }
+            for (; position < offset; position++) {
+                if (source.charAt(position) == '\n') {
+                    line++;
+                    lineStart = position + 1;
+                }
+            }
+            return line;
+        }
+
+        /** Offset of the first char on the line of the last looked-up offset. */
+        int lineStart() {
+            return lineStart;
+        }
+    }
+}
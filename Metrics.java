@@ -0,0 +1,214 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-phase latency and allocation metrics.
+ *
+ * Each phase records its wall time into a LatencyHistogram and the bytes its
+ * thread allocated meanwhile, plus what pool threads allocated on work the phase
+ * handed them (see {@link #startWorker}). Off by default: when disabled, start
+ * and stop are a single static field read, so the hot path pays nothing.
+ * Enabled with --metrics (summary printed at exit) or in server mode, where
+ * the phases are also published as JMX MBeans. While enabled, each phase is
+ * also emitted as a JFR event (see PhaseEvents) for recordings that enable it.
+ */
+final class Metrics {
+
+    enum Phase {
+        /** Reading and decoding a source file. */
+        READ,
+        /** Lexing; comments and string contents are dropped here. */
+        TOKENIZE,
+        /** Declarations, call sites and recursion cycles. */
+        CALL_GRAPH,
+        /** Per-method pass finding loops, sorts, halving and allocations. */
+        METHOD_SCAN,
+        /** Composing costs along the call graph, callees first. */
+        COMPOSE,
+        /** Building the structured result with evidence locations. */
+        RESULT
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[PHASES.length];
+    private static final LongAdder[] ALLOCATED = new LongAdder[PHASES.length];
+    private static final ThreadLocal<long[]> ALLOCATION_START = ThreadLocal.withInitial(() -> new long[PHASES.length]);
+    // JFR event of each phase running on this thread, when JFR is available.
+    private static final ThreadLocal<Object[]> EVENTS = ThreadLocal.withInitial(() -> new Object[PHASES.length]);
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < PHASES.length; i++) {
+            LATENCY[i] = new LatencyHistogram();
+            ALLOCATED[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    static boolean enabled() {
+        return enabled;
+    }
+
+    /** Marks the start of a phase on this thread; pass the result to {@link #stop}. */
+    static long start(Phase phase) {
+        if (!enabled) {
+            return 0;
+        }
+        if (THREADS != null) {
+            ALLOCATION_START.get()[phase.ordinal()] = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        if (PhaseEvents.AVAILABLE) {
+            EVENTS.get()[phase.ordinal()] = PhaseEvents.begin();
+        }
+        return System.nanoTime();
+    }
+
+    static void stop(Phase phase, long started) {
+        if (!enabled || started == 0) {
+            return;
+        }
+        LATENCY[phase.ordinal()].record(System.nanoTime() - started);
+        long allocated = -1;
+        if (THREADS != null) {
+            long now = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+            allocated = now - ALLOCATION_START.get()[phase.ordinal()];
+            ALLOCATED[phase.ordinal()].add(allocated);
+        }
+        if (PhaseEvents.AVAILABLE) {
+            Object[] events = EVENTS.get();
+            PhaseEvents.commit(events[phase.ordinal()], key(phase), allocated);
+            events[phase.ordinal()] = null;
+        }
+    }
+
+    /**
+     * Marks the start of work a phase running on {@code phaseThread} handed to this
+     * thread, such as one element of a parallel stream; pass the result to
+     * {@link #stopWorker}. Work done on the phase's own thread is already counted.
+     */
+    static long startWorker(Thread phaseThread) {
+        if (!enabled || THREADS == null || Thread.currentThread() == phaseThread) {
+            return -1;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Adds the bytes this thread allocated since {@link #startWorker} to the phase. */
+    static void stopWorker(Phase phase, long started) {
+        if (started < 0) {
+            return;
+        }
+        ALLOCATED[phase.ordinal()].add(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - started);
+    }
+
+    /** Registers one MBean per phase with the platform MBean server. */
+    static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Phase phase : PHASES) {
+            try {
+                ObjectName name = new ObjectName("ComplexityAnalyzer:type=Phase,name=" + key(phase));
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new PhaseMetrics(phase), name);
+                }
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register metrics for " + phase, e);
+            }
+        }
+    }
+
+    /** One line per phase that ran: count, mean, p50, p99, max and allocation per call. */
+    static String summary() {
+        StringBuilder text = new StringBuilder("=== Metrics ===\n");
+        text.append(String.format("%-12s %10s %11s %11s %11s %11s %14s%n",
+                "phase", "count", "mean us", "p50 us", "p99 us", "max us", "alloc B/call"));
+        for (Phase phase : PHASES) {
+            LatencyHistogram latency = LATENCY[phase.ordinal()];
+            if (latency.count() == 0) {
+                continue;
+            }
+            text.append(String.format("%-12s %10d %11.1f %11.1f %11.1f %11.1f %14s%n", key(phase), latency.count(),
+                    latency.mean() / 1e3, latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                    latency.max() / 1e3, THREADS != null ? Long.toString(allocatedPerCall(phase)) : "n/a"));
+        }
+        return text.toString();
+    }
+
+    private static long allocatedPerCall(Phase phase) {
+        long count = LATENCY[phase.ordinal()].count();
+        return count == 0 ? 0 : ALLOCATED[phase.ordinal()].sum() / count;
+    }
+
+    private static String key(Phase phase) {
+        return phase.name().toLowerCase().replace('_', '-');
+    }
+
+    // HotSpot's extension of ThreadMXBean can report per-thread allocation; other JVMs may not.
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot;
+            }
+        }
+        return null;
+    }
+
+    private static final class PhaseMetrics implements PhaseMetricsMXBean {
+        private final Phase phase;
+
+        PhaseMetrics(Phase phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public long getCount() {
+            return LATENCY[phase.ordinal()].count();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return LATENCY[phase.ordinal()].mean() / 1e3;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return LATENCY[phase.ordinal()].percentile(50) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return LATENCY[phase.ordinal()].percentile(99) / 1e3;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return LATENCY[phase.ordinal()].max() / 1e3;
+        }
+
+        @Override
+        public long getAllocatedBytesPerCall() {
+            return THREADS != null ? allocatedPerCall(phase) : -1;
+        }
+
+        @Override
+        public void reset() {
+            LATENCY[phase.ordinal()].reset();
+            ALLOCATED[phase.ordinal()].reset();
+        }
+    }
+}
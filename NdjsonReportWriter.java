@@ -0,0 +1,70 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Report with one JSON object per line, for tools that read JSON. The line is
+ * built in a reused buffer and appended to a buffered file writer.
+ */
+final class NdjsonReportWriter extends ReportWriter {
+
+    private final BufferedWriter out;
+    private final StringBuilder line = new StringBuilder(256);
+    private long count;
+
+    NdjsonReportWriter(Path file) throws IOException {
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    synchronized void result(Path source, long bytes, ResultCache.Result result, String partial) throws IOException {
+        start(source);
+        line.append(",\"bytes\":").append(bytes).append(",\"time\":");
+        ResultJson.quote(line, result.timeClass.toString());
+        line.append(",\"timeDetail\":");
+        ResultJson.quote(line, result.time);
+        line.append(",\"confidence\":");
+        ResultJson.quote(line, result.confidence.name());
+        line.append(",\"space\":");
+        ResultJson.quote(line, result.spaceClass.toString());
+        line.append(",\"spaceDetail\":");
+        ResultJson.quote(line, result.space);
+        if (partial != null) {
+            line.append(",\"partial\":");
+            ResultJson.quote(line, partial);
+        }
+        finish();
+    }
+
+    @Override
+    synchronized void error(Path source, String message) throws IOException {
+        start(source);
+        line.append(",\"error\":");
+        ResultJson.quote(line, message);
+        finish();
+    }
+
+    @Override
+    synchronized long count() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void start(Path source) {
+        line.setLength(0);
+        line.append("{\"path\":");
+        ResultJson.quote(line, source.toString());
+    }
+
+    private void finish() throws IOException {
+        line.append("}\n");
+        out.append(line);
+        count++;
+    }
+}
@@ -0,0 +1,112 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JFR view of the analysis phases: each measured phase is emitted as a
+ * "ComplexityAnalyzer.Phase" event with the phase name and the bytes its
+ * thread allocated, so a flight recording shows where analysis time goes.
+ *
+ * jdk.jfr ships with JDK 8u262 and later but is not part of the Java 8 API the
+ * sources compile against, so the event type is defined at run time through
+ * jdk.jfr.EventFactory and called through method handles. On a JVM without
+ * JFR, {@link #AVAILABLE} is false and no events are emitted.
+ */
+final class PhaseEvents {
+
+    static final String NAME = "ComplexityAnalyzer.Phase";
+
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+
+    static final boolean AVAILABLE;
+
+    static {
+        MethodHandle[] handles = eventHandles();
+        AVAILABLE = handles != null;
+        NEW_EVENT = AVAILABLE ? handles[0] : null;
+        BEGIN = AVAILABLE ? handles[1] : null;
+        END = AVAILABLE ? handles[2] : null;
+        SHOULD_COMMIT = AVAILABLE ? handles[3] : null;
+        SET = AVAILABLE ? handles[4] : null;
+        COMMIT = AVAILABLE ? handles[5] : null;
+    }
+
+    private PhaseEvents() {
+    }
+
+    /** Starts timing an event; pass the result to {@link #commit}. Only call if {@link #AVAILABLE}. */
+    static Object begin() {
+        try {
+            Object event = (Object) NEW_EVENT.invokeExact();
+            BEGIN.invokeExact(event);
+            return event;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot start JFR event", e);
+        }
+    }
+
+    /** Ends the event and records it if a running recording has it enabled. */
+    static void commit(Object event, String phase, long allocated) {
+        try {
+            END.invokeExact(event);
+            if ((boolean) SHOULD_COMMIT.invokeExact(event)) {
+                SET.invokeExact(event, 0, (Object) phase);
+                SET.invokeExact(event, 1, (Object) allocated);
+                COMMIT.invokeExact(event);
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot commit JFR event", e);
+        }
+    }
+
+    // newEvent, begin, end, shouldCommit, set and commit, or null without JFR.
+    private static MethodHandle[] eventHandles() {
+        try {
+            Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement")
+                    .getConstructor(Class.class, Object.class);
+            Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+                    .getConstructor(Class.class, String.class, List.class);
+            Class<?> label = Class.forName("jdk.jfr.Label");
+            List<Object> eventAnnotations = Arrays.asList(
+                    annotation.newInstance(Class.forName("jdk.jfr.Name"), NAME),
+                    annotation.newInstance(label, "Analysis Phase"),
+                    annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] {"Complexity Analyzer"}));
+            List<Object> fields = Arrays.asList(
+                    field.newInstance(String.class, "phase",
+                            Collections.singletonList(annotation.newInstance(label, "Phase"))),
+                    field.newInstance(long.class, "allocated", Arrays.asList(
+                            annotation.newInstance(label, "Allocated"),
+                            annotation.newInstance(Class.forName("jdk.jfr.DataAmount"), "BYTES"))));
+
+            Class<?> factoryType = Class.forName("jdk.jfr.EventFactory");
+            Object factory = factoryType.getMethod("create", List.class, List.class)
+                    .invoke(null, eventAnnotations, fields);
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodType action = MethodType.methodType(void.class, Object.class);
+            return new MethodHandle[] {
+                lookup.unreflect(factoryType.getMethod("newEvent")).bindTo(factory)
+                        .asType(MethodType.methodType(Object.class)),
+                lookup.unreflect(event.getMethod("begin")).asType(action),
+                lookup.unreflect(event.getMethod("end")).asType(action),
+                lookup.unreflect(event.getMethod("shouldCommit"))
+                        .asType(MethodType.methodType(boolean.class, Object.class)),
+                lookup.unreflect(event.getMethod("set", int.class, Object.class))
+                        .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class)),
+                lookup.unreflect(event.getMethod("commit")).asType(action),
+            };
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // No JFR in this JVM, or one whose API differs: run without events.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * JMX view of one analysis phase, registered as
+ * {@code ComplexityAnalyzer:type=Phase,name=<phase>}. JMX requires the
+ * interface to be public.
+ */
+public interface PhaseMetricsMXBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    /** Bytes allocated per call by the threads working on the phase, or -1 if the JVM cannot tell. */
+    long getAllocatedBytesPerCall();
+
+    void reset();
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Project mode: analyzes every .java file under the given files and
+ * directories as one program, so a method's cost includes the methods it
+ * calls in other files (see ProjectGraph).
+ *
+ * Files are analyzed in parallel, each under the default AnalysisBudget, and
+ * reduced to summaries that hold no tokens; the summaries are then linked
+ * into one call graph and composed level by level.
+ */
+final class ProjectAnalyzer {
+
+    // Each worker thread decodes into its own reusable buffer.
+    private static final ThreadLocal<SourceReader> READERS = ThreadLocal.withInitial(SourceReader::new);
+
+    private ProjectAnalyzer() {
+    }
+
+    static void run(String[] args) throws IOException {
+        long startNanos = System.nanoTime();
+        List<Path> files = BatchAnalyzer.collectSources(Arrays.asList(args));
+        ProjectGraph.FileSummary[] summaries = new ProjectGraph.FileSummary[files.size()];
+        String[] errors = new String[files.size()];
+        boolean[] truncated = new boolean[files.size()];
+        IntStream.range(0, files.size()).parallel().forEach(i -> {
+            try {
+                summaries[i] = summarize(files.get(i));
+                truncated[i] = READERS.get().lastTruncated();
+            } catch (IOException | RuntimeException | StackOverflowError e) {
+                errors[i] = e.toString();
+            }
+        });
+
+        ProjectGraph graph = ProjectGraph.build(
+                Arrays.stream(summaries).filter(Objects::nonNull).toArray(ProjectGraph.FileSummary[]::new));
+        graph.compose();
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+
+        List<Map.Entry<String, AnalysisResult.MethodResult>> methods = new ArrayList<>(graph.methodCount());
+        int costlier = 0;
+        int file = 0;
+        for (int i = 0; i < summaries.length; i++) {
+            if (summaries[i] == null) {
+                System.out.println(files.get(i) + " -> Error: " + errors[i]);
+                continue;
+            }
+            AnalysisResult.MethodResult worst = null;
+            for (int method = graph.first(file); method < graph.first(file + 1); method++) {
+                AnalysisResult.MethodResult result = graph.result(method);
+                methods.add(new AbstractMap.SimpleImmutableEntry<>(summaries[i].path, result));
+                if (worst == null || result.time.compareTo(worst.time) > 0) {
+                    worst = result;
+                }
+                if (graph.costlierAcrossFiles(method)) {
+                    costlier++;
+                }
+            }
+            file++;
+            System.out.println(summaries[i].path + " -> " + (worst == null ? "No methods"
+                    : "Time: " + worst.timeDetail + " (in " + worst.name + ") | Space: " + worst.spaceDetail)
+                    + (summaries[i].partial ? " | Partial: time budget exceeded" : "")
+                    + (truncated[i] ? " | Partial: " + AnalysisBudget.DEFAULT.sizeExceeded() : ""));
+        }
+
+        System.out.println(String.format("%n=== Project Summary ===%nAnalyzed %d files (%d methods, %d call edges)"
+                + " in %.2f s: %d recursion cycles, %d call levels", files.size(), graph.methodCount(),
+                graph.edgeCount(), seconds, graph.cycleCount(), graph.levelCount()));
+        System.out.println(costlier + " methods cost more once calls into other files are followed");
+        RepositoryAnalyzer.printMethods(methods);
+    }
+
+    private static ProjectGraph.FileSummary summarize(Path file) throws IOException {
+        AnalysisBudget budget = AnalysisBudget.DEFAULT;
+        long deadline = budget.deadline();
+        SourceReader reader = READERS.get();
+        TokenStream tokens = TokenStream.tokenize(reader.read(file, budget.maxChars), deadline);
+        String name = file.getFileName().toString();
+        String className = name.endsWith(".java") ? name.substring(0, name.length() - ".java".length()) : name;
+        return MethodAnalysis.analyze(tokens, CallGraph.build(tokens, deadline), deadline).summary(file.toString(), className);
+    }
+}
@@ -0,0 +1,380 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Call graph across all files of a project, for costs that include callees
+ * declared in other files.
+ *
+ * Each file is analyzed on its own first (see MethodAnalysis#summary); its
+ * methods then get global numbers, file by file. A call resolves to the
+ * methods it reaches in its own file (see CallGraph) if there are any.
+ * Otherwise a call qualified by a class name ({@code Helper.sort(a)}), or by
+ * a variable declared with one, resolves to the methods of that name in files
+ * named after the class, or to nothing if no project file declares the class
+ * (so {@code Math.max} and {@code list.get(i)} never match a project method).
+ * An unqualified call resolves by name across the project, and calls on any
+ * other receiver resolve to nothing. Either way only overloads that take the
+ * call's number of arguments are reached.
+ *
+ * Recursion cycles are collapsed into their strongly connected components.
+ * A component's level is one more than the highest level among the
+ * components it calls, so all callees of a level are composed before the
+ * level starts, and the components of one level are composed in parallel.
+ * Every method is composed exactly once and its estimate is kept for all
+ * its callers.
+ */
+final class ProjectGraph {
+
+    // Levels with fewer components than this are composed on the calling thread.
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final FileSummary[] files;
+    // First global method number of each file; methods of file f are base[f] .. base[f + 1].
+    private final int[] base;
+    private final int[] fileOf;
+    private final int methodCount;
+
+    // Call sites with a caller, numbered file by file: the calling method and the loops around the call.
+    private final int[] callers;
+    private final Cost[] callCost;
+    private final int[] callDepth;
+    // Methods each call resolves to: callTargets[targetOffsets[c] .. targetOffsets[c + 1]).
+    private final int[] targetOffsets;
+    private final int[] callTargets;
+
+    // Call sites grouped by calling method, and the calls graph in the same compressed form.
+    private final int[] siteOffsets;
+    private final int[] sites;
+    private final int[] edgeOffsets;
+    private final int[] edges;
+
+    private final int[] components;
+    private final boolean[] recursive;
+    private int cycleCount;
+    // Components by level: levelOrder[levelOffsets[l] .. levelOffsets[l + 1]) are at level l.
+    private int[] levelOffsets;
+    private int[] levelOrder;
+    // Members of each component: order[memberOffsets[c] .. memberOffsets[c + 1]).
+    private final int[] order;
+    private final int[] memberOffsets;
+
+    private final MethodAnalysis.Estimate[] time;
+    private final MethodAnalysis.Estimate[] space;
+
+    private ProjectGraph(FileSummary[] files) {
+        this.files = files;
+        base = new int[files.length + 1];
+        int calls = 0;
+        for (int f = 0; f < files.length; f++) {
+            base[f + 1] = base[f] + files[f].names.length;
+            calls += files[f].callers.length;
+        }
+        methodCount = base[files.length];
+        fileOf = new int[methodCount];
+        for (int f = 0; f < files.length; f++) {
+            Arrays.fill(fileOf, base[f], base[f + 1], f);
+        }
+        callers = new int[calls];
+        callCost = new Cost[calls];
+        callDepth = new int[calls];
+        targetOffsets = new int[calls + 1];
+        siteOffsets = new int[methodCount + 1];
+        sites = new int[calls];
+        edgeOffsets = new int[methodCount + 1];
+        components = new int[methodCount];
+        recursive = new boolean[methodCount];
+        order = new int[methodCount];
+        memberOffsets = new int[methodCount + 1];
+        time = new MethodAnalysis.Estimate[methodCount];
+        space = new MethodAnalysis.Estimate[methodCount];
+
+        IntStack targets = new IntStack();
+        resolve(targets);
+        callTargets = new int[targets.size()];
+        for (int k = 0; k < callTargets.length; k++) {
+            callTargets[k] = targets.get(k);
+        }
+        edges = new int[callTargets.length];
+        link();
+    }
+
+    /** Links the files' call sites into one graph and finds its components and levels. */
+    static ProjectGraph build(FileSummary[] files) {
+        ProjectGraph graph = new ProjectGraph(files);
+        graph.findComponents();
+        return graph;
+    }
+
+    int methodCount() {
+        return methodCount;
+    }
+
+    /** Resolved call edges, counting each overload a call may reach. */
+    int edgeCount() {
+        return edges.length;
+    }
+
+    int cycleCount() {
+        return cycleCount;
+    }
+
+    int levelCount() {
+        return levelOffsets.length - 1;
+    }
+
+    /** Composes every method, callees first, one level at a time. */
+    void compose() {
+        long started = Metrics.start(Metrics.Phase.COMPOSE);
+        Thread phaseThread = Thread.currentThread();
+        for (int level = 0; level < levelCount(); level++) {
+            IntStream members = IntStream.range(levelOffsets[level], levelOffsets[level + 1]);
+            if (levelOffsets[level + 1] - levelOffsets[level] >= PARALLEL_THRESHOLD) {
+                members = members.parallel();
+            }
+            members.forEach(k -> {
+                long worker = Metrics.startWorker(phaseThread);
+                int component = levelOrder[k];
+                for (int m = memberOffsets[component]; m < memberOffsets[component + 1]; m++) {
+                    compose(order[m]);
+                }
+                Metrics.stopWorker(Metrics.Phase.COMPOSE, worker);
+            });
+        }
+        Metrics.stop(Metrics.Phase.COMPOSE, started);
+    }
+
+    /** Methods of file {@code file} are {@code first(file) .. first(file + 1)}. */
+    int first(int file) {
+        return base[file];
+    }
+
+    /** The composed result of a method; call after {@link #compose}. */
+    AnalysisResult.MethodResult result(int method) {
+        MethodAnalysis.Estimate estimate = time[method];
+        return new AnalysisResult.MethodResult(name(method), files[fileOf[method]].lines[local(method)],
+                estimate.cost, estimate.text, estimate.confidence, space[method].cost, space[method].text);
+    }
+
+    /** True if calls into other files make the method costlier than its own file alone suggests. */
+    boolean costlierAcrossFiles(int method) {
+        return time[method].cost.compareTo(files[fileOf[method]].localTime[local(method)]) > 0;
+    }
+
+    private int local(int method) {
+        return method - base[fileOf[method]];
+    }
+
+    private String name(int method) {
+        return files[fileOf[method]].names[local(method)];
+    }
+
+    private void resolve(IntStack targets) {
+        Map<String, IntStack> byName = new HashMap<>();
+        Set<String> classes = new HashSet<>();
+        for (int f = 0; f < files.length; f++) {
+            classes.add(files[f].className);
+            for (int m = 0; m < files[f].names.length; m++) {
+                byName.computeIfAbsent(files[f].names[m], name -> new IntStack()).push(base[f] + m);
+            }
+        }
+
+        int call = 0;
+        for (int f = 0; f < files.length; f++) {
+            FileSummary file = files[f];
+            for (int c = 0; c < file.callers.length; c++, call++) {
+                callers[call] = base[f] + file.callers[c];
+                callCost[call] = file.callCost[c];
+                callDepth[call] = file.callDepth[c];
+                targetOffsets[call] = targets.size();
+                if (file.targetOffsets[c] < file.targetOffsets[c + 1]) {
+                    for (int t = file.targetOffsets[c]; t < file.targetOffsets[c + 1]; t++) {
+                        targets.push(base[f] + file.localTargets[t]);
+                    }
+                    continue;
+                }
+                if (file.calleeNames[c] == null) {
+                    continue;
+                }
+                IntStack named = byName.get(file.calleeNames[c]);
+                String qualifier = file.qualifiers[c];
+                if (named == null || (qualifier != null && !classes.contains(qualifier))) {
+                    continue;
+                }
+                for (int k = 0; k < named.size(); k++) {
+                    int target = named.get(k);
+                    FileSummary callee = files[fileOf[target]];
+                    if ((qualifier == null || callee.className.equals(qualifier))
+                            && CallGraph.accepts(callee.parameters[local(target)], file.arguments[c])) {
+                        targets.push(target);
+                    }
+                }
+            }
+        }
+        targetOffsets[call] = targets.size();
+    }
+
+    /** Groups call sites by calling method and builds the adjacency arrays. */
+    private void link() {
+        for (int call = 0; call < callers.length; call++) {
+            siteOffsets[callers[call] + 1]++;
+            edgeOffsets[callers[call] + 1] += targetOffsets[call + 1] - targetOffsets[call];
+        }
+        for (int method = 0; method < methodCount; method++) {
+            siteOffsets[method + 1] += siteOffsets[method];
+            edgeOffsets[method + 1] += edgeOffsets[method];
+        }
+        int[] siteFill = Arrays.copyOf(siteOffsets, methodCount);
+        int[] edgeFill = Arrays.copyOf(edgeOffsets, methodCount);
+        for (int call = 0; call < callers.length; call++) {
+            int caller = callers[call];
+            sites[siteFill[caller]++] = call;
+            for (int k = targetOffsets[call]; k < targetOffsets[call + 1]; k++) {
+                edges[edgeFill[caller]++] = callTargets[k];
+            }
+        }
+    }
+
+    private void findComponents() {
+        int componentCount = CallGraph.stronglyConnected(methodCount, edgeOffsets, edges, components, order);
+
+        // Members of a component are adjacent in order, and every component it
+        // calls has a lower number, so one pass in order settles each level.
+        int[] levels = new int[componentCount];
+        int levelCount = 0;
+        for (int start = 0, end; start < methodCount; start = end) {
+            int component = components[order[start]];
+            end = start + 1;
+            while (end < methodCount && components[order[end]] == component) {
+                end++;
+            }
+            memberOffsets[component + 1] = end;
+            boolean cycle = end - start > 1;
+            int level = 0;
+            for (int m = start; m < end; m++) {
+                int method = order[m];
+                for (int edge = edgeOffsets[method]; edge < edgeOffsets[method + 1]; edge++) {
+                    int callee = edges[edge];
+                    if (components[callee] != component) {
+                        level = Math.max(level, levels[components[callee]] + 1);
+                    } else if (callee == method) {
+                        cycle = true;
+                    }
+                }
+            }
+            levels[component] = level;
+            levelCount = Math.max(levelCount, level + 1);
+            if (cycle) {
+                cycleCount++;
+                for (int m = start; m < end; m++) {
+                    recursive[order[m]] = true;
+                }
+            }
+        }
+
+        levelOffsets = new int[levelCount + 1];
+        for (int component = 0; component < componentCount; component++) {
+            levelOffsets[levels[component] + 1]++;
+        }
+        for (int level = 0; level < levelCount; level++) {
+            levelOffsets[level + 1] += levelOffsets[level];
+        }
+        levelOrder = new int[componentCount];
+        int[] fill = Arrays.copyOf(levelOffsets, levelCount);
+        for (int component = 0; component < componentCount; component++) {
+            levelOrder[fill[levels[component]]++] = component;
+        }
+    }
+
+    private void compose(int method) {
+        FileSummary file = files[fileOf[method]];
+        int m = local(method);
+        MethodAnalysis.Composition composition = new MethodAnalysis.Composition(file.loops[m], file.loopCost[m],
+                file.libraryDepth[m], file.libraryCost[m], file.libraryName[m], file.halvingAt[m] >= 0,
+                file.allocationCost[m], file.allocationDetail[m], recursive[method]);
+        for (int site = siteOffsets[method]; site < siteOffsets[method + 1]; site++) {
+            int call = sites[site];
+            for (int k = targetOffsets[call]; k < targetOffsets[call + 1]; k++) {
+                int callee = callTargets[k];
+                if (components[callee] == components[method]) {
+                    continue;
+                }
+                composition.call(callCost[call], name(callee), time[callee], space[callee], callDepth[call], -1);
+            }
+        }
+        time[method] = composition.time();
+        space[method] = composition.space();
+    }
+
+    /**
+     * What one file contributes: each method's own findings, as in
+     * MethodAnalysis before calls are composed, and every call made from
+     * inside a method. Holds no tokens, so a whole project fits in memory.
+     */
+    static final class FileSummary {
+        final String path;
+        /** File name without .java: the class that calls qualified with it go to. */
+        final String className;
+        final boolean partial;
+
+        final String[] names;
+        final int[] lines;
+        /** Parameter count of each method, as CallGraph#parameters. */
+        final int[] parameters;
+        /** Cost of each method within its own file. */
+        final Complexity[] localTime;
+        final int[] loops;
+        final Cost[] loopCost;
+        final int[] libraryDepth;
+        final Cost[] libraryCost;
+        final String[] libraryName;
+        final int[] halvingAt;
+        final Cost[] allocationCost;
+        final String[] allocationDetail;
+
+        final int[] callers;
+        final Cost[] callCost;
+        final int[] callDepth;
+        final int[] arguments;
+        /** Methods of the file call c resolves to: localTargets[targetOffsets[c] .. targetOffsets[c + 1]). */
+        final int[] targetOffsets;
+        final int[] localTargets;
+        /** Called name of calls not resolved in the file that may resolve in others, else null. */
+        final String[] calleeNames;
+        /** Class such a call is qualified with, or the declared class of its receiver, else null. */
+        final String[] qualifiers;
+
+        FileSummary(String path, String className, boolean partial, String[] names, int[] lines, int[] parameters,
+                Complexity[] localTime, int[] loops, Cost[] loopCost, int[] libraryDepth, Cost[] libraryCost,
+                String[] libraryName, int[] halvingAt, Cost[] allocationCost, String[] allocationDetail, int[] callers,
+                Cost[] callCost, int[] callDepth, int[] arguments, int[] targetOffsets, int[] localTargets,
+                String[] calleeNames, String[] qualifiers) {
+            this.path = path;
+            this.className = className;
+            this.partial = partial;
+            this.names = names;
+            this.lines = lines;
+            this.parameters = parameters;
+            this.localTime = localTime;
+            this.loops = loops;
+            this.loopCost = loopCost;
+            this.libraryDepth = libraryDepth;
+            this.libraryCost = libraryCost;
+            this.libraryName = libraryName;
+            this.halvingAt = halvingAt;
+            this.allocationCost = allocationCost;
+            this.allocationDetail = allocationDetail;
+            this.callers = callers;
+            this.callCost = callCost;
+            this.callDepth = callDepth;
+            this.arguments = arguments;
+            this.targetOffsets = targetOffsets;
+            this.localTargets = localTargets;
+            this.calleeNames = calleeNames;
+            this.qualifiers = qualifiers;
+        }
+    }
+}
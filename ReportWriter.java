@@ -0,0 +1,33 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes batch results to disk as they complete, so nothing per file is held
+ * in memory however many files a run covers.
+ *
+ * Called concurrently from every batch worker; implementations synchronize
+ * internally. Records come out in completion order, not input order.
+ */
+abstract class ReportWriter implements Closeable {
+
+    /** Opens a report whose format follows the extension: .ndjson/.jsonl, or .bin for the binary format. */
+    static ReportWriter open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return new NdjsonReportWriter(file);
+        }
+        if (name.endsWith(".bin")) {
+            return new BinaryReportWriter(file);
+        }
+        throw new IOException("Unknown report format (use .ndjson, .jsonl or .bin): " + file);
+    }
+
+    /** Records the result for {@code source}; {@code partial} is the reason if it is incomplete, else null. */
+    abstract void result(Path source, long bytes, ResultCache.Result result, String partial) throws IOException;
+
+    abstract void error(Path source, String message) throws IOException;
+
+    /** Number of records written so far. */
+    abstract long count();
+}
@@ -0,0 +1,280 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Repository mode: keeps a RepositoryIndex of a local git checkout up to date
+ * and reports on the whole repository.
+ *
+ * Only local git commands are run, so it works offline. A file is read again
+ * only if git reports it changed since the indexed commit, or if it is not
+ * tracked; every other file still has the content its entry was made from
+ * whenever the entry's blob hash matches the blob at that commit. Files that
+ * were read are analyzed only if their blob hash differs from the indexed one.
+ * Blob hashes are computed from the bytes on disk, which match git's own for
+ * files without end-of-line or other filters.
+ */
+final class RepositoryAnalyzer {
+
+    // Methods listed in the "most expensive" part of the report.
+    private static final int TOP_METHODS = 10;
+
+    private final Path root;
+
+    private RepositoryAnalyzer(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Runs on the checkout containing {@code args[0]} (default: the working
+     * directory); {@code --index FILE} overrides the default index location
+     * inside the .git directory.
+     */
+    static void run(String[] args) throws IOException {
+        String directory = ".";
+        Path indexFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--index") && i + 1 < args.length) {
+                indexFile = Paths.get(args[++i]);
+            } else {
+                directory = args[i];
+            }
+        }
+
+        String top = git(Paths.get(directory), "rev-parse", "--show-toplevel").trim();
+        RepositoryAnalyzer repository = new RepositoryAnalyzer(Paths.get(top));
+        if (indexFile == null) {
+            indexFile = Paths.get(repository.git("rev-parse", "--absolute-git-dir").trim(), "complexity-index");
+        }
+        repository.update(indexFile);
+    }
+
+    private void update(Path indexFile) throws IOException {
+        long startNanos = System.nanoTime();
+        RepositoryIndex previous = RepositoryIndex.load(indexFile);
+        String head = commit("HEAD");
+        String base = previous.commit != null ? commit(previous.commit) : null;
+
+        // Current sources: tracked (some may be deleted from the working tree) and untracked, not ignored.
+        Set<String> paths = new TreeSet<>();
+        addJava(paths, git("ls-files", "-z"));
+        addJava(paths, git("ls-files", "-z", "--others", "--exclude-standard"));
+
+        // Files unchanged since the base commit: their blob is the one recorded at that commit.
+        Set<String> changed = new HashSet<>();
+        Map<String, String> baseBlobs = new HashMap<>();
+        if (base != null) {
+            addJava(changed, git("diff", "--name-only", "-z", "--no-renames", base));
+            for (String line : split(git("ls-tree", "-r", "-z", base))) {
+                // <mode> SP <type> SP <blob> TAB <path>
+                int tab = line.indexOf('\t');
+                if (tab > 0 && line.endsWith(".java") && line.startsWith("blob", line.indexOf(' ') + 1)) {
+                    baseBlobs.put(line.substring(tab + 1), line.substring(line.lastIndexOf(' ', tab) + 1, tab));
+                }
+            }
+        }
+
+        Map<String, RepositoryIndex.FileEntry> files = new TreeMap<>();
+        List<String> toRead = new ArrayList<>();
+        for (String path : paths) {
+            RepositoryIndex.FileEntry entry = previous.files.get(path);
+            if (entry != null && !changed.contains(path) && entry.blob.equals(baseBlobs.get(path))) {
+                files.put(path, entry);
+            } else {
+                toRead.add(path);
+            }
+        }
+
+        // Workers only write their own slots; a null entry means deleted or failed.
+        RepositoryIndex.FileEntry[] read = new RepositoryIndex.FileEntry[toRead.size()];
+        boolean[] analyzed = new boolean[toRead.size()];
+        String[] partial = new String[toRead.size()];
+        String[] errors = new String[toRead.size()];
+        IntStream.range(0, toRead.size()).parallel().forEach(i -> {
+            String path = toRead.get(i);
+            try {
+                byte[] bytes = Files.readAllBytes(root.resolve(path));
+                String blob = blobHash(bytes);
+                RepositoryIndex.FileEntry entry = previous.files.get(path);
+                if (entry != null && entry.blob.equals(blob)) {
+                    read[i] = entry;
+                    return;
+                }
+                AnalysisResult result = ComplexityEngine.analyze(new String(bytes, StandardCharsets.UTF_8),
+                        AnalysisBudget.DEFAULT);
+                read[i] = RepositoryIndex.FileEntry.of(path, blob, result);
+                analyzed[i] = true;
+                partial[i] = result.partial;
+            } catch (NoSuchFileException e) {
+                // Tracked but deleted from the working tree.
+            } catch (IOException | RuntimeException | StackOverflowError e) {
+                errors[i] = e.toString();
+            }
+        });
+
+        int analyzedCount = 0;
+        Set<String> retry = new HashSet<>();
+        for (int i = 0; i < read.length; i++) {
+            String path = toRead.get(i);
+            if (errors[i] != null) {
+                System.out.println(path + " -> Error: " + errors[i]);
+            } else if (read[i] != null) {
+                files.put(path, read[i]);
+                if (analyzed[i]) {
+                    analyzedCount++;
+                    System.out.println(path + " -> Time: " + read[i].timeDetail + " | Space: " + read[i].spaceDetail
+                            + (partial[i] != null ? " | Partial: " + partial[i] : ""));
+                }
+                // A partial result depends on the budget and the machine; the next run should retry.
+                if (partial[i] != null) {
+                    retry.add(path);
+                }
+            }
+        }
+
+        Map<String, RepositoryIndex.FileEntry> indexed = new TreeMap<>(files);
+        indexed.keySet().removeAll(retry);
+        new RepositoryIndex(head, indexed).save(indexFile);
+
+        int removed = 0;
+        for (String path : previous.files.keySet()) {
+            if (!files.containsKey(path)) {
+                removed++;
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("%n=== Repository Summary ===%n%d Java files at %s: "
+                + "%d analyzed, %d reused from the index, %d removed (%.2f s)", files.size(),
+                head != null ? head.substring(0, 12) : "no commit", analyzedCount, files.size() - analyzedCount,
+                removed, seconds));
+        report(files);
+    }
+
+    private static void report(Map<String, RepositoryIndex.FileEntry> files) {
+        List<Map.Entry<String, AnalysisResult.MethodResult>> methods = new ArrayList<>();
+        for (RepositoryIndex.FileEntry entry : files.values()) {
+            for (AnalysisResult.MethodResult method : entry.methods) {
+                methods.add(new AbstractMap.SimpleImmutableEntry<>(entry.path, method));
+            }
+        }
+        printMethods(methods);
+    }
+
+    /**
+     * Counts methods per time complexity class and lists the most expensive
+     * ones; each method comes with the file or class it is in.
+     */
+    static void printMethods(List<Map.Entry<String, AnalysisResult.MethodResult>> methods) {
+        if (methods.isEmpty()) {
+            return;
+        }
+        Map<Complexity, Integer> byClass = new TreeMap<>(Comparator.reverseOrder());
+        for (Map.Entry<String, AnalysisResult.MethodResult> entry : methods) {
+            byClass.merge(entry.getValue().time, 1, Integer::sum);
+        }
+
+        System.out.println("\nMethods by time complexity (" + methods.size() + " in total):");
+        for (Map.Entry<Complexity, Integer> entry : byClass.entrySet()) {
+            System.out.println(String.format("  %-16s %d", entry.getKey(), entry.getValue()));
+        }
+        methods.sort((a, b) -> b.getValue().time.compareTo(a.getValue().time));
+        System.out.println("\nMost expensive methods:");
+        for (Map.Entry<String, AnalysisResult.MethodResult> entry
+                : methods.subList(0, Math.min(TOP_METHODS, methods.size()))) {
+            AnalysisResult.MethodResult method = entry.getValue();
+            System.out.println(String.format("  %-16s %s:%d %s", method.time, entry.getKey(), method.line,
+                    method.name));
+        }
+    }
+
+    /** Full hash of {@code revision} as a commit, or null if there is no such commit. */
+    private String commit(String revision) throws IOException {
+        String hash = git("rev-parse", "-q", "--verify", revision + "^{commit}").trim();
+        return hash.isEmpty() ? null : hash;
+    }
+
+    private static void addJava(Set<String> paths, String output) {
+        for (String path : split(output)) {
+            if (path.endsWith(".java")) {
+                paths.add(path);
+            }
+        }
+    }
+
+    private static List<String> split(String output) {
+        List<String> parts = new ArrayList<>();
+        int from = 0;
+        for (int nul = output.indexOf('\0'); nul >= 0; nul = output.indexOf('\0', from)) {
+            parts.add(output.substring(from, nul));
+            from = nul + 1;
+        }
+        return parts;
+    }
+
+    // Same as git hash-object: SHA-1 of "blob <size>\0" followed by the content.
+    private static String blobHash(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is required by every Java platform", e);
+        }
+        digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+        StringBuilder hex = new StringBuilder(40);
+        for (byte b : digest.digest(content)) {
+            hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private String git(String... args) throws IOException {
+        return git(root, args);
+    }
+
+    /** Runs git in {@code directory} and returns its output; a failing command is an IOException. */
+    private static String git(Path directory, String... args) throws IOException {
+        List<String> command = new ArrayList<>(args.length + 3);
+        command.addAll(Arrays.asList("git", "-C", directory.toString()));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                output.write(buffer, 0, n);
+            }
+        }
+        int status;
+        try {
+            status = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for git", e);
+        }
+        // rev-parse --verify -q exits with 1 and no output for an unknown revision.
+        if (status != 0 && !(status == 1 && args[0].equals("rev-parse") && output.size() == 0)) {
+            throw new IOException("git " + String.join(" ", args) + " failed with exit status " + status);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * On-disk index of per-file and per-method results for one repository,
+ * keyed by path and git blob hash, plus the commit it was last brought up to
+ * date at.
+ *
+ * Stored as one UTF-8 text file: a header line, then an F line per file
+ * followed by an M line per method in it. Fields are tab-separated with tabs,
+ * newlines and backslashes escaped. The file is replaced atomically, so an
+ * interrupted run leaves the previous index intact.
+ */
+final class RepositoryIndex {
+
+    private static final String HEADER = "complexity-index";
+
+    /** Commit the entries were checked against, or null if none. */
+    final String commit;
+    /** Entries by path, sorted. */
+    final Map<String, FileEntry> files;
+
+    RepositoryIndex(String commit, Map<String, FileEntry> files) {
+        this.commit = commit;
+        this.files = files;
+    }
+
+    /** Reads the index at {@code file}; an empty index if it is missing, stale or unreadable. */
+    static RepositoryIndex load(Path file) {
+        Map<String, FileEntry> files = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] header = fields(in.readLine());
+            // Results from another analyzer version cannot be reused.
+            if (header.length != 3 || !header[0].equals(HEADER)
+                    || !header[1].equals(ResultCache.version())) {
+                return new RepositoryIndex(null, files);
+            }
+            FileEntry current = null;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                String[] f = fields(line);
+                if (f[0].equals("F") && f.length == 8) {
+                    current = new FileEntry(f[1], f[2], Complexity.parse(f[3]), f[4],
+                            AnalysisResult.Confidence.valueOf(f[5]), Complexity.parse(f[6]), f[7],
+                            new ArrayList<>());
+                    files.put(current.path, current);
+                } else if (f[0].equals("M") && f.length == 8 && current != null) {
+                    current.methods.add(new AnalysisResult.MethodResult(f[1], Integer.parseInt(f[2]),
+                            Complexity.parse(f[3]), f[4], AnalysisResult.Confidence.valueOf(f[5]),
+                            Complexity.parse(f[6]), f[7]));
+                } else {
+                    throw new IllegalArgumentException("Malformed index line: " + line);
+                }
+            }
+            return new RepositoryIndex(header[2].isEmpty() ? null : header[2], files);
+        } catch (NoSuchFileException e) {
+            return new RepositoryIndex(null, files);
+        } catch (IOException | RuntimeException e) {
+            // A damaged index only costs a full run.
+            return new RepositoryIndex(null, new TreeMap<>());
+        }
+    }
+
+    void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                line(out, HEADER, ResultCache.version(), commit != null ? commit : "");
+                for (FileEntry entry : files.values()) {
+                    line(out, "F", entry.path, entry.blob, entry.time.toString(), entry.timeDetail,
+                            entry.confidence.name(), entry.space.toString(), entry.spaceDetail);
+                    for (AnalysisResult.MethodResult method : entry.methods) {
+                        line(out, "M", method.name, Integer.toString(method.line), method.time.toString(),
+                                method.timeDetail, method.confidence.name(), method.space.toString(),
+                                method.spaceDetail);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void line(BufferedWriter out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            String field = fields[i];
+            for (int k = 0; k < field.length(); k++) {
+                char c = field.charAt(k);
+                if (c == '\\') {
+                    out.write("\\\\");
+                } else if (c == '\t') {
+                    out.write("\\t");
+                } else if (c == '\n') {
+                    out.write("\\n");
+                } else if (c == '\r') {
+                    out.write("\\r");
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+        out.write('\n');
+    }
+
+    private static String[] fields(String line) {
+        if (line == null) {
+            return new String[0];
+        }
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        for (int k = 0; k < line.length(); k++) {
+            char c = line.charAt(k);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && k + 1 < line.length()) {
+                char escaped = line.charAt(++k);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /** Results for one file as of the content with the given blob hash. */
+    static final class FileEntry {
+        final String path;
+        final String blob;
+        final Complexity time;
+        final String timeDetail;
+        final AnalysisResult.Confidence confidence;
+        final Complexity space;
+        final String spaceDetail;
+        final List<AnalysisResult.MethodResult> methods;
+
+        FileEntry(String path, String blob, Complexity time, String timeDetail,
+                AnalysisResult.Confidence confidence, Complexity space, String spaceDetail,
+                List<AnalysisResult.MethodResult> methods) {
+            this.path = path;
+            this.blob = blob;
+            this.time = time;
+            this.timeDetail = timeDetail;
+            this.confidence = confidence;
+            this.space = space;
+            this.spaceDetail = spaceDetail;
+            this.methods = methods;
+        }
+
+        static FileEntry of(String path, String blob, AnalysisResult result) {
+            return new FileEntry(path, blob, result.time, result.timeDetail, result.confidence, result.space,
+                    result.spaceDetail, Collections.unmodifiableList(result.methods));
+        }
+    }
+}
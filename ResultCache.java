@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed cache of analysis results.
+ *
+ * Keys are SHA-256 digests of the token text (comments and whitespace are not
+ * tokens, so reformatting or editing comments still hits). Results live in a
+ * bounded in-memory LRU and, if a directory is given, in one small file per key
+ * on disk so they survive between runs. Safe to share between threads.
+ */
+final class ResultCache {
+
+    // Bump whenever the heuristics change so stale on-disk results are not reused.
+    static final String ANALYZER_VERSION = "5";
+
+    /** ANALYZER_VERSION plus the fingerprint of any cost rules loaded beyond the built-in ones. */
+    static String version() {
+        String rules = CostRules.loaded().fingerprint();
+        return rules.isEmpty() ? ANALYZER_VERSION : ANALYZER_VERSION + "+" + rules;
+    }
+
+    private final Map<String, Result> memory;
+    private final Path directory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ResultCache(final int capacity, Path directory) {
+        this.memory = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.directory = directory;
+    }
+
+    /** Hex SHA-256 of the token text, with a separator so "a b" and "ab" differ. */
+    static String key(TokenStream tokens) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+        digest.update(version().getBytes(StandardCharsets.UTF_8));
+
+        byte[] buffer = new byte[4096];
+        int used = 0;
+        CharSequence source = tokens.source();
+        for (int i = 0; i < tokens.size(); i++) {
+            for (int k = tokens.start(i); k <= tokens.end(i); k++) {
+                if (used + 2 > buffer.length) {
+                    digest.update(buffer, 0, used);
+                    used = 0;
+                }
+                char c = k < tokens.end(i) ? source.charAt(k) : '\0';
+                buffer[used++] = (byte) (c >>> 8);
+                buffer[used++] = (byte) c;
+            }
+        }
+        digest.update(buffer, 0, used);
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /** Returns the cached result for {@code key}, or null on a miss. */
+    Result get(String key) {
+        Result result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result == null && directory != null) {
+            result = readFromDisk(key);
+            if (result != null) {
+                synchronized (memory) {
+                    memory.put(key, result);
+                }
+            }
+        }
+        (result != null ? hits : misses).increment();
+        return result;
+    }
+
+    void put(String key, Result result) {
+        synchronized (memory) {
+            memory.put(key, result);
+        }
+        if (directory != null) {
+            writeToDisk(key, result);
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private Result readFromDisk(String key) {
+        try {
+            List<String> lines = Files.readAllLines(file(key), StandardCharsets.UTF_8);
+            if (lines.size() != 5) {
+                return null;
+            }
+            return new Result(lines.get(0), lines.get(1), Complexity.parse(lines.get(2)),
+                    Complexity.parse(lines.get(3)), AnalysisResult.Confidence.valueOf(lines.get(4)));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Result result) {
+        // Write to a temporary file and rename, so a concurrent or interrupted
+        // run never sees a half-written entry.
+        Path target = file(key);
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+            try {
+                String text = result.time + "\n" + result.space + "\n" + result.timeClass + "\n" + result.spaceClass
+                        + "\n" + result.confidence + "\n";
+                Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The disk tier is best effort; the result is still cached in memory.
+        }
+    }
+
+    /** Time and space complexity for one analyzed source. */
+    static final class Result {
+        final String time;
+        final String space;
+        final Complexity timeClass;
+        final Complexity spaceClass;
+        final AnalysisResult.Confidence confidence;
+
+        Result(String time, String space, Complexity timeClass, Complexity spaceClass,
+                AnalysisResult.Confidence confidence) {
+            this.time = time;
+            this.space = space;
+            this.timeClass = timeClass;
+            this.spaceClass = spaceClass;
+            this.confidence = confidence;
+        }
+
+        Result(AnalysisResult result) {
+            this(result.timeDetail, result.spaceDetail, result.time, result.space, result.confidence);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.List;
+
+/**
+ * Writes an AnalysisResult as a compact JSON object. Hand-written so the
+ * analyzer keeps zero external dependencies.
+ */
+final class ResultJson {
+
+    private ResultJson() {
+    }
+
+    static String toJson(AnalysisResult result) {
+        StringBuilder json = new StringBuilder(256);
+        append(json, result);
+        return json.toString();
+    }
+
+    static void append(StringBuilder json, AnalysisResult result) {
+        json.append("{\"time\":");
+        quote(json, result.time.toString());
+        json.append(",\"timeDetail\":");
+        quote(json, result.timeDetail);
+        json.append(",\"confidence\":");
+        quote(json, result.confidence.name());
+        json.append(",\"space\":");
+        quote(json, result.space.toString());
+        json.append(",\"spaceDetail\":");
+        quote(json, result.spaceDetail);
+        if (result.partial != null) {
+            json.append(",\"partial\":");
+            quote(json, result.partial);
+        }
+
+        json.append(",\"methods\":[");
+        List<AnalysisResult.MethodResult> methods = result.methods;
+        for (int i = 0; i < methods.size(); i++) {
+            AnalysisResult.MethodResult method = methods.get(i);
+            json.append(i > 0 ? ",{\"name\":" : "{\"name\":");
+            quote(json, method.name);
+            json.append(",\"line\":").append(method.line).append(",\"time\":");
+            quote(json, method.time.toString());
+            json.append(",\"confidence\":");
+            quote(json, method.confidence.name());
+            json.append(",\"space\":");
+            quote(json, method.space.toString());
+            json.append('}');
+        }
+
+        json.append("],\"evidence\":[");
+        List<AnalysisResult.Evidence> evidence = result.evidence;
+        for (int i = 0; i < evidence.size(); i++) {
+            AnalysisResult.Evidence item = evidence.get(i);
+            json.append(i > 0 ? ",{\"kind\":" : "{\"kind\":");
+            quote(json, item.kind.name());
+            json.append(",\"line\":").append(item.line).append(",\"column\":").append(item.column).append(",\"detail\":");
+            quote(json, item.detail);
+            if (item.method != null) {
+                json.append(",\"method\":");
+                quote(json, item.method);
+            }
+            json.append('}');
+        }
+        json.append("]}");
+    }
+
+    /** Appends {@code text} as a JSON string literal. */
+    static void quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads source files into a reusable CharBuffer that TokenStream can scan directly.
+ *
+ * Large files are memory-mapped and decoded straight from the mapping, so the
+ * bytes are never copied onto the heap. Small files are read into a reusable
+ * byte buffer instead: mapping costs more than reading for them, and mappings
+ * are only released on GC, which would pile up across a big batch run.
+ *
+ * One reader per thread; the returned buffer is overwritten by the next read.
+ */
+final class SourceReader {
+
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer bytes = ByteBuffer.allocate(MAP_THRESHOLD);
+    private CharBuffer chars = CharBuffer.allocate(MAP_THRESHOLD);
+    private long lastSize;
+    private boolean lastTruncated;
+
+    /** Decodes {@code file}; the result is only valid until the next call. */
+    CharBuffer read(Path file) throws IOException {
+        return read(file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes at most the first {@code maxBytes} bytes of {@code file}, so an
+     * oversized file costs no more memory than the limit.
+     */
+    CharBuffer read(Path file, int maxBytes) throws IOException {
+        long started = Metrics.start(Metrics.Phase.READ);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE && maxBytes == Integer.MAX_VALUE) {
+                throw new IOException("File too large to analyze: " + file);
+            }
+            long size = Math.min(fileSize, maxBytes);
+            lastTruncated = fileSize > size;
+
+            ByteBuffer input;
+            if (size >= MAP_THRESHOLD) {
+                input = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes.clear();
+                bytes.limit((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // keep reading until the file is drained
+                }
+                bytes.flip();
+                input = bytes;
+            }
+            if (lastTruncated) {
+                input.limit(wholeCharacters(input));
+                size = input.limit();
+            }
+
+            // UTF-8 never decodes to more chars than bytes.
+            int capacity = input.remaining();
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(capacity);
+            }
+            chars.clear();
+            decoder.reset();
+            decoder.decode(input, chars, true);
+            decoder.flush(chars);
+            chars.flip();
+
+            lastSize = size;
+            return chars;
+        } finally {
+            Metrics.stop(Metrics.Phase.READ, started);
+        }
+    }
+
+    /**
+     * The length of {@code input} without a UTF-8 character the cut at its
+     * limit split, so a truncated file does not decode to a trailing U+FFFD.
+     */
+    private static int wholeCharacters(ByteBuffer input) {
+        int end = input.limit();
+        int start = end - 1;
+        // Back over up to three continuation bytes (10xxxxxx) to the lead byte.
+        while (start > 0 && end - start < 4 && (input.get(start) & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start < 0) {
+            return end;
+        }
+        int lead = input.get(start) & 0xFF;
+        int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start + length > end ? start : end;
+    }
+
+    /** Bytes decoded by the last {@link #read} call. */
+    long lastSize() {
+        return lastSize;
+    }
+
+    /** True if the last {@link #read} stopped at its limit before the end of the file. */
+    boolean lastTruncated() {
+        return lastTruncated;
+    }
+}
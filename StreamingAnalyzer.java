@@ -0,0 +1,637 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental analyzer for unbounded input such as multi-GB source dumps.
+ *
+ * Characters are fed chunk by chunk through a lexer state machine that keeps
+ * only the token currently being read, so tokens may span chunk boundaries.
+ * Each token updates brace depth, loop nesting, library calls with a cost rule
+ * (see CostRules), allocations and self-calls of the innermost open method, and a method's result is printed
+ * as soon as its closing brace arrives. Memory is bounded by the nesting depth
+ * of the input, not its length. Results are composed and worded as in the
+ * other modes (see MethodAnalysis.Composition).
+ *
+ * Only direct recursion is reported: finding mutual recursion needs the call
+ * graph of the whole input, which is exactly what this mode avoids holding.
+ * As in CallGraph, a call counts only if it is unqualified or qualified with
+ * {@code this} or the class last declared, so {@code map.get(k)} inside a
+ * method named get is not recursion.
+ * Loop headers are not read, so every loop counts n (a lone halving loop
+ * log n); array and collection sizes are read as in the other modes.
+ */
+final class StreamingAnalyzer {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final CostRules RULES = CostRules.loaded();
+    // Longer identifiers or numbers are truncated; no detector needs more.
+    private static final int MAX_TOKEN_LENGTH = 256;
+
+    private static final String[] MULTI_CHAR_OPERATORS = {
+        ">>>=", ">>>", ">>=", "<<=", ">>", "<<", "...", "::", "->", "++", "--", "&&", "||",
+        "==", "!=", "<=", ">=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^="
+    };
+
+    // Lexer states.
+    private static final int NONE = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int NUMBER = 2;
+    private static final int OPERATOR = 3;
+    private static final int SLASH = 4;
+    private static final int LINE_COMMENT = 5;
+    private static final int BLOCK_COMMENT = 6;
+    private static final int BLOCK_COMMENT_STAR = 7;
+    private static final int STRING = 8;
+    private static final int STRING_ESCAPE = 9;
+    private static final int CHAR = 10;
+    private static final int CHAR_ESCAPE = 11;
+    // After an opening quote, then after two quotes: "" is an empty string, """ opens a text block.
+    private static final int QUOTE = 12;
+    private static final int TWO_QUOTES = 13;
+    private static final int TEXT_BLOCK = 14;
+    private static final int TEXT_BLOCK_ESCAPE = 15;
+
+    // Stages of reading a "new" expression: its type and type arguments, then
+    // array dimensions or the arguments of a collection constructor.
+    private static final int NO_ALLOCATION = 0;
+    private static final int ALLOCATION_TYPE = 1;
+    private static final int ALLOCATION_TYPE_ARGUMENTS = 2;
+    private static final int ALLOCATION_DIMENSION = 3;
+    private static final int ALLOCATION_AFTER_DIMENSION = 4;
+    private static final int ALLOCATION_ARGUMENTS = 5;
+    private static final int ALLOCATION_NUMBER_ARGUMENT = 6;
+
+    // Flag bits packed into the low end of each loop stack entry.
+    private static final int LOOP_BRACED = 1;
+    private static final int LOOP_DO = 2;
+
+    private final PrintStream out;
+    private int state = NONE;
+    // Consecutive quotes seen inside a text block; the third one closes it.
+    private int textBlockQuotes;
+    private final StringBuilder current = new StringBuilder();
+    private int currentKind;
+
+    // The two previous tokens, kept for the short look-behind the detectors need.
+    private StringBuilder last = new StringBuilder();
+    private StringBuilder beforeLast = new StringBuilder();
+    private int lastKind = NONE;
+    private int beforeLastKind = NONE;
+
+    private int braceDepth;
+    private int parenDepth;
+
+    // Name of the class declared last, and whether the last identifier could name one of its methods.
+    private String className;
+    private boolean ownMember;
+    // Cost rule the last identifier matches if a '(' follows it, or -1.
+    private int rule = -1;
+
+    // The "new" expression being read: its stage, whether its type is a
+    // collection, bracket or angle depth within the current part, and the
+    // size of the dimensions read so far.
+    private int allocationStage = NO_ALLOCATION;
+    private boolean allocationCollection;
+    private int allocationDepth;
+    private int dimensionTokens;
+    private boolean dimensionConstant;
+    private Cost arraySize = Cost.ONE;
+
+    // Loop header and body tracking.
+    private boolean loopKeyword;
+    private int loopHeaderParen = -1;
+    private boolean awaitingLoopBody;
+    private boolean pendingDo;
+    private boolean afterDoBody;
+    private int doWhileParen = -1;
+
+    // Method declaration candidate: "Type name(" or a constructor, waiting to see '{' after ')'.
+    // Findings in its parameter list are kept on it until we know which it is.
+    private MethodState candidate;
+    private int candidateParen = -1;
+    private boolean awaitingMethodBody;
+    private boolean inThrowsClause;
+
+    private final MethodState topLevel = new MethodState("<top level>");
+    private final Deque<MethodState> methods = new ArrayDeque<>();
+    private int methodsReported;
+
+    StreamingAnalyzer(PrintStream out) {
+        this.out = out;
+        methods.push(topLevel);
+    }
+
+    /** Reads {@code in} to the end, printing each method's result as it closes. */
+    void analyze(Reader in) throws IOException {
+        char[] chunk = new char[CHUNK_SIZE];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            feed(chunk, 0, read);
+        }
+        finish();
+    }
+
+    void feed(char[] chunk, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            accept(chunk[i]);
+        }
+    }
+
+    void finish() {
+        accept('\n');
+        while (methods.size() > 1) {
+            report(methods.pop());
+        }
+        if (methodsReported == 0 || topLevel.hasFindings()) {
+            report(topLevel);
+        }
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case IDENTIFIER:
+                if (Character.isJavaIdentifierPart(c)) {
+                    append(c);
+                    return;
+                }
+                endToken();
+                break;
+            case NUMBER:
+                char prev = current.charAt(current.length() - 1);
+                if (Character.isLetterOrDigit(c) || c == '_' || c == '.'
+                        || ((c == '+' || c == '-') && (prev == 'e' || prev == 'E' || prev == 'p' || prev == 'P'))) {
+                    append(c);
+                    return;
+                }
+                endToken();
+                break;
+            case OPERATOR:
+                if (extendsOperator(c)) {
+                    append(c);
+                    return;
+                }
+                endToken();
+                break;
+            case SLASH:
+                if (c == '/') {
+                    state = LINE_COMMENT;
+                    return;
+                } else if (c == '*') {
+                    state = BLOCK_COMMENT;
+                    return;
+                }
+                startToken(OPERATOR, '/');
+                if (c == '=') {
+                    append(c);
+                    return;
+                }
+                endToken();
+                break;
+            case LINE_COMMENT:
+                if (c == '\n') {
+                    state = NONE;
+                }
+                return;
+            case BLOCK_COMMENT:
+                if (c == '*') {
+                    state = BLOCK_COMMENT_STAR;
+                }
+                return;
+            case BLOCK_COMMENT_STAR:
+                state = c == '/' ? NONE : c == '*' ? BLOCK_COMMENT_STAR : BLOCK_COMMENT;
+                return;
+            case QUOTE:
+                if (c == '"') {
+                    state = TWO_QUOTES;
+                    return;
+                }
+                state = STRING;
+                accept(c);
+                return;
+            case TWO_QUOTES:
+                if (c == '"') {
+                    state = TEXT_BLOCK;
+                    textBlockQuotes = 0;
+                    return;
+                }
+                endLiteral(TokenStream.STRING);
+                break;
+            case TEXT_BLOCK:
+                if (c == '\\') {
+                    state = TEXT_BLOCK_ESCAPE;
+                    textBlockQuotes = 0;
+                } else if (c != '"') {
+                    textBlockQuotes = 0;
+                } else if (++textBlockQuotes == 3) {
+                    endLiteral(TokenStream.STRING);
+                }
+                return;
+            case TEXT_BLOCK_ESCAPE:
+                state = TEXT_BLOCK;
+                return;
+            case STRING:
+            case CHAR:
+                if (c == '\\') {
+                    state = state == STRING ? STRING_ESCAPE : CHAR_ESCAPE;
+                } else if (c == (state == STRING ? '"' : '\'') || c == '\n') {
+                    endLiteral(state == STRING ? TokenStream.STRING : TokenStream.CHAR);
+                }
+                return;
+            case STRING_ESCAPE:
+                state = STRING;
+                return;
+            case CHAR_ESCAPE:
+                state = CHAR;
+                return;
+            default:
+                break;
+        }
+
+        if (Character.isWhitespace(c)) {
+            return;
+        } else if (c == '/') {
+            state = SLASH;
+        } else if (c == '"') {
+            state = QUOTE;
+        } else if (c == '\'') {
+            state = CHAR;
+        } else if (Character.isJavaIdentifierStart(c)) {
+            startToken(IDENTIFIER, c);
+        } else if (Character.isDigit(c)) {
+            startToken(NUMBER, c);
+        } else {
+            startToken(OPERATOR, c);
+        }
+    }
+
+    private void startToken(int lexerState, char c) {
+        state = lexerState;
+        currentKind = lexerState == IDENTIFIER ? TokenStream.IDENTIFIER
+                : lexerState == NUMBER ? TokenStream.NUMBER : TokenStream.OPERATOR;
+        current.setLength(0);
+        current.append(c);
+    }
+
+    private void append(char c) {
+        if (current.length() < MAX_TOKEN_LENGTH) {
+            current.append(c);
+        }
+    }
+
+    private void endLiteral(int kind) {
+        current.setLength(0);
+        currentKind = kind;
+        state = NONE;
+        onToken();
+    }
+
+    private void endToken() {
+        state = NONE;
+        onToken();
+    }
+
+    private boolean extendsOperator(char c) {
+        int length = current.length();
+        for (String operator : MULTI_CHAR_OPERATORS) {
+            if (operator.length() > length && operator.charAt(length) == c && startsWith(operator, current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(String text, CharSequence prefix) {
+        for (int k = 0; k < prefix.length(); k++) {
+            if (text.charAt(k) != prefix.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void onToken() {
+        MethodState method = candidate != null ? candidate : methods.peek();
+
+        if (awaitingLoopBody) {
+            awaitingLoopBody = false;
+            int flags = (is(current, '{') ? LOOP_BRACED : 0) | (pendingDo ? LOOP_DO : 0);
+            method.loops.push(braceDepth * 4 + flags);
+            method.maxLoops = Math.max(method.maxLoops, method.loops.size());
+        }
+
+        if (awaitingMethodBody && !is(current, '{')) {
+            if (inThrowsClause || is(current, "throws")) {
+                inThrowsClause = !is(current, ';');
+                awaitingMethodBody = inThrowsClause;
+            } else {
+                // "Type name(...)" not followed by a body was a call after all.
+                awaitingMethodBody = false;
+                method = methods.peek();
+                method.recordCall(candidate.name);
+                method.allocate(candidate.allocation, candidate.allocationDetail);
+                candidate = null;
+            }
+        }
+
+        boolean doWhileTail = afterDoBody && is(current, "while");
+        afterDoBody = false;
+        readAllocation(method);
+
+        if (currentKind == TokenStream.IDENTIFIER) {
+            ownMember = !is(last, '.') || is(beforeLast, "this") || (className != null && is(beforeLast, className));
+            if ((is(last, "class") || is(last, "enum")) && !is(beforeLast, '.')) {
+                className = current.toString();
+            }
+            onIdentifier(method, doWhileTail);
+        } else if (currentKind == TokenStream.NUMBER) {
+            if ((is(current, "2") && (is(last, '/') || is(last, "/=")))
+                    || (is(current, "1") && (is(last, ">>") || is(last, ">>>")))) {
+                method.halving = true;
+            }
+        } else if (currentKind == TokenStream.OPERATOR) {
+            onOperator(method);
+        }
+
+        StringBuilder recycled = beforeLast;
+        beforeLast = last;
+        beforeLastKind = lastKind;
+        last = recycled;
+        last.setLength(0);
+        last.append(current);
+        lastKind = currentKind;
+        current.setLength(0);
+    }
+
+    private void onIdentifier(MethodState method, boolean doWhileTail) {
+        rule = -1;
+        if (doWhileTail) {
+            doWhileParen = parenDepth;
+        } else if (is(current, "for") || is(current, "while")) {
+            loopKeyword = true;
+        } else if (is(current, "do")) {
+            awaitingLoopBody = true;
+            pendingDo = true;
+        } else if (!isKeyword(current)) {
+            rule = RULES.match(is(last, '.') ? beforeLast : null, current);
+        }
+    }
+
+    /**
+     * Follows a {@code new} expression token by token, as MethodAnalysis
+     * reads it: an array costs the product of its dimensions, each n unless
+     * it is a number or an upper-case constant, and a collection given a size
+     * or a source to copy costs n.
+     */
+    private void readAllocation(MethodState method) {
+        switch (allocationStage) {
+            case ALLOCATION_TYPE:
+                if (currentKind == TokenStream.IDENTIFIER) {
+                    allocationCollection = MethodAnalysis.isCollection(current.toString());
+                } else if (is(current, '<')) {
+                    allocationStage = ALLOCATION_TYPE_ARGUMENTS;
+                    allocationDepth = 1;
+                } else if (is(current, '[')) {
+                    startDimension(Cost.ONE);
+                } else if (is(current, '(') && allocationCollection) {
+                    allocationStage = ALLOCATION_ARGUMENTS;
+                } else if (!is(current, '.')) {
+                    allocationStage = NO_ALLOCATION;
+                }
+                return;
+            case ALLOCATION_TYPE_ARGUMENTS:
+                allocationDepth += is(current, '<') ? 1 : is(current, '>') ? -1 : is(current, ">>") ? -2
+                        : is(current, ">>>") ? -3 : 0;
+                if (allocationDepth <= 0) {
+                    allocationStage = ALLOCATION_TYPE;
+                }
+                return;
+            case ALLOCATION_DIMENSION:
+                if (is(current, ']') && allocationDepth == 0) {
+                    if (dimensionTokens == 0) {
+                        // new int[] {...}: the size is the initializer's, which is written out.
+                        allocationStage = NO_ALLOCATION;
+                    } else {
+                        arraySize = arraySize.times(dimensionTokens == 1 && dimensionConstant ? Cost.ONE : Cost.N);
+                        allocationStage = ALLOCATION_AFTER_DIMENSION;
+                    }
+                    return;
+                }
+                allocationDepth += is(current, '[') ? 1 : is(current, ']') ? -1 : 0;
+                dimensionConstant = ++dimensionTokens == 1
+                        && (currentKind == TokenStream.NUMBER || isConstantName(current));
+                return;
+            case ALLOCATION_AFTER_DIMENSION:
+                if (is(current, '[')) {
+                    startDimension(arraySize);
+                    return;
+                }
+                method.allocate(arraySize, "array allocation");
+                break;
+            case ALLOCATION_ARGUMENTS:
+                if (currentKind == TokenStream.NUMBER) {
+                    allocationStage = ALLOCATION_NUMBER_ARGUMENT;
+                    return;
+                }
+                if (!is(current, ')')) {
+                    method.allocate(Cost.N, "data structure allocation");
+                }
+                break;
+            case ALLOCATION_NUMBER_ARGUMENT:
+                if (!is(current, ')')) {
+                    method.allocate(Cost.N, "data structure allocation");
+                }
+                break;
+            default:
+                break;
+        }
+        allocationStage = currentKind == TokenStream.IDENTIFIER && is(current, "new") ? ALLOCATION_TYPE
+                : NO_ALLOCATION;
+    }
+
+    private void startDimension(Cost size) {
+        allocationStage = ALLOCATION_DIMENSION;
+        allocationDepth = 0;
+        dimensionTokens = 0;
+        arraySize = size;
+    }
+
+    private void onOperator(MethodState method) {
+        if (is(current, '(')) {
+            if (loopKeyword) {
+                loopKeyword = false;
+                loopHeaderParen = parenDepth;
+            } else if (lastKind == TokenStream.IDENTIFIER && !isKeyword(last)) {
+                if (is(beforeLast, '.') && !method.loops.isEmpty() && isGrowth(last)) {
+                    int depth = method.loops.size();
+                    method.allocate(MethodAnalysis.insideLoops(Cost.ONE, depth),
+                            "data structure growth inside " + MethodAnalysis.loops(depth));
+                }
+                if (candidate == null && isTypeLike()) {
+                    candidate = new MethodState(last.toString());
+                    candidateParen = parenDepth;
+                } else if (!is(beforeLast, "new")) {
+                    if (ownMember) {
+                        method.recordCall(last);
+                    }
+                    if (rule >= 0) {
+                        method.libraryCall(RULES.rule(rule));
+                    }
+                }
+            }
+            parenDepth++;
+        } else if (is(current, ')')) {
+            parenDepth = Math.max(0, parenDepth - 1);
+            if (parenDepth == loopHeaderParen) {
+                loopHeaderParen = -1;
+                awaitingLoopBody = true;
+                pendingDo = false;
+            } else if (parenDepth == doWhileParen) {
+                doWhileParen = -1;
+            } else if (parenDepth == candidateParen) {
+                candidateParen = -1;
+                awaitingMethodBody = true;
+            }
+        } else if (is(current, '{')) {
+            if (awaitingMethodBody) {
+                awaitingMethodBody = false;
+                inThrowsClause = false;
+                candidate.openDepth = braceDepth;
+                methods.push(candidate);
+                candidate = null;
+            }
+            braceDepth++;
+        } else if (is(current, '}')) {
+            braceDepth = Math.max(0, braceDepth - 1);
+            IntStack loops = method.loops;
+            if (!loops.isEmpty() && (loops.peek() & LOOP_BRACED) != 0 && loops.peek() / 4 == braceDepth) {
+                afterDoBody = (loops.pop() & LOOP_DO) != 0;
+            }
+            popBracelessLoops(loops);
+            if (method != topLevel && method.openDepth == braceDepth) {
+                report(methods.pop());
+            }
+        } else if (is(current, ';')) {
+            if (parenDepth == 0) {
+                popBracelessLoops(method.loops);
+            }
+        }
+    }
+
+    private boolean isTypeLike() {
+        if (is(beforeLast, '>') || is(beforeLast, ']')) {
+            return true;
+        }
+        // A constructor without modifiers: the class's own name right after ; { or }.
+        if ((is(beforeLast, ';') || is(beforeLast, '{') || is(beforeLast, '}'))
+                && className != null && is(last, className)) {
+            return true;
+        }
+        return beforeLastKind == TokenStream.IDENTIFIER
+                && !is(beforeLast, "new") && !is(beforeLast, "return") && !is(beforeLast, "else")
+                && !is(beforeLast, "throw") && !is(beforeLast, "case") && !is(beforeLast, "assert")
+                && !is(beforeLast, "do") && !is(beforeLast, "instanceof");
+    }
+
+    private void popBracelessLoops(IntStack loops) {
+        while (!loops.isEmpty() && (loops.peek() & LOOP_BRACED) == 0 && loops.peek() / 4 >= braceDepth) {
+            loops.pop();
+        }
+    }
+
+    private void report(MethodState method) {
+        methodsReported++;
+        MethodAnalysis.Composition composition = new MethodAnalysis.Composition(method.maxLoops,
+                MethodAnalysis.nestedLoops(method.maxLoops, method.halving), method.libraryDepth, method.library,
+                method.libraryName, method.halving, method.allocation, method.allocationDetail, method.recursive);
+        out.println(method.name + " -> Time: " + composition.time().text + " | Space: " + composition.space().text);
+    }
+
+    private static boolean isGrowth(CharSequence name) {
+        for (String growth : MethodAnalysis.GROWTH_METHODS) {
+            if (is(name, growth)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConstantName(CharSequence name) {
+        for (int k = 0; k < name.length(); k++) {
+            if (Character.isLowerCase(name.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isKeyword(CharSequence text) {
+        return TokenStream.isKeyword(text, 0, text.length());
+    }
+
+    private static boolean is(CharSequence text, char c) {
+        return text.length() == 1 && text.charAt(0) == c;
+    }
+
+    private static boolean is(CharSequence text, String expected) {
+        return expected.contentEquals(text);
+    }
+
+    /** Findings for one open method (or the code outside any method). */
+    private static final class MethodState {
+        final String name;
+        int openDepth = -1;
+        final IntStack loops = new IntStack();
+        int maxLoops;
+        // Summed cost of the library calls; the costliest (of equally costly ones,
+        // the first of the deepest) is reported by its loop depth and rule, as in MethodAnalysis.
+        Cost library = Cost.ONE;
+        private Cost costliestCall;
+        int libraryDepth = -1;
+        String libraryName;
+        boolean halving;
+        // Summed size of the allocations, and the detail of the largest.
+        Cost allocation = Cost.ONE;
+        String allocationDetail;
+        private Cost largest = Cost.ONE;
+        boolean recursive;
+
+        MethodState(String name) {
+            this.name = name;
+        }
+
+        void recordCall(CharSequence callee) {
+            recursive |= name.contentEquals(callee);
+        }
+
+        void libraryCall(CostRule rule) {
+            int depth = loops.size();
+            Cost cost = MethodAnalysis.insideLoops(rule.time, depth);
+            library = library.plus(cost);
+            int cmp = costliestCall == null ? 1 : cost.complexity().compareTo(costliestCall.complexity());
+            if (cmp > 0 || (cmp == 0 && depth > libraryDepth)) {
+                costliestCall = cost;
+                libraryDepth = depth;
+                libraryName = rule.description;
+            }
+        }
+
+        void allocate(Cost size, String detail) {
+            if (size.complexity().compareTo(largest.complexity()) > 0) {
+                largest = size;
+                allocationDetail = detail;
+            }
+            allocation = allocation.plus(size);
+        }
+
+        /**
+         * Return types of methods are read before their body opens and land in
+         * the top level, so an allocation alone does not make it worth reporting.
+         */
+        boolean hasFindings() {
+            return maxLoops > 0 || libraryDepth >= 0;
+        }
+    }
+}
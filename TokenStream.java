@@ -0,0 +1,472 @@
+import java.util.Arrays;
+
+/**
+ * Flat token stream produced by a single pass over the source text.
+ *
+ * Tokens are stored as parallel primitive arrays (kind, start, end) that point
+ * back into the original CharSequence, so tokenizing does not create a String
+ * per token. Comments and whitespace are skipped; string and char literals,
+ * including multi-line text blocks, are kept as single tokens so detectors
+ * never look inside them. Offsets are those of the original text, so evidence
+ * points at the right line and column without any rewriting of the source.
+ */
+final class TokenStream {
+
+    static final byte IDENTIFIER = 0;
+    static final byte NUMBER = 1;
+    static final byte STRING = 2;
+    static final byte CHAR = 3;
+    static final byte OPERATOR = 4;
+
+    // Sorted so that isKeyword can binary search without allocating.
+    private static final String[] KEYWORDS = {
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+        "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+        "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+        "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+        "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+        "volatile", "while"
+    };
+
+    private final CharSequence source;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    // Index of the partner bracket for ( ) [ ] { } tokens, -1 for everything else.
+    private int[] pairs;
+    private int size;
+    // Tokens at the start and end copied unchanged from the stream this was edited from.
+    private int keptBefore;
+    private int keptAfter;
+    // Set if lexing stopped at the deadline; the stream then covers only the start of the source.
+    private boolean outOfTime;
+
+    private TokenStream(CharSequence source) {
+        this(source, Math.max(16, source.length() / 4));
+    }
+
+    private TokenStream(CharSequence source, int capacity) {
+        this.source = source;
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.pairs = new int[capacity];
+    }
+
+    static TokenStream tokenize(CharSequence source) {
+        return tokenize(source, AnalysisBudget.NO_DEADLINE);
+    }
+
+    /**
+     * Same as {@link #tokenize(CharSequence)}, but stops lexing once {@code deadline}
+     * (see {@link AnalysisBudget#deadline}) has passed; see {@link #outOfTime}.
+     */
+    static TokenStream tokenize(CharSequence source, long deadline) {
+        long started = Metrics.start(Metrics.Phase.TOKENIZE);
+        TokenStream tokens = new TokenStream(source);
+        int pos = 0;
+        for (int step = 0; pos < source.length(); step++) {
+            if ((step & 1023) == 0 && AnalysisBudget.expired(deadline)) {
+                tokens.outOfTime = true;
+                break;
+            }
+            pos = tokens.next(pos);
+        }
+        tokens.pairBrackets();
+        Metrics.stop(Metrics.Phase.TOKENIZE, started);
+        return tokens;
+    }
+
+    /**
+     * Tokenizes {@code source}, which is {@code previous.source()} with
+     * {@code removed} characters at {@code offset} replaced by {@code inserted}
+     * new ones. Only the changed region is lexed again: tokens before it are
+     * copied, and lexing stops as soon as it lands on the start of a token from
+     * the unchanged tail, which is then copied with its offsets shifted.
+     */
+    static TokenStream edit(TokenStream previous, CharSequence source, int offset, int removed, int inserted) {
+        long started = Metrics.start(Metrics.Phase.TOKENIZE);
+        int shift = inserted - removed;
+        TokenStream tokens = new TokenStream(source, Math.max(16, previous.size + Math.max(0, shift) / 4 + 16));
+
+        // A token ending right at the edit may be extended by it, so keep only those ending before.
+        int keep = firstAtOrAfter(previous.ends, previous.size, offset);
+        System.arraycopy(previous.kinds, 0, tokens.kinds, 0, keep);
+        System.arraycopy(previous.starts, 0, tokens.starts, 0, keep);
+        System.arraycopy(previous.ends, 0, tokens.ends, 0, keep);
+        tokens.size = keep;
+        tokens.keptBefore = keep;
+
+        int tail = firstAtOrAfter(previous.starts, previous.size, offset + removed);
+        int pos = keep > 0 ? previous.ends[keep - 1] : 0;
+        while (pos < source.length()) {
+            int before = tokens.size;
+            pos = tokens.next(pos);
+            if (tokens.size == before) {
+                continue;
+            }
+            int start = tokens.starts[tokens.size - 1];
+            while (tail < previous.size && previous.starts[tail] + shift < start) {
+                tail++;
+            }
+            if (tail < previous.size && previous.starts[tail] + shift == start) {
+                // Back in step with the old stream: the rest lexes exactly as before.
+                tokens.size--;
+                tokens.copyShifted(previous, tail, shift);
+                break;
+            }
+        }
+        tokens.pairBrackets();
+        Metrics.stop(Metrics.Phase.TOKENIZE, started);
+        return tokens;
+    }
+
+    /** True if tokenizing ran out of time, so later source has no tokens. */
+    boolean outOfTime() {
+        return outOfTime;
+    }
+
+    /** Number of leading tokens this stream shares with the one it was edited from. */
+    int keptBefore() {
+        return keptBefore;
+    }
+
+    /** Number of trailing tokens this stream shares with the one it was edited from. */
+    int keptAfter() {
+        return keptAfter;
+    }
+
+    int size() {
+        return size;
+    }
+
+    CharSequence source() {
+        return source;
+    }
+
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    int length(int index) {
+        return ends[index] - starts[index];
+    }
+
+    boolean isIdentifier(int index) {
+        return index >= 0 && index < size && kinds[index] == IDENTIFIER;
+    }
+
+    /** True if the token at {@code index} is exactly {@code text}. */
+    boolean is(int index, String text) {
+        if (index < 0 || index >= size || length(index) != text.length()) {
+            return false;
+        }
+        return regionMatches(starts[index], text);
+    }
+
+    /** True if the token at {@code index} is the single character {@code c}. */
+    boolean is(int index, char c) {
+        return index >= 0 && index < size && length(index) == 1 && source.charAt(starts[index]) == c;
+    }
+
+    boolean startsWith(int index, String prefix) {
+        return index >= 0 && index < size && length(index) >= prefix.length()
+                && regionMatches(starts[index], prefix);
+    }
+
+    boolean endsWith(int index, String suffix) {
+        return index >= 0 && index < size && length(index) >= suffix.length()
+                && regionMatches(ends[index] - suffix.length(), suffix);
+    }
+
+    boolean contains(int index, String text) {
+        if (index < 0 || index >= size) {
+            return false;
+        }
+        int last = ends[index] - text.length();
+        for (int from = starts[index]; from <= last; from++) {
+            if (regionMatches(from, text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True if tokens {@code a} and {@code b} have the same text. */
+    boolean sameText(int a, int b) {
+        int length = length(a);
+        if (length != length(b)) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (source.charAt(starts[a] + k) != source.charAt(starts[b] + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Index of the bracket paired with the one at {@code index}, or {@code size()} if it has none. */
+    int matching(int index) {
+        if (index < 0 || index >= size || pairs[index] < 0) {
+            return size;
+        }
+        return pairs[index];
+    }
+
+    /** True if the token is a reserved word, so it cannot name a method or variable. */
+    boolean isKeyword(int index) {
+        return isIdentifier(index) && isKeyword(source, starts[index], ends[index]);
+    }
+
+    /** True if {@code text[from, to)} is a reserved word. */
+    static boolean isKeyword(CharSequence text, int from, int to) {
+        int low = 0;
+        int high = KEYWORDS.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(text, from, to, KEYWORDS[mid]);
+            if (cmp == 0) {
+                return true;
+            } else if (cmp < 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return false;
+    }
+
+    /** Same value as {@code text(index).hashCode()} without creating the String. */
+    int hash(int index) {
+        int h = 0;
+        for (int k = starts[index]; k < ends[index]; k++) {
+            h = 31 * h + source.charAt(k);
+        }
+        return h;
+    }
+
+    /** Copies the token text; only meant for reporting, not for the hot path. */
+    String text(int index) {
+        return source.subSequence(starts[index], ends[index]).toString();
+    }
+
+    private static int compare(CharSequence text, int from, int to, String keyword) {
+        int length = to - from;
+        int common = Math.min(length, keyword.length());
+        for (int k = 0; k < common; k++) {
+            int diff = text.charAt(from + k) - keyword.charAt(k);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - keyword.length();
+    }
+
+    private boolean regionMatches(int from, String text) {
+        for (int k = 0; k < text.length(); k++) {
+            if (source.charAt(from + k) != text.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Index of the first of the ascending {@code values} that is at least {@code key}. */
+    private static int firstAtOrAfter(int[] values, int count, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void copyShifted(TokenStream previous, int from, int shift) {
+        int count = previous.size - from;
+        if (size + count > kinds.length) {
+            int capacity = size + count;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            pairs = Arrays.copyOf(pairs, capacity);
+        }
+        System.arraycopy(previous.kinds, from, kinds, size, count);
+        for (int k = 0; k < count; k++) {
+            starts[size + k] = previous.starts[from + k] + shift;
+            ends[size + k] = previous.ends[from + k] + shift;
+        }
+        size += count;
+        keptAfter = count;
+    }
+
+    /** Lexes whatever starts at {@code pos}, adding at most one token, and returns where it ended. */
+    private int next(int pos) {
+        CharSequence s = source;
+        int length = s.length();
+        char c = s.charAt(pos);
+
+        if (Character.isWhitespace(c)) {
+            pos++;
+        } else if (c == '/' && pos + 1 < length && s.charAt(pos + 1) == '/') {
+            pos += 2;
+            while (pos < length && s.charAt(pos) != '\n') {
+                pos++;
+            }
+        } else if (c == '/' && pos + 1 < length && s.charAt(pos + 1) == '*') {
+            pos += 2;
+            while (pos < length && !(s.charAt(pos) == '*' && pos + 1 < length && s.charAt(pos + 1) == '/')) {
+                pos++;
+            }
+            pos = Math.min(length, pos + 2);
+        } else if (c == '"' && pos + 2 < length && s.charAt(pos + 1) == '"' && s.charAt(pos + 2) == '"') {
+            // Text block: one STRING token up to the first unescaped """, across lines.
+            int start = pos;
+            pos += 3;
+            while (pos < length && !(s.charAt(pos) == '"' && pos + 2 < length
+                    && s.charAt(pos + 1) == '"' && s.charAt(pos + 2) == '"')) {
+                pos += s.charAt(pos) == '\\' ? 2 : 1;
+            }
+            pos = Math.min(length, pos + 3);
+            add(STRING, start, pos);
+        } else if (c == '"' || c == '\'') {
+            int start = pos++;
+            while (pos < length) {
+                char d = s.charAt(pos);
+                if (d == '\\') {
+                    pos += 2;
+                    continue;
+                }
+                pos++;
+                if (d == c || d == '\n') {
+                    break;
+                }
+            }
+            add(c == '"' ? STRING : CHAR, start, Math.min(pos, length));
+        } else if (Character.isJavaIdentifierStart(c)) {
+            int start = pos++;
+            while (pos < length && Character.isJavaIdentifierPart(s.charAt(pos))) {
+                pos++;
+            }
+            add(IDENTIFIER, start, pos);
+        } else if (Character.isDigit(c) || (c == '.' && pos + 1 < length && Character.isDigit(s.charAt(pos + 1)))) {
+            int start = pos++;
+            while (pos < length) {
+                char d = s.charAt(pos);
+                char prev = s.charAt(pos - 1);
+                if (Character.isLetterOrDigit(d) || d == '_' || d == '.'
+                        || ((d == '+' || d == '-') && (prev == 'e' || prev == 'E' || prev == 'p' || prev == 'P'))) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            add(NUMBER, start, pos);
+        } else {
+            int end = pos + operatorLength(pos);
+            add(OPERATOR, pos, end);
+            pos = end;
+        }
+        return pos;
+    }
+
+    /** Fills the pair table; a closer that does not match the innermost opener is left unpaired. */
+    private void pairBrackets() {
+        Arrays.fill(pairs, 0, size, -1);
+        int[] open = new int[64];
+        int openCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] != OPERATOR || ends[i] - starts[i] != 1) {
+                continue;
+            }
+            char c = source.charAt(starts[i]);
+            if (c == '(' || c == '[' || c == '{') {
+                if (openCount == open.length) {
+                    open = Arrays.copyOf(open, openCount * 2);
+                }
+                open[openCount++] = i;
+            } else if ((c == ')' || c == ']' || c == '}') && openCount > 0
+                    && source.charAt(starts[open[openCount - 1]]) == opening(c)) {
+                int partner = open[--openCount];
+                pairs[partner] = i;
+                pairs[i] = partner;
+            }
+        }
+    }
+
+    private static char opening(char close) {
+        return close == ')' ? '(' : close == ']' ? '[' : '{';
+    }
+
+    private int operatorLength(int pos) {
+        CharSequence s = source;
+        int remaining = s.length() - pos;
+        char c = s.charAt(pos);
+        char c1 = remaining > 1 ? s.charAt(pos + 1) : '\0';
+        char c2 = remaining > 2 ? s.charAt(pos + 2) : '\0';
+        char c3 = remaining > 3 ? s.charAt(pos + 3) : '\0';
+
+        switch (c) {
+            case '>':
+                if (c1 == '>') {
+                    if (c2 == '>') {
+                        return c3 == '=' ? 4 : 3;
+                    }
+                    return c2 == '=' ? 3 : 2;
+                }
+                return c1 == '=' ? 2 : 1;
+            case '<':
+                if (c1 == '<') {
+                    return c2 == '=' ? 3 : 2;
+                }
+                return c1 == '=' ? 2 : 1;
+            case '.':
+                return c1 == '.' && c2 == '.' ? 3 : 1;
+            case ':':
+                return c1 == ':' ? 2 : 1;
+            case '-':
+                return c1 == '-' || c1 == '=' || c1 == '>' ? 2 : 1;
+            case '+':
+            case '&':
+            case '|':
+                return c1 == c || c1 == '=' ? 2 : 1;
+            case '=':
+            case '!':
+            case '*':
+            case '/':
+            case '%':
+            case '^':
+                return c1 == '=' ? 2 : 1;
+            default:
+                return 1;
+        }
+    }
+
+    private void add(byte kind, int start, int end) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            pairs = Arrays.copyOf(pairs, capacity);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        pairs[size] = -1;
+        size++;
+    }
+}
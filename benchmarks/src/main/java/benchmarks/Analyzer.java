@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Method handles into the analyzer. Its classes live in the default package,
+ * which cannot be imported, and some of them are private, so they are looked
+ * up reflectively once. Handles kept in static finals are constant-folded by
+ * the JIT, so calling through them costs the same as a direct call.
+ */
+final class Analyzer {
+
+    static final MethodHandle TOKENIZE = find("TokenStream", "tokenize", 1);
+    static final MethodHandle BUILD_CALL_GRAPH = find("CallGraph", "build", 1);
+    static final MethodHandle HAS_RECURSION = find("CallGraph", "hasRecursion", 0);
+    static final MethodHandle METHOD_COUNT = find("CallGraph", "methodCount", 0);
+    static final MethodHandle ANALYZE_METHODS = find("MethodAnalysis", "analyze", 2);
+    static final MethodHandle NEW_ANALYSIS = findConstructor("MethodAnalysis", 3);
+    static final MethodHandle SCAN_ALL = find("MethodAnalysis", "scanAll", 1);
+    static final MethodHandle COMPOSE = find("MethodAnalysis", "compose", 0);
+    static final MethodHandle RESULT = find("MethodAnalysis", "result", 0);
+
+    private Analyzer() {
+    }
+
+    /**
+     * Finds the declared method {@code name} taking {@code arity} parameters and
+     * erases every analyzer type in its signature to Object, so callers can use
+     * invokeExact.
+     */
+    private static MethodHandle find(String className, String name, int arity) {
+        try {
+            Class<?> owner = Class.forName(className);
+            for (Method method : owner.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == arity) {
+                    method.setAccessible(true);
+                    MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                    return handle.asType(erase(handle.type()));
+                }
+            }
+            throw new IllegalStateException(className + "." + name + " not found");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot access " + className + "." + name, e);
+        }
+    }
+
+    /** Same as {@link #find} for the declared constructor taking {@code arity} parameters. */
+    private static MethodHandle findConstructor(String className, int arity) {
+        try {
+            Class<?> owner = Class.forName(className);
+            for (Constructor<?> constructor : owner.getDeclaredConstructors()) {
+                if (constructor.getParameterCount() == arity) {
+                    constructor.setAccessible(true);
+                    MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+                    return handle.asType(erase(handle.type()));
+                }
+            }
+            throw new IllegalStateException(className + " constructor not found");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot access " + className + " constructor", e);
+        }
+    }
+
+    private static MethodType erase(MethodType type) {
+        MethodType erased = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (!type.parameterType(i).isPrimitive()) {
+                erased = erased.changeParameterType(i, Object.class);
+            }
+        }
+        return type.returnType().isPrimitive() ? erased : erased.changeReturnType(Object.class);
+    }
+}
@@ -0,0 +1,142 @@
+package benchmarks;
+
+/**
+ * Generated Java sources used as benchmark input. Each shape stresses a
+ * different detector; sizes are fixed so results stay comparable across runs.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    static String generate(String shape) {
+        switch (shape) {
+            case "small":
+                return smallSnippet();
+            case "large":
+                return largeClass(10000);
+            case "nested":
+                return nestedLoops(64);
+            case "methods":
+                return manyMethods(2000);
+            case "halving":
+                return halvingLoops(1000);
+            case "allocations":
+                return allocations(1000);
+            default:
+                throw new IllegalArgumentException("Unknown corpus shape: " + shape);
+        }
+    }
+
+    /** A typical pasted snippet: one method with a nested loop. */
+    private static String smallSnippet() {
+        return "void bubbleSort(int[] arr) {\n"
+                + "    int n = arr.length;\n"
+                + "    for (int i = 0; i < n - 1; i++) {\n"
+                + "        for (int j = 0; j < n - i - 1; j++) {\n"
+                + "            if (arr[j] > arr[j + 1]) {\n"
+                + "                // swap temp and arr[i]\n"
+                + "                int temp = arr[j];\n"
+                + "                arr[j] = arr[j + 1];\n"
+                + "                arr[j + 1] = temp;\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    /** A class of roughly {@code lines} lines mixing loops, comments, strings and calls. */
+    private static String largeClass(int lines) {
+        StringBuilder code = new StringBuilder(lines * 40);
+        code.append("public class Generated {\n");
+        // Each generated method is 13 lines long.
+        for (int method = 0; method * 13 < lines; method++) {
+            code.append("    /** Method ").append(method).append(" does some work. */\n")
+                    .append("    public int work").append(method).append("(int[] data, int n) {\n")
+                    .append("        int total = 0;\n")
+                    .append("        String label = \"for (int i = 0; i < n; i++) // not code\";\n")
+                    .append("        for (int i = 0; i < n; i++) {\n")
+                    .append("            total += data[i] / 2;\n")
+                    .append("            if (total > ").append(method).append(") {\n")
+                    .append("                total = helper").append(method % 7).append("(total);\n")
+                    .append("            }\n")
+                    .append("        }\n")
+                    .append("        return total;\n")
+                    .append("    }\n\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /** One method with {@code depth} loops nested inside each other. */
+    private static String nestedLoops(int depth) {
+        StringBuilder code = new StringBuilder();
+        code.append("void deep(int n) {\n");
+        for (int i = 0; i < depth; i++) {
+            indent(code, i + 1).append("for (int i").append(i).append(" = 0; i").append(i)
+                    .append(" < n; i").append(i).append("++) {\n");
+        }
+        indent(code, depth + 1).append("sink(n);\n");
+        for (int i = depth; i > 0; i--) {
+            indent(code, i).append("}\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /** Many small methods calling each other in a long chain that closes into a cycle. */
+    private static String manyMethods(int count) {
+        StringBuilder code = new StringBuilder(count * 80);
+        code.append("class Utils {\n");
+        for (int i = 0; i < count; i++) {
+            code.append("    static int m").append(i).append("(int x) { return x <= 0 ? 0 : m")
+                    .append((i + 1) % count).append("(x - 1) + ").append(i).append("; }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /** Binary searches, so every loop header goes through the halving checks. */
+    private static String halvingLoops(int count) {
+        StringBuilder code = new StringBuilder(count * 240);
+        code.append("class Search {\n");
+        for (int i = 0; i < count; i++) {
+            code.append("    static int find").append(i).append("(int[] a, int key) {\n")
+                    .append("        int lo = 0, hi = a.length - 1;\n")
+                    .append("        while (lo <= hi) {\n")
+                    .append("            int mid = (lo + hi) >>> 1;\n")
+                    .append("            if (a[mid] < key) { lo = mid + 1; } else { hi = mid - 1; }\n")
+                    .append("        }\n")
+                    .append("        return lo;\n")
+                    .append("    }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /** Arrays and collections allocated and grown inside loops, for the space analysis. */
+    private static String allocations(int count) {
+        StringBuilder code = new StringBuilder(count * 260);
+        code.append("class Buffers {\n");
+        for (int i = 0; i < count; i++) {
+            code.append("    static List<int[]> fill").append(i).append("(int n) {\n")
+                    .append("        List<int[]> rows = new ArrayList<>();\n")
+                    .append("        for (int i = 0; i < n; i++) {\n")
+                    .append("            int[] row = new int[n];\n")
+                    .append("            rows.add(row);\n")
+                    .append("        }\n")
+                    .append("        int[][] grid = new int[n][").append(i % 8 + 1).append("];\n")
+                    .append("        return rows;\n")
+                    .append("    }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private static StringBuilder indent(StringBuilder code, int level) {
+        for (int i = 0; i < level; i++) {
+            code.append("    ");
+        }
+        return code;
+    }
+}
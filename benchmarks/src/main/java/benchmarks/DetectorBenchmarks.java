@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time per operation of each analysis phase over the generated corpus.
+ *
+ * Phase benchmarks reuse the token stream, call graph and analysis built in
+ * setup so they measure only that phase. {@link #tokenize}, {@link #callGraph},
+ * {@link #methodScan}, {@link #compose} and {@link #result} are the phases
+ * {@link #endToEnd} runs, so their times add up to its time; throughputs do
+ * not add. The detectors share one scan, so each has a corpus that stresses
+ * it: nested loops, halving and allocations. Run with {@code -prof gc} to also
+ * get the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectorBenchmarks {
+
+    @Param({"small", "large", "nested", "methods", "halving", "allocations"})
+    public String corpus;
+
+    private String source;
+    private Object tokens;
+    private Object calls;
+    private int methods;
+    private Object analysis;
+
+    @Setup
+    public void setUp() throws Throwable {
+        source = Corpus.generate(corpus);
+        tokens = Analyzer.TOKENIZE.invokeExact((Object) source);
+        calls = Analyzer.BUILD_CALL_GRAPH.invokeExact(tokens);
+        methods = (int) Analyzer.METHOD_COUNT.invokeExact(calls);
+        analysis = Analyzer.ANALYZE_METHODS.invokeExact(tokens, calls);
+    }
+
+    @Benchmark
+    public Object tokenize() throws Throwable {
+        return Analyzer.TOKENIZE.invokeExact((Object) source);
+    }
+
+    /** Declarations, call sites and recursion cycles. */
+    @Benchmark
+    public Object callGraph() throws Throwable {
+        return Analyzer.BUILD_CALL_GRAPH.invokeExact(tokens);
+    }
+
+    /** Recursion detection alone: building the call graph and asking for its cycles. */
+    @Benchmark
+    public boolean containsRecursion() throws Throwable {
+        Object graph = Analyzer.BUILD_CALL_GRAPH.invokeExact(tokens);
+        return (boolean) Analyzer.HAS_RECURSION.invokeExact(graph);
+    }
+
+    /** The per-method pass finding loops, sorts, halving and allocations. */
+    @Benchmark
+    public Object methodScan() throws Throwable {
+        Object scanned = Analyzer.NEW_ANALYSIS.invokeExact(tokens, calls, Long.MAX_VALUE);
+        Analyzer.SCAN_ALL.invokeExact(scanned, (Object) new boolean[methods]);
+        return scanned;
+    }
+
+    /** Composing time and space costs along the call graph, callees first. */
+    @Benchmark
+    public Object compose() throws Throwable {
+        Analyzer.COMPOSE.invokeExact(analysis);
+        return analysis;
+    }
+
+    /** Building the structured result with evidence locations. */
+    @Benchmark
+    public Object result() throws Throwable {
+        return Analyzer.RESULT.invokeExact(analysis);
+    }
+
+    /** Everything the console version does for one input. */
+    @Benchmark
+    public Object endToEnd() throws Throwable {
+        Object stream = Analyzer.TOKENIZE.invokeExact((Object) source);
+        Object graph = Analyzer.BUILD_CALL_GRAPH.invokeExact(stream);
+        Object analyzed = Analyzer.ANALYZE_METHODS.invokeExact(stream, graph);
+        return Analyzer.RESULT.invokeExact(analyzed);
+    }
+}
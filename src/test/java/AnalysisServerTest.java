@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AnalysisServerTest {
+
+    private static final String SOURCE =
+            "class S { int sum(int[] a) { int s = 0; for (int x : a) { s += x; } return s; } }";
+
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new AnalysisServer().start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void analyzeAnswersWithTheEngineResult() throws IOException {
+        Response response = request("POST", "/analyze", SOURCE);
+        assertEquals(200, response.status);
+        assertEquals(ResultJson.toJson(ComplexityEngine.analyze(SOURCE, AnalysisBudget.DEFAULT)), response.body);
+        assertEquals(405, request("GET", "/analyze", null).status);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsGetTheSameAnswer() throws Exception {
+        String expected = request("POST", "/analyze", SOURCE).body;
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String source = i % 2 == 0 ? SOURCE : "class T { }";
+                responses.add(clients.submit(() -> request("POST", "/analyze", source)));
+            }
+            String other = ResultJson.toJson(ComplexityEngine.analyze("class T { }", AnalysisBudget.DEFAULT));
+            for (int i = 0; i < responses.size(); i++) {
+                Response response = responses.get(i).get();
+                assertEquals(200, response.status);
+                assertEquals(i % 2 == 0 ? expected : other, response.body);
+            }
+        } finally {
+            clients.shutdown();
+        }
+        Response stats = request("GET", "/stats", null);
+        assertTrue(stats.body.matches("\\{\"queued\":0,\"inFlight\":0,\"completed\":101,\"rejected\":0,"
+                + "\"batches\":\\d+}"), stats.body);
+    }
+
+    @Test
+    void phaseMetricsArePublishedOverJmx() throws Exception {
+        request("POST", "/analyze", SOURCE);
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("ComplexityAnalyzer:type=Phase,name=tokenize"), "Count");
+        assertTrue(((Long) count) > 0, String.valueOf(count));
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return new Response(status, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryReportTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path report = dir.resolve("report.cxr");
+        Path first = Paths.get("src", "a", "First.java");
+        Path second = Paths.get("src", "a", "Second.java");
+        Path third = Paths.get("Top.java");
+        try (BinaryReportWriter writer = new BinaryReportWriter(report)) {
+            writer.result(first, 1234, result(Complexity.polynomial(2), Complexity.LINEAR,
+                    AnalysisResult.Confidence.HIGH), null);
+            writer.result(second, 300000, result(Complexity.LINEARITHMIC, Complexity.CONSTANT,
+                    AnalysisResult.Confidence.values()[1]), "time budget exceeded");
+            writer.error(third, "unreadable");
+            assertEquals(3, writer.count());
+        }
+
+        try (BinaryReportReader reader = new BinaryReportReader(report)) {
+            assertTrue(reader.next());
+            assertEquals(3, reader.rows());
+            assertArrayEquals(new String[] {first.toString(), second.toString(), third.toString()}, reader.paths());
+            assertArrayEquals(new long[] {1234, 300000, 0}, reader.longs(BinaryReportWriter.SIZE));
+            assertArrayEquals(new byte[] {BinaryReportWriter.COMPLETE, BinaryReportWriter.PARTIAL,
+                    BinaryReportWriter.ERROR}, reader.bytes(BinaryReportWriter.STATUS));
+            assertArrayEquals(new long[] {Complexity.polynomial(2).code(), Complexity.LINEARITHMIC.code(),
+                    Complexity.CONSTANT.code()}, reader.longs(BinaryReportWriter.TIME));
+            assertArrayEquals(new long[] {Complexity.LINEAR.code(), Complexity.CONSTANT.code(),
+                    Complexity.CONSTANT.code()}, reader.longs(BinaryReportWriter.SPACE));
+            assertArrayEquals(new byte[] {0, 1, 0}, reader.bytes(BinaryReportWriter.CONFIDENCE));
+            assertFalse(reader.next());
+            assertTrue(reader.complete());
+        }
+    }
+
+    @Test
+    void keepsDirectoriesAcrossBlocks() throws IOException {
+        Path report = dir.resolve("many.cxr");
+        int files = 10000;
+        try (BinaryReportWriter writer = new BinaryReportWriter(report)) {
+            for (int i = 0; i < files; i++) {
+                writer.result(Paths.get("d" + i % 3, "F" + i + ".java"), i,
+                        result(Complexity.LINEAR, Complexity.CONSTANT, AnalysisResult.Confidence.HIGH), null);
+            }
+        }
+
+        int read = 0;
+        try (BinaryReportReader reader = new BinaryReportReader(report)) {
+            while (reader.next()) {
+                String[] paths = reader.paths();
+                long[] sizes = reader.longs(BinaryReportWriter.SIZE);
+                for (int row = 0; row < reader.rows(); row++, read++) {
+                    assertEquals(Paths.get("d" + read % 3, "F" + read + ".java").toString(), paths[row]);
+                    assertEquals(read, sizes[row]);
+                }
+            }
+            assertTrue(reader.complete());
+        }
+        assertEquals(files, read);
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path other = Files.write(dir.resolve("other.bin"), new byte[] {'N', 'O', 'P', 'E', 1});
+        assertThrows(IOException.class, () -> new BinaryReportReader(other));
+    }
+
+    private static ResultCache.Result result(Complexity time, Complexity space,
+            AnalysisResult.Confidence confidence) {
+        return new ResultCache.Result(time.toString(), space.toString(), time, space, confidence);
+    }
+}
@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BytecodeAnalyzerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loopsAndRecursionAreFoundInBytecode() throws IOException {
+        Map<String, AnalysisResult.MethodResult> methods = compile("class L {\n"
+                + "    int sum(int[] a) { int s = 0; for (int x : a) { s += x; } return s; }\n"
+                + "    int pairs(int[] a) {\n"
+                + "        int c = 0;\n"
+                + "        for (int i = 0; i < a.length; i++) { for (int j = 0; j < a.length; j++) { c++; } }\n"
+                + "        return c;\n"
+                + "    }\n"
+                + "    int halve(int n) { int s = 0; while (n > 1) { n = n / 2; s++; } return s; }\n"
+                + "    int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                + "}\n", "L");
+        assertEquals(Complexity.LINEAR, methods.get("sum").time);
+        assertEquals(Complexity.polynomial(2), methods.get("pairs").time);
+        assertEquals(Complexity.LOGARITHMIC, methods.get("halve").time);
+        assertEquals(Complexity.EXPONENTIAL, methods.get("fib").time);
+    }
+
+    @Test
+    void constantArraySizesCostNothing() throws IOException {
+        Map<String, AnalysisResult.MethodResult> methods = compile("class A {\n"
+                + "    int[] sized(int n) { return new int[n]; }\n"
+                + "    int[] fixed() { return new int[16]; }\n"
+                + "    int[][] square(int n) { return new int[n][n]; }\n"
+                + "    int[][] rows(int n) { return new int[n][3]; }\n"
+                + "    int[][] cols(int n) { return new int[3][n]; }\n"
+                + "    int[][] table() { return new int[4][4]; }\n"
+                + "    int[][] computed(int n, int m) { return new int[n][m + 1]; }\n"
+                + "}\n", "A");
+        assertEquals(Complexity.LINEAR, methods.get("sized").space);
+        assertEquals(Complexity.CONSTANT, methods.get("fixed").space);
+        assertEquals(Complexity.polynomial(2), methods.get("square").space);
+        assertEquals(Complexity.LINEAR, methods.get("rows").space);
+        assertEquals(Complexity.LINEAR, methods.get("cols").space);
+        assertEquals(Complexity.CONSTANT, methods.get("table").space);
+        assertEquals(Complexity.polynomial(2), methods.get("computed").space);
+    }
+
+    /** Compiles the source and analyzes each method of the named class. */
+    private Map<String, AnalysisResult.MethodResult> compile(String source, String name) throws IOException {
+        Path file = dir.resolve(name + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", dir.toString(), file.toString()));
+        ClassFile classFile = ClassFile.parse(Files.readAllBytes(dir.resolve(name + ".class")));
+        Map<String, AnalysisResult.MethodResult> methods = new HashMap<>();
+        for (ClassFile.Method method : classFile.methods) {
+            if (method.code != null) {
+                methods.put(method.name, BytecodeAnalyzer.analyze(classFile, method));
+            }
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class CallGraphTest {
+
+    @Test
+    void findsDirectAndMutualRecursion() {
+        CallGraph graph = build("class P {\n"
+                + "    int fact(int n) { return n <= 1 ? 1 : n * fact(n - 1); }\n"
+                + "    boolean even(int n) { return n == 0 || odd(n - 1); }\n"
+                + "    boolean odd(int n) { return n != 0 && even(n - 1); }\n"
+                + "    int twice(int n) { return fact(n) * 2; }\n"
+                + "}\n");
+        assertEquals(Arrays.asList(Collections.singletonList("fact"), Arrays.asList("even", "odd")),
+                graph.recursiveCycles());
+        assertFalse(recursive(graph, "twice", 1));
+    }
+
+    @Test
+    void callsOnOtherReceiversAreNotRecursion() {
+        CallGraph graph = build("class R {\n"
+                + "    java.util.Map<String, String> memory;\n"
+                + "    StringBuilder sb;\n"
+                + "    String get(String key) { return memory.get(key); }\n"
+                + "    R append(String s) { sb.append(s); return this; }\n"
+                + "    public String toString() { return sb.toString(); }\n"
+                + "}\n");
+        assertFalse(graph.hasRecursion());
+    }
+
+    @Test
+    void callsOnThisOrTheClassAreRecursion() {
+        CallGraph graph = build("class R {\n"
+                + "    int fact(int n) { return n <= 1 ? 1 : n * this.fact(n - 1); }\n"
+                + "    static int count(int n) { return n == 0 ? 0 : 1 + R.count(n - 1); }\n"
+                + "}\n");
+        assertTrue(recursive(graph, "fact", 1));
+        assertTrue(recursive(graph, "count", 1));
+    }
+
+    @Test
+    void overloadsAreLinkedByArgumentCount() {
+        CallGraph graph = build("class R {\n"
+                + "    int sum(int[] a) { return sum(a, 0); }\n"
+                + "    int sum(int[] a, int i) { return i == a.length ? 0 : a[i] + sum(a, i + 1); }\n"
+                + "    int max(int... xs) { return xs.length == 1 ? xs[0] : max(xs[0], 0); }\n"
+                + "}\n");
+        assertFalse(recursive(graph, "sum", 1));
+        assertTrue(recursive(graph, "sum", 2));
+        assertTrue(recursive(graph, "max", -1));
+    }
+
+    @Test
+    void recursionNextToAnOverloadOfTheSameArityIsKept() {
+        CallGraph graph = build("class F {\n"
+                + "    int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                + "    long fib(long n) { return fib((int) n); }\n"
+                + "    void at(int i) { if (i > 0) { at(i - 1); } }\n"
+                + "    void at(Integer i) { }\n"
+                + "}\n");
+        assertEquals(Arrays.asList(Collections.singletonList("fib"), Collections.singletonList("at")),
+                graph.recursiveCycles());
+        assertTrue(recursive(graph, "fib", 1));
+    }
+
+    @Test
+    void argumentsShowingAnotherOverloadAreDelegation() {
+        CallGraph graph = build("class D {\n"
+                + "    String analyze(CharSequence s) { return analyze(tokenize(s)); }\n"
+                + "    String analyze(StringBuilder t) { return t.toString(); }\n"
+                + "    StringBuilder tokenize(CharSequence s) { return null; }\n"
+                + "    void put(int k) { put(\"key\" + k); }\n"
+                + "    void put(String k) { }\n"
+                + "    void go(String s, int depth) { Object o = s; go(o, depth); }\n"
+                + "    void go(Object o, int depth) { }\n"
+                + "    void log(String format, Object... args) { log(format, 1, args); }\n"
+                + "    void log(String format, int level, Object... args) { }\n"
+                + "    void run(String... args) { run(new java.io.File(\".\"), args); }\n"
+                + "    void run(java.io.File directory, String... args) { }\n"
+                + "}\n");
+        assertFalse(graph.hasRecursion(), graph.recursiveCycles().toString());
+    }
+
+    private static CallGraph build(String source) {
+        return CallGraph.build(TokenStream.tokenize(source));
+    }
+
+    /** Whether the method {@code name} with the given parameter count (see CallGraph.parameters) recurses. */
+    private static boolean recursive(CallGraph graph, String name, int parameters) {
+        for (int method = 0; method < graph.methodCount(); method++) {
+            if (graph.methodName(method).equals(name) && graph.parameters(method) == parameters) {
+                return graph.isRecursive(method);
+            }
+        }
+        throw new AssertionError("No method " + name + " with " + parameters + " parameters");
+    }
+}
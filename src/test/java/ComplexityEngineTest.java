@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class ComplexityEngineTest {
+
+    private static final String SOURCE = "class S {\n"
+            + "    int sum(int[] a) {\n"
+            + "        int s = 0;\n"
+            + "        for (int x : a) { s += x; }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+            + "}\n";
+
+    @Test
+    void resultDescribesTheWholeSourceAndEachMethod() {
+        AnalysisResult result = ComplexityEngine.analyze(SOURCE);
+        assertEquals(Complexity.EXPONENTIAL, result.time);
+        assertEquals(AnalysisResult.Confidence.LOW, result.confidence);
+        assertEquals(Complexity.LINEAR, result.space);
+        assertEquals("O(n) - Recursion depth n on the call stack", result.spaceDetail);
+        assertEquals(Collections.singletonList(Collections.singletonList("fib")), result.recursiveCycles);
+        assertNull(result.partial);
+
+        assertEquals(2, result.methods.size());
+        AnalysisResult.MethodResult sum = result.methods.get(0);
+        assertEquals("sum", sum.name);
+        assertEquals(2, sum.line);
+        assertEquals("O(n) - Single loop detected", sum.timeDetail);
+        assertEquals(AnalysisResult.Confidence.HIGH, sum.confidence);
+        assertEquals(Complexity.CONSTANT, sum.space);
+        assertEquals("fib", result.methods.get(1).name);
+        assertEquals(7, result.methods.get(1).line);
+    }
+
+    @Test
+    void evidencePointsAtTheSource() {
+        List<AnalysisResult.Evidence> evidence = ComplexityEngine.analyze(SOURCE).evidence;
+        assertEquals("[4:9 LOOP loop in sum, 7:9 RECURSION recursion cycle in fib]", evidence.toString());
+        AnalysisResult.Evidence loop = evidence.get(0);
+        assertEquals(SOURCE.indexOf("for"), loop.offset);
+        assertEquals(AnalysisResult.Kind.LOOP, loop.kind);
+    }
+
+    @Test
+    void budgetLimitsGivePartialResults() {
+        AnalysisResult result = ComplexityEngine.analyze(SOURCE, new AnalysisBudget(0, 20));
+        assertEquals("input larger than 20 characters; only the start was analyzed", result.partial);
+        assertEquals(AnalysisResult.Confidence.LOW, result.confidence);
+        assertNull(ComplexityEngine.analyze(SOURCE, AnalysisBudget.UNLIMITED).partial);
+    }
+
+    @Test
+    void concurrentCallsGiveTheSameResult() throws Exception {
+        String expected = ResultJson.toJson(ComplexityEngine.analyze(SOURCE));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> ResultJson.toJson(ComplexityEngine.analyze(SOURCE))));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CostRulesTest {
+
+    @Test
+    void ownerRulesNeedTheOwnerAndOthersMatchAnyCall() {
+        CostRules rules = new CostRules(Arrays.asList(
+                new CostRule("Arrays", "sort", "n log n", "Sorting operation"),
+                new CostRule(null, "sort", "n^2", "Any sort"),
+                new CostRule("Index", "find", "log n")));
+        assertEquals("Sorting operation", matched(rules, "Arrays.sort(a);", "sort"));
+        assertEquals("Any sort", matched(rules, "list.sort(c);", "sort"));
+        assertEquals("Any sort", matched(rules, "sort(a);", "sort"));
+        assertEquals("Call to Index.find", matched(rules, "Index.find(k);", "find"));
+        assertNull(matched(rules, "find(k);", "find"));
+        assertNull(matched(rules, "Arrays.fill(a, 0);", "fill"));
+
+        assertEquals("Sorting operation", rules.rule(rules.match("Arrays", "sort")).description);
+        assertEquals("Any sort", rules.rule(rules.match(null, "sort")).description);
+        assertEquals(-1, rules.match(null, "find"));
+    }
+
+    @Test
+    void laterRulesReplaceEarlierOnes() {
+        CostRules rules = new CostRules(Arrays.asList(
+                new CostRule("Arrays", "sort", "n log n", "Sorting operation"),
+                new CostRule("Arrays", "sort", "n", "Radix sort")));
+        assertEquals("Radix sort", rules.rule(rules.match("Arrays", "sort")).description);
+        assertEquals(Cost.N, rules.rule(rules.match("Arrays", "sort")).time);
+    }
+
+    @Test
+    void everyRuleOfALargeSetIsFound() {
+        List<CostRule> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(new CostRule(i % 3 == 0 ? null : "Owner" + i % 7, "m" + i, "log n"));
+        }
+        CostRules rules = new CostRules(list);
+        for (int i = 0; i < 1000; i++) {
+            int rule = rules.match(i % 3 == 0 ? null : "Owner" + i % 7, "m" + i);
+            assertEquals("m" + i, rules.rule(rule).method);
+        }
+        assertEquals(-1, rules.match(null, "m1000"));
+    }
+
+    @Test
+    void rulesAreCheckedWhenMade() {
+        assertThrows(IllegalArgumentException.class, () -> new CostRule("A", "1b", "n"));
+        assertThrows(IllegalArgumentException.class, () -> new CostRule("A", "b", "n log"));
+    }
+
+    @Test
+    void providersOnTheClassPathAddRulesAndBrokenOnesAreSkipped() {
+        CostRules loaded = CostRules.loaded();
+        assertEquals("Index lookup", loaded.rule(loaded.match("Index", "lookup")).description);
+        assertEquals("Sorting operation", loaded.rule(loaded.match("Collections", "sort")).description);
+        assertNotEquals("", loaded.fingerprint());
+
+        AnalysisResult result = ComplexityEngine.analyze("class C {\n"
+                + "    int all(int[] keys) { int s = 0; for (int k : keys) { s += Index.lookup(k); } return s; }\n"
+                + "}\n");
+        assertEquals("O(n log n) - Index lookup inside 1 loop", result.methods.get(0).timeDetail);
+    }
+
+    private static String matched(CostRules rules, String source, String name) {
+        TokenStream tokens = TokenStream.tokenize(source);
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.is(i, name)) {
+                int rule = rules.match(tokens, i);
+                return rule < 0 ? null : rules.rule(rule).description;
+            }
+        }
+        throw new AssertionError("No " + name + " in " + source);
+    }
+
+    /** Listed in META-INF/services/CostRuleProvider of the test resources. */
+    public static final class IndexRules implements CostRuleProvider {
+        @Override
+        public List<CostRule> rules() {
+            return Collections.singletonList(new CostRule("Index", "lookup", "log n", "Index lookup"));
+        }
+    }
+
+    /** A provider that fails, which must not keep the other rules from loading. */
+    public static final class BrokenRules implements CostRuleProvider {
+        @Override
+        public List<CostRule> rules() {
+            throw new IllegalStateException("broken on purpose");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CostTest {
+
+    @Test
+    void parseReadsWhatToStringWrites() {
+        for (String text : new String[] {"O(1)", "O(n)", "O(log n)", "O(n log n)", "O(n^2)", "O(n*m + k)",
+                "O(log^2 k)", "O(2^n)", "O(n^3 log n)"}) {
+            assertEquals(text, Cost.parse(text).toString());
+        }
+    }
+
+    @Test
+    void parseAcceptsLooseSpelling() {
+        assertEquals("O(n log n)", Cost.parse("  n   log n ").toString());
+        assertEquals("O(n*m)", Cost.parse("m n").toString());
+        assertEquals("O(n*m)", Cost.parse("m*n").toString());
+        assertEquals(Cost.parse("n^2"), Cost.parse("n * n"));
+    }
+
+    @Test
+    void dominatedTermsAreDropped() {
+        assertEquals("O(n^2)", Cost.parse("n + n^2").toString());
+        assertEquals("O(n)", Cost.parse("log n + n + 1").toString());
+        assertEquals("O(m + n)", Cost.parse("m + n + 1").toString());
+    }
+
+    @Test
+    void complexityUsesTheLargestTerm() {
+        assertEquals(Complexity.polynomial(2), Cost.parse("n*m + k").complexity());
+        assertEquals(Complexity.LINEARITHMIC, Cost.parse("n log n").complexity());
+        assertEquals(Complexity.EXPONENTIAL, Cost.parse("2^n").complexity());
+    }
+
+    @Test
+    void constantsStayConstantAfterManyCosts() {
+        // More distinct costs than the intern table once held before it was cleared.
+        for (int i = 0; i < 70000; i++) {
+            Cost.linear("s" + i).times(Cost.logarithmic("t" + i));
+        }
+        Cost one = Cost.parse("n").times(Cost.ONE).plus(Cost.parse("1")).times(Cost.parse("1"));
+        assertEquals(Cost.N, one);
+        assertTrue(Cost.parse("1").isOne());
+        assertTrue(Cost.ONE.times(Cost.parse("1")).isOne());
+        assertFalse(Cost.N.isOne());
+        assertEquals("O(n)", Cost.N.plus(Cost.parse("1")).plus(Cost.linear("n")).toString());
+    }
+
+    @Test
+    void parseRejectsOtherText() {
+        assertThrows(IllegalArgumentException.class, () -> Cost.parse("n log"));
+        assertThrows(IllegalArgumentException.class, () -> Cost.parse("3n"));
+        assertThrows(IllegalArgumentException.class, () -> Cost.parse("n^0"));
+        assertThrows(IllegalArgumentException.class, () -> Cost.parse(""));
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EmpiricalVerifierTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fitFindsTheCurveTheTimesFollow() {
+        assertEquals(Complexity.CONSTANT, EmpiricalVerifier.fit(samples(n -> 40)));
+        assertEquals(Complexity.LOGARITHMIC, EmpiricalVerifier.fit(samples(n -> 20 + 15 * log2(n))));
+        assertEquals(Complexity.LINEAR, EmpiricalVerifier.fit(samples(n -> 100 + 3 * n)));
+        assertEquals(Complexity.LINEARITHMIC, EmpiricalVerifier.fit(samples(n -> 3 * n * log2(n))));
+        assertEquals(Complexity.polynomial(2), EmpiricalVerifier.fit(samples(n -> 500 + n * n)));
+        assertEquals(Complexity.polynomial(3), EmpiricalVerifier.fit(samples(n -> n * n * n / 4)));
+    }
+
+    @Test
+    void fitReadsRecursionThatDoesNotDoubleAsExponential() {
+        List<long[]> samples = new ArrayList<>();
+        for (int n = 8; n <= 30; n += 2) {
+            samples.add(new long[] {n, (long) (10 * Math.pow(1.618, n))});
+        }
+        assertEquals(Complexity.EXPONENTIAL, EmpiricalVerifier.fit(samples));
+    }
+
+    @Test
+    void fitNeedsEnoughSizes() {
+        List<long[]> samples = samples(n -> n);
+        assertNull(EmpiricalVerifier.fit(samples.subList(0, 3)));
+    }
+
+    @Test
+    void runMeasuresABareMethodInAChildJvm() throws IOException {
+        Path file = dir.resolve("Sum.java");
+        Files.write(file, "static long sum(int[] a) { long s = 0; for (int x : a) { s += x; } return s; }\n"
+                .getBytes(StandardCharsets.UTF_8));
+        String report = run(file.toString(), "sum", "--max-size", "256", "--timeout", "60");
+        assertTrue(report.startsWith("=== Empirical Verification: sum ===\n"
+                + "Static estimate:    O(n) - Single loop detected\n"), report);
+        assertTrue(report.contains("         128 "), report);
+        assertTrue(report.contains("Empirical estimate: O("), report);
+        assertThrows(IOException.class, () -> run(file.toString(), "missing"));
+    }
+
+    private static List<long[]> samples(LongUnaryOperator nanos) {
+        List<long[]> samples = new ArrayList<>();
+        for (long n = 8; n <= 1 << 16; n = n * 3 / 2) {
+            samples.add(new long[] {n, nanos.applyAsLong(n)});
+        }
+        return samples;
+    }
+
+    private static long log2(long n) {
+        return 63 - Long.numberOfLeadingZeros(n);
+    }
+
+    private static String run(String... args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        try {
+            EmpiricalVerifier.run(args);
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString("UTF-8").replace(System.lineSeparator(), "\n");
+    }
+}
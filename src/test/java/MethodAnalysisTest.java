@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MethodAnalysisTest {
+
+    @Test
+    void bubbleSortIsQuadraticInTimeAndConstantInSpace() {
+        AnalysisResult.MethodResult sort = method(analyze("class S {\n"
+                + "    void bubbleSort(int[] arr) {\n"
+                + "        int n = arr.length;\n"
+                + "        for (int i = 0; i < n - 1; i++) {\n"
+                + "            for (int j = 0; j < n - i - 1; j++) {\n"
+                + "                if (arr[j] > arr[j + 1]) { int t = arr[j]; arr[j] = arr[j + 1]; arr[j + 1] = t; }\n"
+                + "            }\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"), "bubbleSort");
+        assertEquals(Complexity.polynomial(2), sort.time);
+        assertEquals("O(n^2) - Nested loops detected", sort.timeDetail);
+        assertEquals(Complexity.CONSTANT, sort.space);
+    }
+
+    @Test
+    void binarySearchIsLogarithmic() {
+        AnalysisResult.MethodResult search = method(analyze("class S {\n"
+                + "    int search(int[] a, int key) {\n"
+                + "        int lo = 0, hi = a.length - 1;\n"
+                + "        while (lo <= hi) {\n"
+                + "            int mid = (lo + hi) / 2;\n"
+                + "            if (a[mid] < key) { lo = mid + 1; } else { hi = mid - 1; }\n"
+                + "        }\n"
+                + "        return -1;\n"
+                + "    }\n"
+                + "}\n"), "search");
+        assertEquals(Complexity.LOGARITHMIC, search.time);
+        assertEquals(Complexity.CONSTANT, search.space);
+    }
+
+    @Test
+    void loopBoundsKeepTheirNames() {
+        AnalysisResult.MethodResult grid = method(analyze("class S {\n"
+                + "    void grid(int rows, int cols) {\n"
+                + "        for (int r = 0; r < rows; r++) { for (int c = 0; c < cols; c++) { put(r, c); } }\n"
+                + "        for (int k = 0; k < 10; k++) { put(k, k); }\n"
+                + "    }\n"
+                + "    void put(int r, int c) { }\n"
+                + "}\n"), "grid");
+        assertEquals(Complexity.polynomial(2), grid.time);
+        assertTrue(grid.timeDetail.startsWith("O(cols*rows)"), grid.timeDetail);
+    }
+
+    @Test
+    void calleeCostsPropagateIntoLoops() {
+        AnalysisResult result = analyze("class S {\n"
+                + "    int total(int[] a) { int s = 0; for (int x : a) { s += x; } return s; }\n"
+                + "    int all(int[][] rows) { int s = 0; for (int[] r : rows) { s += total(r); } return s; }\n"
+                + "    int[] copy(int[] a) { int[] b = new int[a.length]; return b; }\n"
+                + "    int[] twice(int[] a) { return copy(copy(a)); }\n"
+                + "}\n");
+        assertEquals(Complexity.LINEAR, method(result, "total").time);
+        assertEquals("O(n^2) - Calls total (O(n)) inside 1 loop", method(result, "all").timeDetail);
+        assertEquals(Complexity.LINEAR, method(result, "copy").space);
+        assertEquals(Complexity.LINEAR, method(result, "twice").space);
+    }
+
+    @Test
+    void constructorsWithoutModifiersAreMethods() {
+        AnalysisResult result = analyze("class Demo {\n"
+                + "    int[] data;\n"
+                + "    Demo(int n) throws IllegalArgumentException {\n"
+                + "        data = new int[n];\n"
+                + "        for (int i = 0; i < n; i++) { for (int j = 0; j < n; j++) { data[i] += j; } }\n"
+                + "    }\n"
+                + "    Demo() { this(4); }\n"
+                + "}\n");
+        assertEquals(2, result.methods.size());
+        assertEquals(Complexity.polynomial(2), result.methods.get(0).time);
+        assertEquals(Complexity.LINEAR, result.methods.get(0).space);
+        for (AnalysisResult.Evidence evidence : result.evidence) {
+            assertEquals("Demo", evidence.method, evidence.toString());
+        }
+    }
+
+    private static AnalysisResult analyze(String source) {
+        TokenStream tokens = TokenStream.tokenize(source);
+        return MethodAnalysis.analyze(tokens, CallGraph.build(tokens)).result();
+    }
+
+    private static AnalysisResult.MethodResult method(AnalysisResult result, String name) {
+        for (AnalysisResult.MethodResult method : result.methods) {
+            if (method.name.equals(name)) {
+                return method;
+            }
+        }
+        throw new AssertionError("No method " + name + " in " + result.methods);
+    }
+}
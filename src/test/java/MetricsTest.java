@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    @Test
+    void phasesAreRecordedAsJfrEvents() throws Exception {
+        assertTrue(PhaseEvents.AVAILABLE);
+        Metrics.enable();
+        Path file = Files.createTempFile("phases", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PhaseEvents.NAME);
+            recording.start();
+            ComplexityEngine.analyze("class A { void f(int[] a) { for (int x : a) { g(x); } } void g(int x) { } }");
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertFalse(events.isEmpty());
+            boolean tokenized = false;
+            for (RecordedEvent event : events) {
+                tokenized |= event.getString("phase").equals("tokenize");
+                assertTrue(event.getLong("allocated") >= -1);
+            }
+            assertTrue(tokenized, events.toString());
+        } finally {
+            Files.delete(file);
+        }
+        assertTrue(Metrics.summary().contains("tokenize"));
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProjectAnalyzerTest {
+
+    private static final String SORTER = "class Sorter {\n"
+            + "    static void sort(int[] a) {\n"
+            + "        for (int i = 0; i < a.length; i++) { for (int j = 0; j < a.length; j++) { swap(a, i, j); } }\n"
+            + "    }\n"
+            + "    static void swap(int[] a, int i, int j) { int t = a[i]; a[i] = a[j]; a[j] = t; }\n"
+            + "}\n";
+    private static final String REPORT = "class Report {\n"
+            + "    void print(int[] data) { Sorter.sort(data); }\n"
+            + "    void each(int[][] rows) { for (int[] r : rows) { Sorter.sort(r); } }\n"
+            + "    static boolean even(int n) { return n == 0 || Parity.odd(n - 1); }\n"
+            + "    void size(java.util.List<String> list) { list.size(); }\n"
+            + "}\n";
+    private static final String PARITY = "class Parity {\n"
+            + "    static boolean odd(int n) { return n != 0 && Report.even(n - 1); }\n"
+            + "}\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void callsIntoOtherFilesAddTheirCost() {
+        ProjectGraph graph = compose(SORTER, REPORT, PARITY);
+        Map<String, AnalysisResult.MethodResult> methods = methods(graph, 3);
+        assertEquals(Complexity.polynomial(2), methods.get("print").time);
+        assertEquals("O(n^3) - Calls sort (O(n^2)) inside 1 loop", methods.get("each").timeDetail);
+        assertEquals(3, methods.get("each").line);
+        assertEquals(Complexity.CONSTANT, methods.get("swap").time);
+        // list.size() is not a call to anything in the project.
+        assertEquals(Complexity.CONSTANT, methods.get("size").time);
+        assertTrue(graph.costlierAcrossFiles(graph.first(1)));
+        assertFalse(graph.costlierAcrossFiles(graph.first(0)));
+    }
+
+    @Test
+    void recursionAcrossFilesIsOneCycle() {
+        ProjectGraph graph = compose(SORTER, REPORT, PARITY);
+        assertEquals(1, graph.cycleCount());
+        Map<String, AnalysisResult.MethodResult> methods = methods(graph, 3);
+        assertEquals(Complexity.EXPONENTIAL, methods.get("even").time);
+        assertEquals(Complexity.EXPONENTIAL, methods.get("odd").time);
+        assertEquals(Complexity.LINEAR, methods.get("odd").space);
+    }
+
+    @Test
+    void runReportsEachFileAndTheProject() throws IOException {
+        write("Sorter.java", SORTER);
+        write("Report.java", REPORT);
+        write("Parity.java", PARITY);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        try {
+            ProjectAnalyzer.run(new String[] {dir.toString()});
+        } finally {
+            System.setOut(out);
+        }
+        String report = bytes.toString("UTF-8");
+        assertTrue(report.contains("Report.java -> Time: O(2^n) or higher"), report);
+        assertTrue(report.contains("Analyzed 3 files (7 methods, 5 call edges)"), report);
+        assertTrue(report.contains("1 recursion cycles, 3 call levels"), report);
+        assertTrue(report.contains("4 methods cost more once calls into other files are followed"), report);
+    }
+
+    private void write(String name, String source) throws IOException {
+        Files.write(dir.resolve(name), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ProjectGraph compose(String... sources) {
+        ProjectGraph.FileSummary[] summaries = new ProjectGraph.FileSummary[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            String className = sources[i].substring("class ".length(), sources[i].indexOf(' ', "class ".length()));
+            TokenStream tokens = TokenStream.tokenize(sources[i]);
+            summaries[i] = MethodAnalysis.analyze(tokens, CallGraph.build(tokens))
+                    .summary(className + ".java", className);
+        }
+        ProjectGraph graph = ProjectGraph.build(summaries);
+        graph.compose();
+        return graph;
+    }
+
+    private static Map<String, AnalysisResult.MethodResult> methods(ProjectGraph graph, int files) {
+        Map<String, AnalysisResult.MethodResult> methods = new HashMap<>();
+        for (int method = 0; method < graph.first(files); method++) {
+            methods.put(graph.result(method).name, graph.result(method));
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryAnalyzerTest {
+
+    @TempDir
+    Path repository;
+
+    @TempDir
+    Path indexDirectory;
+
+    @BeforeEach
+    void init() throws Exception {
+        assumeTrue(git("init", "-q") == 0, "git is not available");
+        write("A.java", "class A { void f(int n) { for (int i = 0; i < n; i++) { } } }\n");
+        write("B.java", "class B { }\n");
+        commit();
+    }
+
+    @Test
+    void onlyChangedFilesAreAnalyzedAgain() throws Exception {
+        String first = run();
+        assertTrue(first.contains("A.java -> Time: O(n) - Single loop detected"), first);
+        assertTrue(first.contains("2 analyzed, 0 reused from the index, 0 removed"), first);
+
+        assertTrue(run().contains("0 analyzed, 2 reused from the index, 0 removed"));
+
+        write("A.java", "class A { void f(int n) { } }\n");
+        write("C.java", "class C { }\n");
+        Files.delete(repository.resolve("B.java"));
+        String edited = run();
+        assertTrue(edited.contains("A.java -> Time: O(1) - Constant time"), edited);
+        assertTrue(edited.contains("2 Java files at"), edited);
+        assertTrue(edited.contains("2 analyzed, 0 reused from the index, 1 removed"), edited);
+
+        commit();
+        assertTrue(run().contains("0 analyzed, 2 reused from the index, 0 removed"));
+    }
+
+    @Test
+    void indexRecordsGitBlobHashesAndTheCommit() throws Exception {
+        run();
+        RepositoryIndex index = RepositoryIndex.load(indexDirectory.resolve("index"));
+        assertEquals(output("rev-parse", "HEAD"), index.commit);
+        assertEquals(output("hash-object", "A.java"), index.files.get("A.java").blob);
+        assertEquals("f", index.files.get("A.java").methods.get(0).name);
+    }
+
+    private String run() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        try {
+            RepositoryAnalyzer.run(new String[] {repository.toString(), "--index",
+                indexDirectory.resolve("index").toString()});
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString("UTF-8");
+    }
+
+    private void write(String path, String text) throws IOException {
+        Files.write(repository.resolve(path), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void commit() throws Exception {
+        assertEquals(0, git("add", "-A"));
+        assertEquals(0, git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "c"));
+    }
+
+    private int git(String... args) throws Exception {
+        try {
+            return process(args).waitFor();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private String output(String... args) throws Exception {
+        Process process = process(args);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = process.getInputStream().read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        assertEquals(0, process.waitFor());
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private Process process(String... args) throws IOException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        return new ProcessBuilder(command).directory(repository.toFile()).redirectErrorStream(true).start();
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void savedIndexLoadsBack() throws IOException {
+        AnalysisResult.MethodResult method = new AnalysisResult.MethodResult("odd\tname", 3, Complexity.LINEAR,
+                "O(n) - Single loop detected\nwith \\ escapes", AnalysisResult.Confidence.MEDIUM, Complexity.CONSTANT,
+                "O(1) - Constant space");
+        Map<String, RepositoryIndex.FileEntry> files = new TreeMap<>();
+        files.put("src/A.java", new RepositoryIndex.FileEntry("src/A.java", "0123abcd", Complexity.LINEAR,
+                "O(n) - Single loop detected", AnalysisResult.Confidence.HIGH, Complexity.CONSTANT,
+                "O(1) - Constant space", Arrays.asList(method)));
+        Path file = dir.resolve("index");
+        new RepositoryIndex("feedbeef", files).save(file);
+
+        RepositoryIndex loaded = RepositoryIndex.load(file);
+        assertEquals("feedbeef", loaded.commit);
+        RepositoryIndex.FileEntry entry = loaded.files.get("src/A.java");
+        assertEquals("0123abcd", entry.blob);
+        assertEquals(Complexity.LINEAR, entry.time);
+        assertEquals(AnalysisResult.Confidence.HIGH, entry.confidence);
+        AnalysisResult.MethodResult loadedMethod = entry.methods.get(0);
+        assertEquals(method.name, loadedMethod.name);
+        assertEquals(3, loadedMethod.line);
+        assertEquals(method.timeDetail, loadedMethod.timeDetail);
+        assertEquals(AnalysisResult.Confidence.MEDIUM, loadedMethod.confidence);
+    }
+
+    @Test
+    void missingStaleOrDamagedIndexesAreEmpty() throws IOException {
+        assertEmpty(RepositoryIndex.load(dir.resolve("missing")));
+
+        Path stale = dir.resolve("stale");
+        Files.write(stale, "complexity-index\t0\tfeedbeef\n".getBytes(StandardCharsets.UTF_8));
+        assertEmpty(RepositoryIndex.load(stale));
+
+        Path damaged = dir.resolve("damaged");
+        Files.write(damaged, ("complexity-index\t" + ResultCache.version() + "\tfeedbeef\nX\tjunk\n")
+                .getBytes(StandardCharsets.UTF_8));
+        assertEmpty(RepositoryIndex.load(damaged));
+    }
+
+    private static void assertEmpty(RepositoryIndex index) {
+        assertNull(index.commit);
+        assertTrue(index.files.isEmpty());
+    }
+}
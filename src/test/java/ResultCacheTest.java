@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+
+    private static final String SOURCE =
+            "class S { int sum(int[] a) { int s = 0; for (int x : a) { s += x; } return s; } }";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keyIgnoresCommentsAndWhitespaceButNotTokens() {
+        String key = key(SOURCE);
+        assertEquals(key, key("// summing\nclass S {\n    int sum(int[] a) {\n        int s = 0;\n"
+                + "        for (int x : a) { s += x; } /* done */ return s;\n    }\n}\n"));
+        assertNotEquals(key, key(SOURCE.replace("s += x", "s -= x")));
+        assertNotEquals(key("int ab;"), key("int a b;"));
+        assertEquals(64, key.length());
+    }
+
+    @Test
+    void missThenHitInMemory() {
+        ResultCache cache = new ResultCache(2, null);
+        String key = key(SOURCE);
+        assertNull(cache.get(key));
+        cache.put(key, result(SOURCE));
+        ResultCache.Result cached = cache.get(key);
+        assertNotNull(cached);
+        assertEquals("O(n) - Single loop detected", cached.time);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        ResultCache cache = new ResultCache(2, null);
+        ResultCache.Result result = result(SOURCE);
+        cache.put("a", result);
+        cache.put("b", result);
+        cache.get("a");
+        cache.put("c", result);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void diskTierSurvivesANewCache() {
+        String key = key(SOURCE);
+        new ResultCache(16, dir).put(key, result(SOURCE));
+
+        ResultCache reopened = new ResultCache(16, dir);
+        ResultCache.Result cached = reopened.get(key);
+        assertNotNull(cached);
+        assertEquals("O(n) - Single loop detected", cached.time);
+        assertEquals("O(1) - Constant space", cached.space);
+        assertEquals(Complexity.LINEAR, cached.timeClass);
+        assertEquals(Complexity.CONSTANT, cached.spaceClass);
+        assertEquals(AnalysisResult.Confidence.HIGH, cached.confidence);
+        assertEquals(1, reopened.hits());
+        assertNull(new ResultCache(16, dir).get(key("class Other { }")));
+    }
+
+    private static String key(String source) {
+        return ResultCache.key(TokenStream.tokenize(source));
+    }
+
+    private static ResultCache.Result result(String source) {
+        return new ResultCache.Result(ComplexityEngine.analyze(source));
+    }
+}
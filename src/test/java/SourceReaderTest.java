@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSmallAndMappedFiles() throws IOException {
+        SourceReader reader = new SourceReader();
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 100_000) {
+            large.append("int f() { return 1; } // été\n");
+        }
+        for (String text : new String[] {"", "class A { }\n", large.toString()}) {
+            Path file = write(text);
+            assertEquals(text, reader.read(file).toString());
+            assertFalse(reader.lastTruncated());
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, reader.lastSize());
+        }
+    }
+
+    @Test
+    void truncationDoesNotSplitACharacter() throws IOException {
+        SourceReader reader = new SourceReader();
+        // One, two, three and four byte characters: 1 + 2 + 3 + 4 bytes.
+        String text = "aé€😀";
+        Path file = write(text);
+        String[] expected = {"", "a", "a", "aé", "aé", "aé", "aé€", "aé€", "aé€", "aé€"};
+        for (int limit = 0; limit < expected.length; limit++) {
+            assertEquals(expected[limit], reader.read(file, limit).toString(), "limit " + limit);
+            assertTrue(reader.lastTruncated());
+            assertEquals(expected[limit].getBytes(StandardCharsets.UTF_8).length, reader.lastSize());
+        }
+        assertEquals(text, reader.read(file, 10).toString());
+        assertFalse(reader.lastTruncated());
+
+        // Large enough to be memory-mapped, cut inside its 32769th two-byte character.
+        StringBuilder accents = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) {
+            accents.append('é');
+        }
+        assertEquals(accents.substring(0, 32_768), reader.read(write(accents.toString()), 65_537).toString());
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = Files.createTempFile(dir, "source", ".java");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
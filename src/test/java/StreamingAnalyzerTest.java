@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+class StreamingAnalyzerTest {
+
+    private static final String SOURCE = "class S {\n"
+            + "    int sum(int[] a) { int s = 0; for (int x : a) { s += x; } return s; }\n"
+            + "    int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+            + "    String get(String k) { return map.get(k); } // for (;;) { }\n"
+            + "    String text() { return \"while (true) { text(); }\"; }\n"
+            + "    int[][] grid(int n) { int[][] g = new int[n][n]; return g; }\n"
+            + "}\n";
+
+    @Test
+    void printsEachMethodAsItCloses() throws IOException {
+        assertEquals("sum -> Time: O(n) - Single loop detected | Space: O(1) - Constant space\n"
+                + "fib -> Time: O(2^n) or higher - Recursion detected (depends on structure)"
+                + " | Space: O(n) - Recursion depth n on the call stack\n"
+                + "get -> Time: O(1) - Constant time | Space: O(1) - Constant space\n"
+                + "text -> Time: O(1) - Constant time | Space: O(1) - Constant space\n"
+                + "grid -> Time: O(1) - Constant time | Space: O(n^2) - Array allocation\n",
+                analyze(SOURCE));
+    }
+
+    @Test
+    void chunkBoundariesDoNotChangeTheResult() throws IOException {
+        String whole = analyze(SOURCE);
+        for (int chunk : new int[] {1, 2, 3, 7, 64}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StreamingAnalyzer analyzer = new StreamingAnalyzer(new PrintStream(bytes, true, "UTF-8"));
+            char[] chars = SOURCE.toCharArray();
+            for (int offset = 0; offset < chars.length; offset += chunk) {
+                analyzer.feed(chars, offset, Math.min(chunk, chars.length - offset));
+            }
+            analyzer.finish();
+            assertEquals(whole, bytes.toString("UTF-8"), "chunks of " + chunk);
+        }
+    }
+
+    @Test
+    void agreesWithTheEngineOnMethodTimes() throws IOException {
+        String[] lines = analyze(SOURCE).split("\n");
+        AnalysisResult result = ComplexityEngine.analyze(SOURCE);
+        assertEquals(result.methods.size(), lines.length);
+        for (int k = 0; k < lines.length; k++) {
+            AnalysisResult.MethodResult method = result.methods.get(k);
+            assertEquals(method.name + " -> Time: " + method.timeDetail + " | Space: " + method.spaceDetail, lines[k]);
+        }
+    }
+
+    @Test
+    void unclosedMethodsAreReportedAtTheEnd() throws IOException {
+        assertEquals("loop -> Time: O(n) - Single loop detected | Space: O(1) - Constant space\n",
+                analyze("class T { void loop(int n) { for (int i = 0; i < n; i++) { "));
+    }
+
+    private static String analyze(String source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new StreamingAnalyzer(new PrintStream(bytes, true, "UTF-8")).analyze(new StringReader(source));
+        return bytes.toString("UTF-8").replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TokenStreamTest {
+
+    private static final String SOURCE = "class A {\n"
+            + "    /* sorts */ int[] sort(int[] a) { // by hand\n"
+            + "        String s = \"for (;;) {\";\n"
+            + "        char c = '}';\n"
+            + "        for (int i = 0; i < a.length; i++) { a[i] >>>= 1; }\n"
+            + "        return a;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    void editMatchesTokenizingAfresh() {
+        assertEdit(SOURCE, SOURCE.indexOf("int i"), 0, "long j = 0; ");
+        assertEdit(SOURCE, SOURCE.indexOf("a.length"), "a.length".length(), "n");
+        assertEdit(SOURCE, 0, "class".length(), "interface");
+        assertEdit(SOURCE, SOURCE.length(), 0, "class B {}\n");
+        assertEdit(SOURCE, SOURCE.indexOf(">>>="), 1, "");
+    }
+
+    @Test
+    void editThatOpensACommentOrStringRelexesTheTail() {
+        assertEdit(SOURCE, SOURCE.indexOf("int[] sort"), 0, "/* ");
+        assertEdit(SOURCE, SOURCE.indexOf("return"), 0, "\"");
+        assertEdit(SOURCE, SOURCE.indexOf("/* sorts */"), 2, "");
+        assertEdit(SOURCE, SOURCE.indexOf("// by hand"), 0, "\n");
+    }
+
+    @Test
+    void randomEditsMatchTokenizingAfresh() {
+        Random random = new Random(7);
+        String alphabet = "ab1 ;{}()[]\"'/*\n.=<>+-";
+        String source = SOURCE;
+        for (int round = 0; round < 500; round++) {
+            int offset = random.nextInt(source.length() + 1);
+            int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int k = random.nextInt(4); k > 0; k--) {
+                inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            source = assertEdit(source, offset, removed, inserted.toString());
+        }
+    }
+
+    /** Applies the edit both ways and checks every token and bracket pair; returns the edited source. */
+    private static String assertEdit(String before, int offset, int removed, String inserted) {
+        String after = before.substring(0, offset) + inserted + before.substring(offset + removed);
+        TokenStream edited = TokenStream.edit(TokenStream.tokenize(before), after, offset, removed,
+                inserted.length());
+        TokenStream fresh = TokenStream.tokenize(after);
+        assertEquals(fresh.size(), edited.size(), after);
+        for (int i = 0; i < fresh.size(); i++) {
+            assertEquals(fresh.kind(i), edited.kind(i), after);
+            assertEquals(fresh.start(i), edited.start(i), after);
+            assertEquals(fresh.end(i), edited.end(i), after);
+            assertEquals(fresh.matching(i), edited.matching(i), after);
+        }
+        return after;
+    }
+}